@@ -33,19 +33,19 @@ public class BaseHandler implements CoreHandler
 {
 
     public static Handler getHandler(Record r) {
-        return r.get(Handler.class, Handler.class);
+        return RecordSlot.HANDLER.get(r);
     }
 
     public static void setHandler(Record r, Handler handler) {
-        r.set(Handler.class, Handler.class, handler);
+        RecordSlot.HANDLER.set(r, handler);
     }
 
     public static Handler getHandler(Extendable ext) {
-        return ext.attachments().get(Handler.class, Handler.class);
+        return RecordSlot.HANDLER.get(ext);
     }
 
     public static void setHandler(Extendable ext, Handler handler) {
-        ext.attachments().set(Handler.class, Handler.class, handler);
+        RecordSlot.HANDLER.set(ext, handler);
     }
 
     private LinkedHashSet<Handler> children = new LinkedHashSet<Handler>();
@@ -20,6 +20,8 @@
  */
 package org.apache.qpid.proton.engine;
 
+import java.util.Set;
+
 import org.apache.qpid.proton.engine.impl.CollectorImpl;
 
 /**
@@ -42,4 +44,43 @@ public interface Collector
     void pop();
 
     boolean more();
+
+    /**
+     * Restricts the events this collector queues to the given types.
+     *
+     * Events of any other type are discarded when they are put, so
+     * they are never dispatched. This includes custom {@link EventType}s.
+     * Use it to cut event churn when the application only handles a few
+     * types, e.g. to drop the {@link Event.Type#LINK_FLOW} events that a
+     * busy sender produces on every send.
+     *
+     * Types that the owner of the collector depends on, such as those the
+     * reactor needs to drive its I/O, are always collected.
+     *
+     * @param types the event types of interest, or null to collect every event (the default)
+     */
+    void setInterest(Set<? extends EventType> types);
+
+    /**
+     * @param type the event type
+     * @return true if events of the given type are queued by this collector
+     */
+    boolean isInterested(EventType type);
+
+    /**
+     * Configure whether at most one event per (type, context) pair is kept pending.
+     *
+     * Normally a new event is only discarded when it repeats the most recently
+     * queued one. When coalescing, an event is discarded whenever an event of the
+     * same type for the same context is still waiting to be processed, so a
+     * burst of updates to interleaved endpoints or deliveries produces one event
+     * for each of them rather than one per update.
+     *
+     * Defaults to false.
+     *
+     * @param coalesce true to coalesce pending events, false otherwise
+     */
+    void setCoalescing(boolean coalesce);
+
+    boolean isCoalescing();
 }
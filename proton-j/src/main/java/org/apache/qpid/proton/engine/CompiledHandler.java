@@ -0,0 +1,192 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * A handler that dispatches events through a precomputed, flattened copy of a handler tree.
+ * <p>
+ * {@link Event#dispatch(Handler)} normally calls each handler in turn and then walks its
+ * {@link Handler#children()}, allocating an iterator at every level for every event.
+ * This class flattens the tree once, in the same pre-order, into one array of handlers
+ * for each event type. A {@link BaseHandler} subclass that neither overrides
+ * {@link BaseHandler#handle(Event)} nor the <code>onXxx</code> method for a type
+ * (nor {@link Handler#onUnhandled(Event)}) is left out of that type's array, since
+ * dispatching to it would do nothing.
+ * <p>
+ * The handler tree is captured when the handler is compiled. Changes made to it
+ * afterwards are only seen after {@link #recompile()}. Handlers that call
+ * {@link Event#delegate()} themselves to control when their children run should
+ * not be compiled, as the children are always run after their parent.
+ */
+public class CompiledHandler implements Handler
+{
+    private static final Event.Type[] TYPES = Event.Type.values();
+    private static final Handler[] NO_HANDLERS = new Handler[0];
+
+    private final Handler root;
+    private Handler[][] dispatch;
+
+    public static CompiledHandler compile(Handler root)
+    {
+        return new CompiledHandler(root);
+    }
+
+    private CompiledHandler(Handler root)
+    {
+        if (root == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+        this.root = root;
+        recompile();
+    }
+
+    /**
+     * @return the root of the handler tree that was compiled
+     */
+    public Handler getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Rebuilds the dispatch tables from the current state of the handler tree.
+     */
+    public void recompile()
+    {
+        List<Handler> flattened = new ArrayList<Handler>();
+        flatten(root, flattened);
+
+        Handler[][] tables = new Handler[TYPES.length][];
+        List<Handler> handlers = new ArrayList<Handler>();
+        for (Event.Type type : TYPES) {
+            handlers.clear();
+            for (Handler handler : flattened) {
+                if (handles(handler.getClass(), type)) {
+                    handlers.add(handler);
+                }
+            }
+            tables[type.ordinal()] = handlers.isEmpty() ? NO_HANDLERS : handlers.toArray(new Handler[handlers.size()]);
+        }
+        dispatch = tables;
+    }
+
+    /**
+     * @param type the event type
+     * @return the number of handlers an event of the given type is dispatched to
+     */
+    public int getHandlerCount(Event.Type type)
+    {
+        return dispatch[type.ordinal()].length;
+    }
+
+    private static void flatten(Handler handler, List<Handler> flattened)
+    {
+        flattened.add(handler);
+        Iterator<Handler> children = handler.children();
+        while (children.hasNext()) {
+            flatten(children.next(), flattened);
+        }
+    }
+
+    private static boolean handles(Class<?> handlerClass, Event.Type type)
+    {
+        if (!BaseHandler.class.isAssignableFrom(handlerClass)) {
+            return true;
+        }
+
+        try {
+            if (overrides(handlerClass, "handle") || overrides(handlerClass, "onUnhandled")) {
+                return true;
+            }
+            String method = methodName(type);
+            return method != null && overrides(handlerClass, method);
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    private static boolean overrides(Class<?> handlerClass, String method) throws NoSuchMethodException
+    {
+        return handlerClass.getMethod(method, Event.class).getDeclaringClass() != BaseHandler.class;
+    }
+
+    /**
+     * @return the BaseHandler method that {@link BaseHandler#handle(Event)} calls for the type
+     */
+    static String methodName(Event.Type type)
+    {
+        switch (type) {
+        case NON_CORE_EVENT:
+            return null;
+        case SELECTABLE_UPDATED:
+            // BaseHandler routes this to onSelectableWritable
+            return "onSelectableWritable";
+        default:
+            StringBuilder name = new StringBuilder("on");
+            for (String word : type.name().split("_")) {
+                name.append(word.charAt(0)).append(word.substring(1).toLowerCase(Locale.ROOT));
+            }
+            return name.toString();
+        }
+    }
+
+    @Override
+    public void handle(Event e)
+    {
+        for (Handler handler : dispatch[e.getType().ordinal()]) {
+            try {
+                handler.handle(e);
+            } catch (HandlerException handlerException) {
+                throw handlerException;
+            } catch (RuntimeException runtimeException) {
+                throw new HandlerException(handler, runtimeException);
+            }
+        }
+    }
+
+    @Override
+    public void onUnhandled(Event e)
+    {
+    }
+
+    /**
+     * Adds the child to the root of the handler tree and recompiles.
+     */
+    @Override
+    public void add(Handler child)
+    {
+        root.add(child);
+        recompile();
+    }
+
+    @Override
+    public Iterator<Handler> children()
+    {
+        return Collections.<Handler>emptyIterator();
+    }
+}
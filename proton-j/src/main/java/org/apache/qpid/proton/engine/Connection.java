@@ -61,7 +61,8 @@ public interface Connection extends Endpoint, ReactorChild
      * Typically used to discover sessions whose remote state has acquired
      * particular values, e.g. sessions that have been remotely opened or closed.
      *
-     * TODO what ordering guarantees on the returned "linked list" are provided?
+     * Sessions are indexed by state, so only those in the requested states are visited.
+     * They are returned in the order they were created.
      *
      * @see Session#next(EnumSet, EnumSet)
      */
@@ -73,6 +74,9 @@ public interface Connection extends Endpoint, ReactorChild
      * Typically used to discover links whose remote state has acquired
      * particular values, e.g. links that have been remotely opened or closed.
      *
+     * Links are indexed by state, so only those in the requested states are visited.
+     * They are returned in the order they were created.
+     *
      * @see Link#next(EnumSet, EnumSet)
      */
     public Link linkHead(EnumSet<EndpointState> local, EnumSet<EndpointState> remote);
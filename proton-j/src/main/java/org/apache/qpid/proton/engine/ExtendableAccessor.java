@@ -23,8 +23,8 @@ package org.apache.qpid.proton.engine;
 /**
  * A typesafe convenience class for associating additional data with {@link Extendable} classes.
  * <p>
- * An instance of <code>ExtendableAccessor</code> uses itself as the key in the {@link Extendable#attachments()}
- * so it's best instantiated as a static final member.
+ * An instance of <code>ExtendableAccessor</code> stores its data in the {@link Extendable#attachments()}
+ * under its own {@link RecordSlot}, so it's best instantiated as a static final member.
  * <pre><code>
  *   class Foo extends BaseHandler {
  *     private static ExtendableAccessor&lt;Link, Bar&gt; LINK_BAR = new ExtendableAccessor&lt;&gt;(Bar.class);
@@ -42,16 +42,16 @@ package org.apache.qpid.proton.engine;
  * @param <T> The type of the data to be stored
  */
 public final class ExtendableAccessor<E extends Extendable, T> {
-    private final Class<T> klass;
+    private final RecordSlot<T> accessor;
     public ExtendableAccessor(Class<T> klass) {
-        this.klass = klass;
+        this.accessor = new RecordSlot<T>(klass);
     }
 
     public T get(E e) {
-        return e.attachments().get(this, klass);
+        return accessor.get(e);
     }
 
     public void set(E e, T value) {
-        e.attachments().set(this, klass, value);
+        accessor.set(e, value);
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the heap held by one or more transports.
+ * <p>
+ * Each transport the budget is set on adds its {@link MemoryUsage#getTotal() memory usage}
+ * to the budget, so one budget may limit a single connection or be shared to limit a
+ * whole process. While the budget is exceeded its transports apply back-pressure: they
+ * report no {@link Transport#capacity() capacity} for input and withhold link credit
+ * granted by their receivers until the usage falls back within the limit, typically as the
+ * application reads incoming deliveries.
+ * <p>
+ * Delivery bytes are counted as they are buffered and released, while the transports' own
+ * buffers are brought up to date as they process input and output, so the budget may
+ * briefly be exceeded by the input already accepted. As a frame can only be parsed once it
+ * has been read in full, a budget should allow each of its transports at least its maximum
+ * frame size on top of the deliveries it is expected to buffer.
+ * <p>
+ * When the usage falls back within the limit the budget notifies its {@link Listener
+ * listeners}. Transports driven by a {@link org.apache.qpid.proton.reactor.Reactor} listen
+ * for this themselves, so that a transport left idle while the budget was exceeded is
+ * updated on its reactor. Applications driving transports by other means should add a
+ * listener that arranges for their stalled transports to be processed again.
+ * <p>
+ * This class is thread safe.
+ *
+ * @see Transport#setMemoryBudget(MemoryBudget)
+ */
+public final class MemoryBudget
+{
+    /**
+     * Notified when the usage of a budget falls back within its limit.
+     */
+    public interface Listener
+    {
+        /**
+         * Called on the thread that released the memory, which may be the thread of any
+         * transport sharing the budget, so implementations must be thread safe and should
+         * return promptly.
+         *
+         * @param budget the budget that is no longer exceeded
+         */
+        void budgetAvailable(MemoryBudget budget);
+    }
+
+    private final long _limit;
+    private final AtomicLong _used = new AtomicLong();
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * @param limit the number of bytes the transports sharing the budget may hold
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public MemoryBudget(long limit)
+    {
+        if (limit <= 0)
+        {
+            throw new IllegalArgumentException("Memory budget limit must be positive: " + limit);
+        }
+        _limit = limit;
+    }
+
+    public long getLimit()
+    {
+        return _limit;
+    }
+
+    /**
+     * @return the bytes held by the transports sharing this budget
+     */
+    public long getUsed()
+    {
+        return _used.get();
+    }
+
+    public boolean isExceeded()
+    {
+        return _used.get() > _limit;
+    }
+
+    /**
+     * Adds to the bytes counted against the budget, or releases them when negative. Transports
+     * adjust the budget as their usage changes; applications may also use this to count
+     * memory they hold on behalf of their connections.
+     *
+     * @param delta the change in the number of bytes held
+     */
+    public void adjust(long delta)
+    {
+        if (delta != 0)
+        {
+            long used = _used.addAndGet(delta);
+            if (delta < 0 && used <= _limit && used - delta > _limit)
+            {
+                for (Listener listener : _listeners)
+                {
+                    listener.budgetAvailable(this);
+                }
+            }
+        }
+    }
+
+    public void addListener(Listener listener)
+    {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener)
+    {
+        _listeners.remove(listener);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemoryBudget{used=" + _used.get() + ", limit=" + _limit + "}";
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+/**
+ * A snapshot of the heap held by a {@link Transport} and the connection bound to it.
+ * <p>
+ * Delivery bytes are the payload held by incoming deliveries not yet read by the
+ * application and by outgoing deliveries not yet written to the transport. The buffer
+ * figures are the capacity allocated by the frame parser, the frame writer and output
+ * buffer, and the SSL layer, whether or not it is currently filled.
+ *
+ * @see Transport#getMemoryUsage()
+ */
+public final class MemoryUsage
+{
+    private final long _incomingDeliveryBytes;
+    private final long _outgoingDeliveryBytes;
+    private final long _parserBytes;
+    private final long _writerBytes;
+    private final long _sslBytes;
+
+    public MemoryUsage(long incomingDeliveryBytes, long outgoingDeliveryBytes,
+                       long parserBytes, long writerBytes, long sslBytes)
+    {
+        _incomingDeliveryBytes = incomingDeliveryBytes;
+        _outgoingDeliveryBytes = outgoingDeliveryBytes;
+        _parserBytes = parserBytes;
+        _writerBytes = writerBytes;
+        _sslBytes = sslBytes;
+    }
+
+    /**
+     * @return the bytes received for incoming deliveries that the application has not yet read
+     */
+    public long getIncomingDeliveryBytes()
+    {
+        return _incomingDeliveryBytes;
+    }
+
+    /**
+     * @return the bytes sent on outgoing deliveries that have not yet been written as frames
+     */
+    public long getOutgoingDeliveryBytes()
+    {
+        return _outgoingDeliveryBytes;
+    }
+
+    /**
+     * @return the capacity of the buffers holding input and partially received frames
+     */
+    public long getParserBytes()
+    {
+        return _parserBytes;
+    }
+
+    /**
+     * @return the capacity of the buffers holding encoded frames and output waiting for the network
+     */
+    public long getWriterBytes()
+    {
+        return _writerBytes;
+    }
+
+    /**
+     * @return the capacity of the buffers held by the SSL layer, or 0 if SSL is not in use
+     */
+    public long getSslBytes()
+    {
+        return _sslBytes;
+    }
+
+    public long getTotal()
+    {
+        return _incomingDeliveryBytes + _outgoingDeliveryBytes + _parserBytes + _writerBytes + _sslBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "MemoryUsage{total=" + getTotal() +
+               ", incomingDeliveryBytes=" + _incomingDeliveryBytes +
+               ", outgoingDeliveryBytes=" + _outgoingDeliveryBytes +
+               ", parserBytes=" + _parserBytes +
+               ", writerBytes=" + _writerBytes +
+               ", sslBytes=" + _sslBytes + "}";
+    }
+}
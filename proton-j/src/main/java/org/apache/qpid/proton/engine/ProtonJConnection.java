@@ -31,4 +31,20 @@ public interface ProtonJConnection extends Connection, ProtonJEndpoint
     ProtonJSession session();
 
     int getMaxChannels();
+
+    /**
+     * Sets the number of settled and freed {@link org.apache.qpid.proton.engine.Delivery} objects this
+     * connection keeps for reuse by subsequently created deliveries. Pooling is disabled by default.
+     *
+     * A delivery is only recycled once {@link org.apache.qpid.proton.engine.Delivery#free()} has been
+     * called on it and the engine no longer needs it, i.e. it is settled, has no outstanding work and
+     * is not the context of any event still held in the collector. Applications enabling the pool must
+     * not use a delivery after freeing it; doing so fails with an {@link IllegalStateException} while
+     * the object sits in the pool.
+     *
+     * @param deliveryPoolSize the maximum number of pooled deliveries, or 0 to disable pooling
+     */
+    void setDeliveryPoolSize(int deliveryPoolSize);
+
+    int getDeliveryPoolSize();
 }
@@ -20,6 +20,7 @@ package org.apache.qpid.proton.engine;
 
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.impl.ProtocolTracer;
+import org.apache.qpid.proton.framing.FrameCapture;
 
 /**
  * Extends {@link Transport} with functionality that is specific to proton-j
@@ -29,4 +30,12 @@ public interface ProtonJTransport extends Transport
     void setProtocolTracer(ProtocolTracer protocolTracer);
 
     ProtocolTracer getProtocolTracer();
+
+    /**
+     * Records this connection's raw AMQP frames into the given capture, or stops recording them
+     * if it is null.
+     */
+    void setFrameCapture(FrameCapture frameCapture);
+
+    FrameCapture getFrameCapture();
 }
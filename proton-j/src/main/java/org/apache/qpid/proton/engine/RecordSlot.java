@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RecordAccessor} whose values are stored in a fixed slot of the record rather than a map.
+ * <p>
+ * Each slot is assigned the next free index when it is created, so slots are best
+ * instantiated as static final members. Records created by the engine hold slotted
+ * values in a small array, so getting or setting one is an array access with no
+ * hashing. Once {@link #MAX_SLOTS} slots exist, further ones still work but are
+ * stored in the record's map like any other key.
+ * <pre><code>
+ *   private static final RecordSlot&lt;Bar&gt; BAR = new RecordSlot&lt;&gt;(Bar.class);
+ *   ...
+ *   Bar bar = BAR.get(link);
+ *   BAR.set(link, new Bar());
+ * </code></pre>
+ *
+ * @param <T> The type of the data to be stored
+ */
+public final class RecordSlot<T> implements RecordAccessor<T>
+{
+    /**
+     * The number of fixed slots available.
+     */
+    public static final int MAX_SLOTS = 16;
+
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+    /**
+     * The slot used for the handler attached to an object, also used when
+     * {@link Handler Handler.class} is given as the key.
+     *
+     * @see BaseHandler#getHandler(Extendable)
+     */
+    public static final RecordSlot<Handler> HANDLER = new RecordSlot<Handler>(Handler.class);
+
+    private final Class<T> klass;
+    private final int slot;
+
+    public RecordSlot(Class<T> klass)
+    {
+        this.klass = klass;
+        int next = NEXT_SLOT.getAndIncrement();
+        this.slot = next < MAX_SLOTS ? next : -1;
+    }
+
+    /**
+     * @return the slot index, or -1 if the value is stored by key
+     */
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    public Class<T> getType()
+    {
+        return klass;
+    }
+
+    @Override
+    public T get(Record record)
+    {
+        return record.get(this, klass);
+    }
+
+    @Override
+    public void set(Record record, T value)
+    {
+        record.set(this, klass, value);
+    }
+
+    public T get(Extendable extendable)
+    {
+        return extendable.attachments().get(this, klass);
+    }
+
+    public void set(Extendable extendable, T value)
+    {
+        extendable.attachments().set(this, klass, value);
+    }
+}
@@ -37,6 +37,17 @@ public interface Sender extends Link
     //TODO is this absolute or cumulative?
     public void offer(int credits);
 
+    /**
+     * Creates a new delivery whose tag is generated by this sender.
+     *
+     * Tags are taken from a per-link counter encoded in as few bytes as possible. Once a delivery
+     * with a generated tag is settled on both ends, in either order, or its pre-settled transfer has
+     * been written, its tag is kept in a small pool and handed out again by a later call to this method.
+     *
+     * @return a new Delivery object
+     */
+    public Delivery delivery();
+
     /**
      * Sends some data for the current delivery.  The application may call this method multiple
      * times for the same delivery.
@@ -79,6 +90,41 @@ public interface Sender extends Link
      */
     public int sendNoCopy(ReadableBuffer buffer);
 
+    /**
+     * Sends a complete, pre-settled message without creating a {@link Delivery}, writing the
+     * Transfer frame straight to the transport.
+     * <p>
+     * This is a fast path for at-most-once sending. It only succeeds when the transfer can be
+     * written immediately: the connection is not closing, the link is attached, it and its
+     * session have credit, no other deliveries are queued on the link and the payload fits in a
+     * single frame. No delivery or flow events are raised for messages sent this way.
+     *
+     * @param payload the encoded message, which is fully consumed on success
+     *
+     * @return true if the message was written, false if nothing was written and the message
+     *         must be sent through a regular delivery instead
+     */
+    public boolean sendPresettled(ReadableBuffer payload);
+
+    /**
+     * Enqueues a batch of complete messages as deliveries in a single call.
+     * <p>
+     * Each payload becomes its own delivery, equivalent to calling {@link #delivery(byte[])},
+     * {@link #sendNoCopy(ReadableBuffer)} and {@link #advance()} for it, but the link, session and
+     * connection bookkeeping is done once for the whole batch and the transport writes the
+     * Transfer frames back to back. As with sendNoCopy the payload buffers are retained until
+     * the transport has written them.
+     *
+     * @param payloads the encoded messages to send
+     * @param tags the delivery tags, one per payload, or null to use tags generated as by {@link #delivery()}
+     * @param settled whether to settle the deliveries immediately, sending them pre-settled
+     *
+     * @return the deliveries created, in the order of the payloads
+     *
+     * @throws IllegalStateException if the current delivery has not been advanced
+     */
+    public Delivery[] sendBatch(ReadableBuffer[] payloads, byte[][] tags, boolean settled);
+
     /**
      * Abort the current delivery.
      *
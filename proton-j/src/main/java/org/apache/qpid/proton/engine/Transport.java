@@ -303,6 +303,29 @@ public interface Transport extends Endpoint
 
     long getFramesOutput();
 
+    /**
+     * @return a live view of the frames, bytes and deliveries handled by this transport,
+     * which may be read from any thread
+     */
+    TransportMetrics getMetrics();
+
+    /**
+     * @return the heap currently held by this transport and the connection bound to it
+     */
+    MemoryUsage getMemoryUsage();
+
+    /**
+     * Sets the budget this transport's memory usage counts against, replacing any previous
+     * budget. While the budget is exceeded the transport reports no input capacity and
+     * withholds link credit granted by its receivers. Unbinding the transport releases its
+     * usage from the budget.
+     *
+     * @param budget the budget, which may be shared with other transports, or null for none
+     */
+    void setMemoryBudget(MemoryBudget budget);
+
+    MemoryBudget getMemoryBudget();
+
     /**
      * Configure whether a synthetic Flow event should be emitted when messages are sent,
      * reflecting a change in the credit level on the link that may prompt other action.
@@ -315,6 +338,23 @@ public interface Transport extends Endpoint
 
     boolean isEmitFlowEventOnSend();
 
+    /**
+     * Configure the credit replenish threshold for receiving links.
+     *
+     * When non-zero, credit granted via {@link Receiver#flow(int)} is held back while the
+     * amount pending is below the threshold and the peer still has at least that much
+     * credit outstanding, allowing many small top-ups to be carried by a single Flow frame.
+     * Pending credit is always sent once the threshold is reached, when the outstanding
+     * credit falls below it, when draining, or when the session window must be reopened.
+     *
+     * Defaults to 0, meaning every credit update is sent at the next opportunity.
+     *
+     * @param credits the replenish threshold, in credits
+     */
+    void setFlowReplenishThreshold(int credits);
+
+    int getFlowReplenishThreshold();
+
     /**
      * Set an upper limit on the size of outgoing frames that will be sent
      * to the peer. Allows constraining the transport not to emit Transfer
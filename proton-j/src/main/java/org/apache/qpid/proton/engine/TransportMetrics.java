@@ -0,0 +1,128 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+/**
+ * A live view of the activity of a {@link Transport} and its connection.
+ * <p>
+ * The counters are updated by the thread processing the transport and may be read from
+ * any thread. Each value is individually up to date, but values read one after another
+ * are not a consistent snapshot of each other.
+ *
+ * @see Transport#getMetrics()
+ */
+public interface TransportMetrics
+{
+    /**
+     * The kinds of AMQP frame counted separately.
+     */
+    enum Performative
+    {
+        OPEN,
+        BEGIN,
+        ATTACH,
+        FLOW,
+        TRANSFER,
+        DISPOSITION,
+        DETACH,
+        END,
+        CLOSE,
+        /** Empty frames, as sent to keep an idle connection alive. */
+        EMPTY
+    }
+
+    /**
+     * The number of buckets in the settle latency histogram.
+     */
+    int SETTLE_LATENCY_BUCKETS = 32;
+
+    long getFramesInput();
+
+    long getFramesOutput();
+
+    long getFramesInput(Performative performative);
+
+    long getFramesOutput(Performative performative);
+
+    long getBytesInput();
+
+    long getBytesOutput();
+
+    /**
+     * @return the number of outgoing deliveries whose final Transfer frame has been written
+     */
+    long getDeliveriesSent();
+
+    /**
+     * @return the number of incoming deliveries that have started to arrive
+     */
+    long getDeliveriesReceived();
+
+    /**
+     * @return the number of unsettled outgoing deliveries the peer has settled
+     */
+    long getDeliveriesSettled();
+
+    /**
+     * @return the number of incoming deliveries the peer aborted
+     */
+    long getDeliveriesAborted();
+
+    /**
+     * @return the number of times a sending link with pending transfers ran out of link credit
+     */
+    long getCreditStalls();
+
+    /**
+     * @return the number of times a session with pending transfers was held back by the
+     * peer's incoming window
+     */
+    long getSessionWindowStalls();
+
+    /**
+     * @return the largest number of bytes that have been waiting in the output buffer
+     */
+    long getOutputBufferHighWaterMark();
+
+    /**
+     * @return the number of settle latencies recorded for the deliveries counted by
+     * {@link #getDeliveriesSettled()}
+     */
+    long getSettleLatencyCount();
+
+    /**
+     * @return the sum in nanoseconds of the recorded settle latencies, measured from the
+     * first Transfer frame of a delivery being written to the peer's settling Disposition
+     * being received
+     */
+    long getSettleLatencyTotalNanos();
+
+    /**
+     * Returns the settle latency histogram.
+     * <p>
+     * Bucket 0 counts latencies under one microsecond. Bucket <code>n</code> counts
+     * latencies of at least 2<sup>n-1</sup> but less than 2<sup>n</sup> microseconds.
+     * The last bucket also counts everything larger.
+     *
+     * @return a copy of the histogram, {@link #SETTLE_LATENCY_BUCKETS} long
+     */
+    long[] getSettleLatencyHistogram();
+}
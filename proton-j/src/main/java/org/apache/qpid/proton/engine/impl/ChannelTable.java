@@ -0,0 +1,123 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import java.util.Arrays;
+
+/**
+ * Maps AMQP channel numbers to sessions.
+ *
+ * Channels are small dense integers bounded by channel-max, so the table is
+ * an array indexed by channel that grows on demand, with a bitmap of the
+ * channels in use for finding the lowest free one when allocating.
+ */
+class ChannelTable
+{
+    private static final int INITIAL_SIZE = 16;
+    private static final int MAX_SIZE = 1 << 16;
+
+    private TransportSession[] _sessions = new TransportSession[INITIAL_SIZE];
+    private long[] _used = new long[1];
+
+    TransportSession get(int channel)
+    {
+        return channel >= 0 && channel < _sessions.length ? _sessions[channel] : null;
+    }
+
+    void put(int channel, TransportSession session)
+    {
+        if (channel < 0 || channel >= MAX_SIZE)
+        {
+            throw new IllegalArgumentException("Channel " + channel + " is outside the range [0-" + MAX_SIZE + ")");
+        }
+        ensureCapacity(channel);
+        _sessions[channel] = session;
+        _used[channel >>> 6] |= 1L << channel;
+    }
+
+    void remove(int channel)
+    {
+        if (channel >= 0 && channel < _sessions.length)
+        {
+            _sessions[channel] = null;
+            _used[channel >>> 6] &= ~(1L << channel);
+        }
+    }
+
+    /**
+     * Assigns the session to the lowest free channel below the given limit.
+     *
+     * @return the channel, or -1 if all of them are in use
+     */
+    int allocate(TransportSession session, int limit)
+    {
+        for (int word = 0; word < _used.length; word++)
+        {
+            long free = ~_used[word];
+            if (free != 0)
+            {
+                int channel = (word << 6) + Long.numberOfTrailingZeros(free);
+                if (channel >= limit)
+                {
+                    return -1;
+                }
+                put(channel, session);
+                return channel;
+            }
+        }
+
+        int channel = _used.length << 6;
+        if (channel >= limit || channel >= MAX_SIZE)
+        {
+            return -1;
+        }
+        put(channel, session);
+        return channel;
+    }
+
+    /**
+     * @return the number of slots currently backing the table, all channels
+     * in use are below this
+     */
+    int capacity()
+    {
+        return _sessions.length;
+    }
+
+    private void ensureCapacity(int channel)
+    {
+        if (channel >= _sessions.length)
+        {
+            int size = _sessions.length;
+            while (size <= channel)
+            {
+                size <<= 1;
+            }
+            _sessions = Arrays.copyOf(_sessions, Math.min(size, MAX_SIZE));
+        }
+        int words = (channel >>> 6) + 1;
+        if (words > _used.length)
+        {
+            _used = Arrays.copyOf(_used, Math.max(words, _sessions.length >>> 6));
+        }
+    }
+}
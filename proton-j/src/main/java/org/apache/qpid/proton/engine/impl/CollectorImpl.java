@@ -20,6 +20,10 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.apache.qpid.proton.engine.Collector;
 import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.engine.EventType;
@@ -37,9 +41,130 @@ public class CollectorImpl implements Collector
     private EventImpl tail;
     private EventImpl free;
 
+    private static final int CORE_TYPES = Event.Type.values().length;
+
+    // indexed by Event.Type ordinal, null when every event is of interest
+    private boolean[] interest;
+    private Set<EventType> customInterest;
+    private final boolean[] required = new boolean[CORE_TYPES];
+
+    // first pending event for each context, when coalescing; events for the
+    // same context are chained through EventImpl.pendingNext
+    private IdentityHashMap<Object, EventImpl> pending;
+
+    private HandlerTracer handlerTracer;
+
     public CollectorImpl()
     {}
 
+    @Override
+    public void setInterest(Set<? extends EventType> types)
+    {
+        if (types == null) {
+            interest = null;
+            customInterest = null;
+            return;
+        }
+
+        boolean[] mask = new boolean[CORE_TYPES];
+        Set<EventType> custom = null;
+        for (EventType type : types) {
+            if (type instanceof Event.Type) {
+                mask[((Event.Type) type).ordinal()] = true;
+            } else if (type != null) {
+                if (custom == null) {
+                    custom = new HashSet<EventType>();
+                }
+                custom.add(type);
+            }
+        }
+        interest = mask;
+        customInterest = custom;
+    }
+
+    @Override
+    public boolean isInterested(EventType type)
+    {
+        if (interest == null) {
+            return true;
+        } else if (type instanceof Event.Type) {
+            int ordinal = ((Event.Type) type).ordinal();
+            return interest[ordinal] || required[ordinal];
+        } else {
+            return customInterest != null && customInterest.contains(type);
+        }
+    }
+
+    /**
+     * Marks event types that are collected regardless of the interest set
+     * by {@link #setInterest(Set)}, for use by components that drive their
+     * own processing through this collector.
+     *
+     * @param types the event types that must always be collected
+     */
+    public void require(Event.Type... types)
+    {
+        for (Event.Type type : types) {
+            required[type.ordinal()] = true;
+        }
+    }
+
+    /**
+     * Sets the tracer told as each handler handles the events collected from now on.
+     *
+     * @param tracer the tracer, or null for none
+     */
+    public void setHandlerTracer(HandlerTracer tracer)
+    {
+        handlerTracer = tracer;
+    }
+
+    @Override
+    public void setCoalescing(boolean coalesce)
+    {
+        if (!coalesce) {
+            pending = null;
+        } else if (pending == null) {
+            pending = new IdentityHashMap<Object, EventImpl>();
+        }
+    }
+
+    @Override
+    public boolean isCoalescing()
+    {
+        return pending != null;
+    }
+
+    private EventImpl findPending(EventType type, Object context)
+    {
+        EventImpl event = pending.get(context);
+        while (event != null && event.getEventType() != type) {
+            event = event.pendingNext;
+        }
+        return event;
+    }
+
+    private void removePending(EventImpl event)
+    {
+        Object context = event.getContext();
+        EventImpl first = pending.get(context);
+        if (first == event) {
+            if (event.pendingNext == null) {
+                pending.remove(context);
+            } else {
+                pending.put(context, event.pendingNext);
+            }
+        } else {
+            EventImpl prev = first;
+            while (prev != null && prev.pendingNext != event) {
+                prev = prev.pendingNext;
+            }
+            if (prev != null) {
+                prev.pendingNext = event.pendingNext;
+            }
+        }
+    }
+
     @Override
     public Event peek()
     {
@@ -51,10 +176,20 @@ public class CollectorImpl implements Collector
     {
         if (head != null) {
             EventImpl next = head.next;
+            Object context = head.getContext();
+            if (pending != null) {
+                removePending(head);
+            }
             head.next = free;
             free = head;
             head.clear();
             head = next;
+
+            if (context instanceof DeliveryImpl) {
+                DeliveryImpl delivery = (DeliveryImpl) context;
+                delivery.eventRemoved();
+                delivery.recycleIfReleased();
+            }
         }
     }
 
@@ -66,10 +201,16 @@ public class CollectorImpl implements Collector
         if (!type.isValid()) {
             throw new IllegalArgumentException("Cannot put events of type " + type);
         }
+        if (interest != null && !isInterested(type)) {
+            return null;
+        }
         if (tail != null && tail.getEventType() == type &&
             tail.getContext() == context) {
             return null;
         }
+        if (pending != null && findPending(type, context) != null) {
+            return null;
+        }
 
         EventImpl event;
         if (free == null) {
@@ -81,6 +222,13 @@ public class CollectorImpl implements Collector
         }
 
         event.init(type, context);
+        event.tracer = handlerTracer;
+        if (pending != null) {
+            event.pendingNext = pending.put(context, event);
+        }
+        if (context instanceof DeliveryImpl) {
+            ((DeliveryImpl) context).eventAdded();
+        }
 
         if (head == null) {
             head = event;
@@ -52,6 +52,9 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
     private LinkNode<LinkImpl> _linkHead;
     private LinkNode<LinkImpl> _linkTail;
 
+    private final EndpointStateIndex<SessionImpl> _sessionIndex = new EndpointStateIndex<SessionImpl>();
+    private final EndpointStateIndex<LinkImpl> _linkIndex = new EndpointStateIndex<LinkImpl>();
+
 
     private DeliveryImpl _workHead;
     private DeliveryImpl _workTail;
@@ -60,6 +63,8 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
     private DeliveryImpl _transportWorkHead;
     private DeliveryImpl _transportWorkTail;
     private int _transportWorkSize = 0;
+    private long _incomingBytes;
+    private long _outgoingBytes;
     private String _localContainerId = "";
     private String _localHostname;
     private String _remoteContainer;
@@ -75,6 +80,12 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
     private CollectorImpl _collector;
     private Reactor _reactor;
 
+    // Pooled deliveries are reused oldest first, so a freed delivery stays pooled, where
+    // using it throws, for as long as possible before it is handed out again
+    private DeliveryImpl[] _deliveryPool;
+    private int _deliveryPoolHead;
+    private int _deliveryPoolCount;
+
     private static final Symbol[] EMPTY_SYMBOL_ARRAY = new Symbol[0];
 
     /**
@@ -97,6 +108,8 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
     void freeSession(SessionImpl session)
     {
         _sessions.remove(session);
+        incrementIncomingBytes(-session.getIncomingBytes());
+        incrementOutgoingBytes(-session.getOutgoingBytes());
     }
 
     protected LinkNode<SessionImpl> addSessionEndpoint(SessionImpl endpoint)
@@ -110,6 +123,7 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         {
             node = _sessionTail = _sessionTail.addAtTail(endpoint);
         }
+        _sessionIndex.add(endpoint);
         return node;
     }
 
@@ -127,6 +141,7 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
             _sessionTail = prev;
         }
         node.remove();
+        _sessionIndex.remove(node.getValue());
     }
 
 
@@ -141,6 +156,7 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         {
             node = _linkTail = _linkTail.addAtTail(endpoint);
         }
+        _linkIndex.add(endpoint);
         return node;
     }
 
@@ -159,6 +175,7 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
             _linkTail = prev;
         }
         node.remove();
+        _linkIndex.remove(node.getValue());
     }
 
 
@@ -169,14 +186,21 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         {
             return null;
         }
+        else if(local == null && remote == null)
+        {
+            return _sessionHead.getValue();
+        }
         else
         {
-            LinkNode.Query<SessionImpl> query = new EndpointImplQuery<SessionImpl>(local, remote);
-            LinkNode<SessionImpl> node = query.matches(_sessionHead) ? _sessionHead : _sessionHead.next(query);
-            return node == null ? null : node.getValue();
+            return _sessionIndex.head(local, remote);
         }
     }
 
+    SessionImpl nextSession(SessionImpl session, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        return _sessionIndex.next(session, local, remote);
+    }
+
     @Override
     public Link linkHead(EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
     {
@@ -184,14 +208,21 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         {
             return null;
         }
+        else if(local == null && remote == null)
+        {
+            return _linkHead.getValue();
+        }
         else
         {
-            LinkNode.Query<LinkImpl> query = new EndpointImplQuery<LinkImpl>(local, remote);
-            LinkNode<LinkImpl> node = query.matches(_linkHead) ? _linkHead : _linkHead.next(query);
-            return node == null ? null : node.getValue();
+            return _linkIndex.head(local, remote);
         }
     }
 
+    LinkImpl nextLink(LinkImpl link, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        return _linkIndex.next(link, local, remote);
+    }
+
     @Override
     protected ConnectionImpl getConnectionImpl()
     {
@@ -212,6 +243,30 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         _sessions = null;
     }
 
+    long getIncomingBytes() {
+        return _incomingBytes;
+    }
+
+    long getOutgoingBytes() {
+        return _outgoingBytes;
+    }
+
+    void incrementIncomingBytes(int delta) {
+        _incomingBytes += delta;
+        deliveryBytesChanged();
+    }
+
+    void incrementOutgoingBytes(int delta) {
+        _outgoingBytes += delta;
+        deliveryBytesChanged();
+    }
+
+    private void deliveryBytesChanged() {
+        if (_transport != null) {
+            _transport.updateMemoryBudget();
+        }
+    }
+
     void modifyEndpoints() {
         if (_sessions != null) {
             for (SessionImpl ssn: _sessions) {
@@ -301,6 +356,60 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         _localContainerId = localContainerId;
     }
 
+    @Override
+    public void setDeliveryPoolSize(int deliveryPoolSize)
+    {
+        if (deliveryPoolSize < 0)
+        {
+            throw new IllegalArgumentException("Delivery pool size must not be negative: " + deliveryPoolSize);
+        }
+
+        DeliveryImpl[] pool = deliveryPoolSize == 0 ? null : new DeliveryImpl[deliveryPoolSize];
+        _deliveryPoolCount = Math.min(_deliveryPoolCount, deliveryPoolSize);
+        for (int i = 0; i < _deliveryPoolCount; i++)
+        {
+            pool[i] = _deliveryPool[(_deliveryPoolHead + i) % _deliveryPool.length];
+        }
+        _deliveryPool = pool;
+        _deliveryPoolHead = 0;
+    }
+
+    @Override
+    public int getDeliveryPoolSize()
+    {
+        return _deliveryPool == null ? 0 : _deliveryPool.length;
+    }
+
+    int getPooledDeliveryCount()
+    {
+        return _deliveryPoolCount;
+    }
+
+    boolean hasDeliveryPoolCapacity()
+    {
+        return _deliveryPool != null && _deliveryPoolCount < _deliveryPool.length;
+    }
+
+    void releaseDelivery(DeliveryImpl delivery)
+    {
+        _deliveryPool[(_deliveryPoolHead + _deliveryPoolCount++) % _deliveryPool.length] = delivery;
+    }
+
+    DeliveryImpl obtainDelivery(byte[] tag, int offset, int length, LinkImpl link, DeliveryImpl previous)
+    {
+        if (_deliveryPoolCount == 0)
+        {
+            return new DeliveryImpl(tag, offset, length, link, previous);
+        }
+
+        DeliveryImpl delivery = _deliveryPool[_deliveryPoolHead];
+        _deliveryPool[_deliveryPoolHead] = null;
+        _deliveryPoolHead = (_deliveryPoolHead + 1) % _deliveryPool.length;
+        _deliveryPoolCount--;
+        delivery.reuse(tag, offset, length, link, previous);
+        return delivery;
+    }
+
     @Override
     public DeliveryImpl getWorkHead()
     {
@@ -591,6 +700,28 @@ public class ConnectionImpl extends EndpointImpl implements ProtonJConnection
         _transportWorkSize++;
     }
 
+    void addTransportWork(DeliveryImpl[] deliveries)
+    {
+        modified();
+        for (DeliveryImpl delivery : deliveries)
+        {
+            if (delivery._transportWork) continue;
+
+            delivery.setTransportWorkNext(null);
+            delivery.setTransportWorkPrev(_transportWorkTail);
+
+            if (_transportWorkTail != null) {
+                _transportWorkTail.setTransportWorkNext(delivery);
+            } else {
+                _transportWorkHead = delivery;
+            }
+
+            _transportWorkTail = delivery;
+            delivery._transportWork = true;
+            _transportWorkSize++;
+        }
+    }
+
     void workUpdate(DeliveryImpl delivery)
     {
         if(delivery != null)
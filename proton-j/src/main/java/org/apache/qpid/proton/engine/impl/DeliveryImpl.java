@@ -23,6 +23,7 @@ package org.apache.qpid.proton.engine.impl;
 import java.util.Arrays;
 
 import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.codec.CompositeReadableBuffer;
 import org.apache.qpid.proton.codec.ReadableBuffer;
@@ -51,8 +52,12 @@ public class DeliveryImpl implements Delivery
     private Record _attachments;
     private Object _context;
 
-    private final byte[] _tag;
-    private final LinkImpl _link;
+    private byte[] _tag;
+    private int _tagOffset;
+    private int _tagLength;
+    private Binary _tagBinary;
+    private boolean _tagGenerated;
+    private LinkImpl _link;
     private DeliveryState _deliveryState;
     private boolean _settled;
     private boolean _remoteSettled;
@@ -74,10 +79,34 @@ public class DeliveryImpl implements Delivery
 
     private CompositeReadableBuffer _dataBuffer;
     private ReadableBuffer _dataView;
+    private CompositeReadableBuffer _spareDataBuffer;
+
+    /*
+     * State used to decide when a freed delivery can be returned to the connection's delivery pool,
+     * see ConnectionImpl#setDeliveryPoolSize(int).
+     */
+    private boolean _freed;
+    private boolean _pooled;
+    private boolean _sessionUnsettled;
+    private int _pendingEvents;
+    private int _generation;
+    private TransportDelivery _spareTransportDelivery;
 
     DeliveryImpl(final byte[] tag, final LinkImpl link, DeliveryImpl previous)
+    {
+        this(tag, 0, tag == null ? 0 : tag.length, link, previous);
+    }
+
+    DeliveryImpl(final byte[] tag, int offset, int length, final LinkImpl link, DeliveryImpl previous)
+    {
+        init(tag, offset, length, link, previous);
+    }
+
+    void init(final byte[] tag, int offset, int length, final LinkImpl link, DeliveryImpl previous)
     {
         _tag = tag;
+        _tagOffset = offset;
+        _tagLength = length;
         _link = link;
         _link.incrementUnsettled();
         _linkPrevious = previous;
@@ -90,48 +119,106 @@ public class DeliveryImpl implements Delivery
     @Override
     public byte[] getTag()
     {
+        checkNotRecycled();
+        if (_tag != null && (_tagOffset != 0 || _tagLength != _tag.length))
+        {
+            _tag = Arrays.copyOfRange(_tag, _tagOffset, _tagOffset + _tagLength);
+            _tagOffset = 0;
+        }
+
         return _tag;
     }
 
+    /**
+     * @return the tag of this delivery as a Binary, created once and reused for every transfer
+     *         so that slice tags are not copied.
+     */
+    Binary getTagBinary()
+    {
+        if (_tagBinary == null)
+        {
+            _tagBinary = new Binary(_tag, _tagOffset, _tagLength);
+        }
+
+        return _tagBinary;
+    }
+
+    void setTagGenerated()
+    {
+        _tagGenerated = true;
+    }
+
     @Override
     public LinkImpl getLink()
     {
+        checkNotRecycled();
         return _link;
     }
 
+    /**
+     * Returns the number of times this delivery object has been recycled through the connection's
+     * delivery pool. Code that retains a reference to a delivery after freeing it can compare the
+     * generation to detect that the object now represents a different delivery.
+     *
+     * @return the recycle generation of this delivery object
+     */
+    public int getGeneration()
+    {
+        return _generation;
+    }
+
+    boolean isPooled()
+    {
+        return _pooled;
+    }
+
+    private void checkNotRecycled()
+    {
+        if (_pooled)
+        {
+            throw new IllegalStateException("Delivery has been freed and recycled");
+        }
+    }
+
     @Override
     public DeliveryState getLocalState()
     {
+        checkNotRecycled();
         return _deliveryState;
     }
 
     @Override
     public DeliveryState getRemoteState()
     {
+        checkNotRecycled();
         return _remoteDeliveryState;
     }
 
     @Override
     public boolean remotelySettled()
     {
+        checkNotRecycled();
         return _remoteSettled;
     }
 
     @Override
     public void setMessageFormat(int messageFormat)
     {
+        checkNotRecycled();
         _messageFormat = messageFormat;
     }
 
     @Override
     public int getMessageFormat()
     {
+        checkNotRecycled();
         return _messageFormat;
     }
 
     @Override
     public void disposition(final DeliveryState state)
     {
+        checkNotRecycled();
         _deliveryState = state;
         if(!_remoteSettled && !_settled)
         {
@@ -142,6 +229,7 @@ public class DeliveryImpl implements Delivery
     @Override
     public void settle()
     {
+        checkNotRecycled();
         if (_settled) {
             return;
         }
@@ -155,6 +243,7 @@ public class DeliveryImpl implements Delivery
         else
         {
             _transportDelivery.settled();
+            releaseGeneratedTag();
         }
 
         if(_link.current() == this)
@@ -187,6 +276,7 @@ public class DeliveryImpl implements Delivery
     @Override
     public DeliveryImpl next()
     {
+        checkNotRecycled();
         return getLinkNext();
     }
 
@@ -194,6 +284,107 @@ public class DeliveryImpl implements Delivery
     public void free()
     {
         settle();
+        _freed = true;
+        recycleIfReleased();
+    }
+
+    void setSessionUnsettled(boolean sessionUnsettled)
+    {
+        _sessionUnsettled = sessionUnsettled;
+    }
+
+    void eventAdded()
+    {
+        _pendingEvents++;
+    }
+
+    void eventRemoved()
+    {
+        _pendingEvents--;
+    }
+
+    /**
+     * Returns this delivery to the connection's delivery pool once the application has freed it and
+     * neither the engine nor any pending event still refers to it.
+     */
+    void recycleIfReleased()
+    {
+        if (!_freed || _pooled || _work || _transportWork || _sessionUnsettled || _pendingEvents > 0)
+        {
+            return;
+        }
+
+        final ConnectionImpl connection = _link.getConnectionImpl();
+        if (connection == null || !connection.hasDeliveryPoolCapacity())
+        {
+            return;
+        }
+
+        final TransportLink<?> transportLink = _link.getTransportLink();
+        if (transportLink instanceof TransportSender &&
+            ((TransportSender) transportLink).getInProgressDelivery() == this)
+        {
+            return;
+        }
+
+        reset();
+        connection.releaseDelivery(this);
+    }
+
+    private void reset()
+    {
+        _linkPrevious = null;
+        _linkNext = null;
+        _workNext = null;
+        _workPrev = null;
+        _transportWorkNext = null;
+        _transportWorkPrev = null;
+        if (_attachments != null)
+        {
+            _attachments.clear();
+        }
+        _context = null;
+        _tag = null;
+        _tagOffset = 0;
+        _tagLength = 0;
+        _tagBinary = null;
+        _tagGenerated = false;
+        _link = null;
+        _deliveryState = null;
+        _settled = false;
+        _remoteSettled = false;
+        _remoteDeliveryState = null;
+        _defaultDeliveryState = null;
+        _messageFormat = DEFAULT_MESSAGE_FORMAT;
+        _flags = 0;
+        if (_transportDelivery != null)
+        {
+            _spareTransportDelivery = _transportDelivery;
+            _transportDelivery = null;
+        }
+        _complete = false;
+        _updated = false;
+        _done = false;
+        _aborted = false;
+        if (_dataBuffer != null)
+        {
+            // Emptied of any data the application did not read, keeping the buffer itself
+            _dataBuffer.clear();
+            _dataBuffer.position(_dataBuffer.limit());
+            _dataBuffer.reclaimRead();
+            _spareDataBuffer = _dataBuffer;
+        }
+        _dataBuffer = null;
+        _dataView = null;
+        _freed = false;
+        _pooled = true;
+        _generation++;
+    }
+
+    void reuse(final byte[] tag, int offset, int length, final LinkImpl link, DeliveryImpl previous)
+    {
+        _pooled = false;
+        init(tag, offset, length, link, previous);
     }
 
     DeliveryImpl getLinkPrevious()
@@ -204,6 +395,7 @@ public class DeliveryImpl implements Delivery
     @Override
     public DeliveryImpl getWorkNext()
     {
+        checkNotRecycled();
         if (_workNext != null)
             return _workNext;
         // the following hack is brought to you by the C implementation!
@@ -286,6 +478,7 @@ public class DeliveryImpl implements Delivery
     {
         DeliveryImpl next = _transportWorkNext;
         getLink().getConnectionImpl().removeTransportWork(this);
+        recycleIfReleased();
         return next;
     }
 
@@ -330,9 +523,32 @@ public class DeliveryImpl implements Delivery
         _transportDelivery = transportDelivery;
     }
 
+    TransportDelivery createTransportDelivery(UnsignedInteger deliveryId, TransportLink<?> transportLink)
+    {
+        TransportDelivery transportDelivery = _transportDelivery;
+        if (transportDelivery == null)
+        {
+            transportDelivery = _spareTransportDelivery;
+            _spareTransportDelivery = null;
+        }
+
+        if (transportDelivery == null)
+        {
+            transportDelivery = new TransportDelivery(deliveryId, this, transportLink);
+        }
+        else
+        {
+            transportDelivery.reset(deliveryId, transportLink);
+        }
+
+        _transportDelivery = transportDelivery;
+        return transportDelivery;
+    }
+
     @Override
     public boolean isSettled()
     {
+        checkNotRecycled();
         return _settled;
     }
 
@@ -370,6 +586,12 @@ public class DeliveryImpl implements Delivery
         return length;
     }
 
+    void setBatchPayload(ReadableBuffer buffer)
+    {
+        _dataView = buffer;
+        _complete = true;
+    }
+
     private byte[] copyContents(ReadableBuffer buffer)
     {
         byte[] copy = new byte[buffer.remaining()];
@@ -427,7 +649,15 @@ public class DeliveryImpl implements Delivery
     {
         if (_dataBuffer == null)
         {
-            _dataView = _dataBuffer = new CompositeReadableBuffer();
+            if (_spareDataBuffer != null)
+            {
+                _dataView = _dataBuffer = _spareDataBuffer;
+                _spareDataBuffer = null;
+            }
+            else
+            {
+                _dataView = _dataBuffer = new CompositeReadableBuffer();
+            }
         }
 
         return _dataBuffer;
@@ -463,12 +693,14 @@ public class DeliveryImpl implements Delivery
     @Override
     public int available()
     {
+        checkNotRecycled();
         return _dataView == null ? 0 : _dataView.remaining();
     }
 
     @Override
     public boolean isWritable()
     {
+        checkNotRecycled();
         return getLink() instanceof SenderImpl
                 && getLink().current() == this
                 && ((SenderImpl) getLink()).hasCredit();
@@ -477,6 +709,7 @@ public class DeliveryImpl implements Delivery
     @Override
     public boolean isReadable()
     {
+        checkNotRecycled();
         return getLink() instanceof ReceiverImpl
             && getLink().current() == this;
     }
@@ -494,12 +727,14 @@ public class DeliveryImpl implements Delivery
     @Override
     public boolean isAborted()
     {
+        checkNotRecycled();
         return _aborted;
     }
 
     @Override
     public boolean isPartial()
     {
+        checkNotRecycled();
         return !_complete;
     }
 
@@ -512,12 +747,14 @@ public class DeliveryImpl implements Delivery
     @Override
     public boolean isUpdated()
     {
+        checkNotRecycled();
         return _updated;
     }
 
     @Override
     public void clear()
     {
+        checkNotRecycled();
         _updated = false;
         getLink().getConnectionImpl().workUpdate(this);
     }
@@ -527,6 +764,19 @@ public class DeliveryImpl implements Delivery
         _done = true;
     }
 
+    /*
+     * Called once the delivery is settled at both ends, or has been settled locally and the
+     * settlement written to the peer, after which a generated tag can be handed out again.
+     */
+    void releaseGeneratedTag()
+    {
+        if (_tagGenerated)
+        {
+            _tagGenerated = false;
+            ((SenderImpl) _link).releaseTag(_tag);
+        }
+    }
+
     boolean isDone()
     {
         return _done;
@@ -541,6 +791,7 @@ public class DeliveryImpl implements Delivery
     @Override
     public boolean isBuffered()
     {
+        checkNotRecycled();
         if (_remoteSettled) return false;
         if (getLink() instanceof SenderImpl) {
             if (isDone()) {
@@ -561,18 +812,21 @@ public class DeliveryImpl implements Delivery
     @Override
     public Object getContext()
     {
+        checkNotRecycled();
         return _context;
     }
 
     @Override
     public void setContext(Object context)
     {
+        checkNotRecycled();
         _context = context;
     }
 
     @Override
     public Record attachments()
     {
+        checkNotRecycled();
         if(_attachments == null)
         {
             _attachments = new RecordImpl();
@@ -585,7 +839,8 @@ public class DeliveryImpl implements Delivery
     public String toString()
     {
         StringBuilder builder = new StringBuilder();
-        builder.append("DeliveryImpl [_tag=").append(Arrays.toString(_tag))
+        builder.append("DeliveryImpl [_tag=").append(_tag == null ? "null" :
+                Arrays.toString(Arrays.copyOfRange(_tag, _tagOffset, _tagOffset + _tagLength)))
             .append(", _link=").append(_link)
             .append(", _deliveryState=").append(_deliveryState)
             .append(", _settled=").append(_settled)
@@ -605,18 +860,21 @@ public class DeliveryImpl implements Delivery
     @Override
     public int pending()
     {
+        checkNotRecycled();
         return _dataView == null ? 0 : _dataView.remaining();
     }
 
     @Override
     public void setDefaultDeliveryState(DeliveryState state)
     {
+        checkNotRecycled();
         _defaultDeliveryState = state;
     }
 
     @Override
     public DeliveryState getDefaultDeliveryState()
     {
+        checkNotRecycled();
         return _defaultDeliveryState;
     }
 }
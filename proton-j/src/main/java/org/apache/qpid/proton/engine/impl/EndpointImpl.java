@@ -39,6 +39,13 @@ public abstract class EndpointImpl implements ProtonJEndpoint
     private Object _context;
     private Record _attachments = new RecordImpl();
 
+    // maintained by the EndpointStateIndex the endpoint belongs to
+    EndpointStateIndex<?> _stateIndex;
+    long _stateSeq;
+    int _stateBucket = -1;
+    EndpointImpl _stateNext;
+    EndpointImpl _statePrev;
+
     private int refcount = 1;
     boolean freed = false;
 
@@ -67,6 +74,7 @@ public abstract class EndpointImpl implements ProtonJEndpoint
         if (getLocalState() != EndpointState.ACTIVE)
         {
             _localState = EndpointState.ACTIVE;
+            stateChanged();
             localOpen();
             modified();
         }
@@ -78,6 +86,7 @@ public abstract class EndpointImpl implements ProtonJEndpoint
         if (getLocalState() != EndpointState.CLOSED)
         {
             _localState = EndpointState.CLOSED;
+            stateChanged();
             localClose();
             modified();
         }
@@ -123,12 +132,30 @@ public abstract class EndpointImpl implements ProtonJEndpoint
     void setLocalState(EndpointState localState)
     {
         _localState = localState;
+        stateChanged();
     }
 
     void setRemoteState(EndpointState remoteState)
     {
         // TODO - check state change legal
         _remoteState = remoteState;
+        stateChanged();
+    }
+
+    private void stateChanged()
+    {
+        if (_stateIndex != null)
+        {
+            _stateIndex.update(this);
+        }
+    }
+
+    /**
+     * Returns the endpoint of the same kind created just before this one on the connection, if any.
+     */
+    EndpointImpl createdBefore()
+    {
+        return null;
     }
 
     void modified()
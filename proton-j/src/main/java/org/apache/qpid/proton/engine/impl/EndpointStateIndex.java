@@ -0,0 +1,232 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.engine.impl;
+
+import java.util.EnumSet;
+
+import org.apache.qpid.proton.engine.EndpointState;
+
+/**
+ * Indexes the sessions or links of a connection by their (local, remote) state pair so
+ * that state queries only visit matching endpoints.
+ *
+ * Each state pair has its own intrusive list, threaded through the endpoints themselves
+ * and kept in creation order. A query returns the matching endpoints in creation order
+ * by taking the oldest candidate across the matching lists, so each endpoint is visited
+ * at most once however states change during the walk.
+ *
+ * Each list also keeps a finger on where the last lookup in it landed. A walk resumes
+ * from the finger, so stepping over the matches of a walk costs the same whether or not
+ * the endpoint it was on has since moved to another list.
+ */
+class EndpointStateIndex<T extends EndpointImpl>
+{
+    private static final EndpointState[] STATES = EndpointState.values();
+    private static final int BUCKETS = STATES.length * STATES.length;
+
+    private final EndpointImpl[] _heads = new EndpointImpl[BUCKETS];
+    private final EndpointImpl[] _tails = new EndpointImpl[BUCKETS];
+    // the first endpoint of each list created after _fingerSeqs[i]
+    private final EndpointImpl[] _fingers = new EndpointImpl[BUCKETS];
+    private final long[] _fingerSeqs = new long[BUCKETS];
+    private long _created;
+
+    private static int bucket(EndpointState local, EndpointState remote)
+    {
+        return local.ordinal() * STATES.length + remote.ordinal();
+    }
+
+    private static boolean matches(int bucket, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        return (local == null || local.contains(STATES[bucket / STATES.length]))
+                && (remote == null || remote.contains(STATES[bucket % STATES.length]));
+    }
+
+    void add(T endpoint)
+    {
+        endpoint._stateIndex = this;
+        endpoint._stateSeq = ++_created;
+        insert(endpoint, bucket(endpoint.getLocalState(), endpoint.getRemoteState()));
+    }
+
+    void remove(T endpoint)
+    {
+        if (endpoint._stateIndex == this)
+        {
+            unlink(endpoint);
+            endpoint._stateIndex = null;
+        }
+    }
+
+    void update(EndpointImpl endpoint)
+    {
+        int bucket = bucket(endpoint.getLocalState(), endpoint.getRemoteState());
+        if (bucket != endpoint._stateBucket)
+        {
+            unlink(endpoint);
+            insert(endpoint, bucket);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    T head(EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        EndpointImpl head = null;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            EndpointImpl candidate = _heads[i];
+            if (candidate != null && (head == null || candidate._stateSeq < head._stateSeq) && matches(i, local, remote))
+            {
+                head = candidate;
+            }
+        }
+        return (T) head;
+    }
+
+    /**
+     * Returns the oldest endpoint in the given states that was created after the given one,
+     * whether or not that endpoint is itself still in those states or indexed at all.
+     */
+    @SuppressWarnings("unchecked")
+    T next(T endpoint, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        EndpointImpl next = null;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            if (_heads[i] != null && matches(i, local, remote))
+            {
+                EndpointImpl candidate = after(i, endpoint._stateSeq);
+                if (candidate != null && (next == null || candidate._stateSeq < next._stateSeq))
+                {
+                    next = candidate;
+                }
+            }
+        }
+        return (T) next;
+    }
+
+    private EndpointImpl after(int bucket, long seq)
+    {
+        EndpointImpl finger = _fingers[bucket];
+        if (seq >= _fingerSeqs[bucket])
+        {
+            while (finger != null && finger._stateSeq <= seq)
+            {
+                finger = finger._stateNext;
+            }
+        }
+        else
+        {
+            EndpointImpl prev = finger == null ? _tails[bucket] : finger._statePrev;
+            while (prev != null && prev._stateSeq > seq)
+            {
+                finger = prev;
+                prev = prev._statePrev;
+            }
+        }
+        _fingers[bucket] = finger;
+        _fingerSeqs[bucket] = seq;
+        return finger;
+    }
+
+    private void insert(EndpointImpl endpoint, int bucket)
+    {
+        // Find the newest older endpoint in the list, searching back from its tail and back
+        // through the endpoints created before this one at the same time. Endpoints mostly
+        // change state in the order they were created, so either search stops straight away.
+        long seq = endpoint._stateSeq;
+        EndpointImpl prev = _tails[bucket];
+        EndpointImpl created = endpoint.createdBefore();
+        while (prev != null && prev._stateSeq > seq)
+        {
+            if (created == null || (created._stateBucket == bucket && created._stateIndex == this))
+            {
+                prev = created;
+                break;
+            }
+            prev = prev._statePrev;
+            created = created.createdBefore();
+        }
+
+        EndpointImpl next = prev == null ? _heads[bucket] : prev._stateNext;
+        endpoint._statePrev = prev;
+        endpoint._stateNext = next;
+        if (prev == null)
+        {
+            _heads[bucket] = endpoint;
+        }
+        else
+        {
+            prev._stateNext = endpoint;
+        }
+        if (next == null)
+        {
+            _tails[bucket] = endpoint;
+        }
+        else
+        {
+            next._statePrev = endpoint;
+        }
+        endpoint._stateBucket = bucket;
+
+        EndpointImpl finger = _fingers[bucket];
+        if (seq > _fingerSeqs[bucket] && (finger == null || seq < finger._stateSeq))
+        {
+            _fingers[bucket] = endpoint;
+        }
+    }
+
+    private void unlink(EndpointImpl endpoint)
+    {
+        int bucket = endpoint._stateBucket;
+        if (bucket < 0)
+        {
+            return;
+        }
+
+        EndpointImpl prev = endpoint._statePrev;
+        EndpointImpl next = endpoint._stateNext;
+        if (prev == null)
+        {
+            _heads[bucket] = next;
+        }
+        else
+        {
+            prev._stateNext = next;
+        }
+        if (next == null)
+        {
+            _tails[bucket] = prev;
+        }
+        else
+        {
+            next._statePrev = prev;
+        }
+        if (_fingers[bucket] == endpoint)
+        {
+            _fingers[bucket] = next;
+        }
+
+        endpoint._statePrev = endpoint._stateNext = null;
+        endpoint._stateBucket = -1;
+    }
+}
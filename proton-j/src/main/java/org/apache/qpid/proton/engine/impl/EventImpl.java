@@ -50,6 +50,9 @@ class EventImpl implements Event
     EventType type;
     Object context;
     EventImpl next;
+    // next pending event for the same context, when the collector coalesces
+    EventImpl pendingNext;
+    HandlerTracer tracer;
     RecordImpl attachments = new RecordImpl();
 
     EventImpl()
@@ -68,6 +71,8 @@ class EventImpl implements Event
     {
         type = null;
         context = null;
+        pendingNext = null;
+        tracer = null;
         attachments.clear();
     }
 
@@ -104,12 +109,19 @@ class EventImpl implements Event
         Handler old_delegated = delegated;
         try {
             delegated = handler;
+            if (tracer != null) {
+                tracer.handlerStarted(handler);
+            }
             try {
                 handler.handle(this);
             } catch(HandlerException handlerException) {
                 throw handlerException;
             } catch(RuntimeException runtimeException) {
                 throw new HandlerException(handler, runtimeException);
+            } finally {
+                if (tracer != null) {
+                    tracer.handlerFinished(handler);
+                }
             }
             delegate();
         } finally {
@@ -0,0 +1,439 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A Java Flight Recorder event type describing engine activity.
+ *
+ * The events are defined at runtime through {@code jdk.jfr.EventFactory}, which is looked up
+ * reflectively as the library targets Java 8. Defining them is not free, so they are only
+ * registered with the Flight Recorder once a recording is running. Where it is unavailable, or
+ * while no recording has the event enabled, {@link #isEnabled()} is false and the only cost at the
+ * call site is reading that flag. Duration events carry a default threshold that recordings may
+ * lower or raise with the usual {@code threshold} setting.
+ *
+ * Recording an event never fails the caller. Should the Flight Recorder reject one, the problem is
+ * logged and that event stays disabled from then on.
+ *
+ * Instant events are recorded with {@link #emit(Object...)}. Duration events are started with
+ * {@link #begin()} and recorded with {@link #commit(Object, Object...)}. The values passed are in
+ * the order of the fields declared for the event.
+ */
+public final class FlightRecorderEvent
+{
+    private static final String NAME_PREFIX = "org.apache.qpid.proton.";
+    private static final String CATEGORY = "Apache Qpid Proton";
+    private static final Logger LOGGER = Logger.getLogger(FlightRecorderEvent.class.getName());
+
+    private static final MethodHandle CREATE;
+    private static final MethodHandle GET_EVENT_TYPE;
+    private static final MethodHandle IS_ENABLED;
+    private static final MethodHandle NEW_EVENT;
+    private static final MethodHandle BEGIN;
+    private static final MethodHandle END;
+    private static final MethodHandle SHOULD_COMMIT;
+    private static final MethodHandle COMMIT;
+    private static final MethodHandle SET;
+    private static final MethodHandle ANNOTATION;
+    private static final MethodHandle VALUE;
+    private static final MethodHandle ADD_LISTENER;
+    private static final MethodHandle IS_INITIALIZED;
+    private static final MethodHandle GET_FLIGHT_RECORDER;
+    private static final MethodHandle GET_RECORDINGS;
+    private static final MethodHandle GET_STATE;
+    private static final Class<?> LISTENER;
+    private static final Class<?>[] ANNOTATIONS;
+
+    private static final int NAME = 0;
+    private static final int LABEL = 1;
+    private static final int CATEGORY_ANNOTATION = 2;
+    private static final int THRESHOLD = 3;
+    private static final int STACK_TRACE = 4;
+
+    static {
+        MethodHandle create = null, getEventType = null, isEnabled = null, newEvent = null, begin = null, end = null,
+            shouldCommit = null, commit = null, set = null, annotation = null, value = null, addListener = null,
+            isInitialized = null, getFlightRecorder = null, getRecordings = null, getState = null;
+        Class<?> listener = null;
+        Class<?>[] annotations = null;
+        try {
+            Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            Class<?> eventType = Class.forName("jdk.jfr.EventType");
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            listener = Class.forName("jdk.jfr.FlightRecorderListener");
+            annotations = new Class<?>[] {
+                Class.forName("jdk.jfr.Name"),
+                Class.forName("jdk.jfr.Label"),
+                Class.forName("jdk.jfr.Category"),
+                Class.forName("jdk.jfr.Threshold"),
+                Class.forName("jdk.jfr.StackTrace")
+            };
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            create = lookup.findStatic(factory, "create", methodType(factory, List.class, List.class));
+            getEventType = lookup.findVirtual(factory, "getEventType", methodType(eventType));
+            isEnabled = lookup.findVirtual(eventType, "isEnabled", methodType(boolean.class));
+            newEvent = lookup.findVirtual(factory, "newEvent", methodType(event));
+            begin = lookup.findVirtual(event, "begin", methodType(void.class));
+            end = lookup.findVirtual(event, "end", methodType(void.class));
+            shouldCommit = lookup.findVirtual(event, "shouldCommit", methodType(boolean.class));
+            commit = lookup.findVirtual(event, "commit", methodType(void.class));
+            set = lookup.findVirtual(event, "set", methodType(void.class, int.class, Object.class));
+            annotation = lookup.findConstructor(annotationElement, methodType(void.class, Class.class, Object.class));
+            value = lookup.findConstructor(valueDescriptor, methodType(void.class, Class.class, String.class));
+            Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+            Class<?> recording = Class.forName("jdk.jfr.Recording");
+            addListener = lookup.findStatic(flightRecorder, "addListener", methodType(void.class, listener));
+            isInitialized = lookup.findStatic(flightRecorder, "isInitialized", methodType(boolean.class));
+            getFlightRecorder = lookup.findStatic(flightRecorder, "getFlightRecorder", methodType(flightRecorder));
+            getRecordings = lookup.findVirtual(flightRecorder, "getRecordings", methodType(List.class));
+            getState = lookup.findVirtual(recording, "getState",
+                methodType(Class.forName("jdk.jfr.RecordingState")));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // Flight Recorder is not available, events are never enabled.
+            create = null;
+        }
+        CREATE = create;
+        GET_EVENT_TYPE = getEventType;
+        IS_ENABLED = isEnabled;
+        NEW_EVENT = newEvent;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        COMMIT = commit;
+        SET = set;
+        ANNOTATION = annotation;
+        VALUE = value;
+        ADD_LISTENER = addListener;
+        IS_INITIALIZED = isInitialized;
+        GET_FLIGHT_RECORDER = getFlightRecorder;
+        GET_RECORDINGS = getRecordings;
+        GET_STATE = getState;
+        LISTENER = listener;
+        ANNOTATIONS = annotations;
+    }
+
+    private static final List<FlightRecorderEvent> EVENTS = new CopyOnWriteArrayList<>();
+    private static boolean registered;
+
+    public static final FlightRecorderEvent CONNECTION_OPEN = new FlightRecorderEvent(
+        "ConnectionOpen", "Connection Open", "Engine", null,
+        String.class, "container",
+        String.class, "remoteContainer",
+        String.class, "remoteHostname");
+
+    public static final FlightRecorderEvent CONNECTION_CLOSE = new FlightRecorderEvent(
+        "ConnectionClose", "Connection Close", "Engine", null,
+        String.class, "container",
+        String.class, "remoteContainer",
+        String.class, "error");
+
+    public static final FlightRecorderEvent LINK_ATTACH = new FlightRecorderEvent(
+        "LinkAttach", "Link Attach", "Engine", null,
+        String.class, "name",
+        String.class, "role",
+        int.class, "channel");
+
+    public static final FlightRecorderEvent LINK_DETACH = new FlightRecorderEvent(
+        "LinkDetach", "Link Detach", "Engine", null,
+        String.class, "name",
+        String.class, "role",
+        boolean.class, "closed",
+        String.class, "error");
+
+    public static final FlightRecorderEvent FLOW_STALL = new FlightRecorderEvent(
+        "FlowStall", "Flow Control Stall", "Engine", null,
+        String.class, "link",
+        String.class, "cause");
+
+    public static final FlightRecorderEvent FRAMES_PARSED = new FlightRecorderEvent(
+        "FramesParsed", "Frames Parsed", "Engine", "1 ms",
+        int.class, "frames",
+        int.class, "bytes");
+
+    public static final FlightRecorderEvent FRAMES_WRITTEN = new FlightRecorderEvent(
+        "FramesWritten", "Frames Written", "Engine", "1 ms",
+        int.class, "frames",
+        int.class, "bytes");
+
+    public static final FlightRecorderEvent SASL_HANDSHAKE = new FlightRecorderEvent(
+        "SaslHandshake", "SASL Handshake", "Security", "0 ms",
+        String.class, "role",
+        String.class, "mechanism",
+        String.class, "outcome");
+
+    public static final FlightRecorderEvent TLS_HANDSHAKE = new FlightRecorderEvent(
+        "TlsHandshake", "TLS Handshake", "Security", "0 ms",
+        boolean.class, "clientMode",
+        String.class, "protocol",
+        String.class, "cipherSuite");
+
+    public static final FlightRecorderEvent REACTOR_ITERATION = new FlightRecorderEvent(
+        "ReactorIteration", "Reactor Iteration", "Reactor", "1 ms",
+        int.class, "events");
+
+    static {
+        if (CREATE != null) {
+            try {
+                ADD_LISTENER.invoke(Proxy.newProxyInstance(FlightRecorderEvent.class.getClassLoader(),
+                    new Class<?>[] {LISTENER},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return FlightRecorderEvent.class.getName() + " listener";
+                        case "recordingStateChanged":
+                            // Recordings starting or stopping change which events are enabled
+                            if (isRunning(args[0])) {
+                                register();
+                            }
+                            refresh();
+                            return null;
+                        default:
+                            return null;
+                        }
+                    }));
+
+                // A recording may already have been started, e.g. from the command line
+                if ((boolean) IS_INITIALIZED.invoke()) {
+                    for (Object recording : (List<?>) GET_RECORDINGS.invoke(GET_FLIGHT_RECORDER.invoke())) {
+                        if (isRunning(recording)) {
+                            register();
+                            break;
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                // Leave every event disabled
+            }
+            refresh();
+        }
+    }
+
+    private final String _name;
+    private final String _label;
+    private final String _category;
+    private final String _threshold;
+    private final Object[] _fields;
+    private Object _factory;
+    private Object _eventType;
+    private volatile boolean _enabled;
+    private volatile boolean _failed;
+
+    FlightRecorderEvent(String name, String label, String category, String threshold, Object... fields)
+    {
+        _name = NAME_PREFIX + name;
+        _label = label;
+        _category = category;
+        _threshold = threshold;
+        _fields = fields;
+
+        if (CREATE != null) {
+            synchronized (FlightRecorderEvent.class) {
+                EVENTS.add(this);
+                if (registered) {
+                    define();
+                    refresh(this);
+                }
+            }
+        }
+    }
+
+    private static boolean isRunning(Object recording) throws Throwable
+    {
+        return "RUNNING".equals(String.valueOf(GET_STATE.invoke(recording)));
+    }
+
+    private static synchronized void register()
+    {
+        if (!registered) {
+            registered = true;
+            for (FlightRecorderEvent event : EVENTS) {
+                event.define();
+            }
+        }
+    }
+
+    static synchronized boolean isRegistered()
+    {
+        return registered;
+    }
+
+    private void define()
+    {
+        try {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(ANNOTATION.invoke(ANNOTATIONS[NAME], _name));
+            annotations.add(ANNOTATION.invoke(ANNOTATIONS[LABEL], _label));
+            annotations.add(ANNOTATION.invoke(ANNOTATIONS[CATEGORY_ANNOTATION], new String[] {CATEGORY, _category}));
+            annotations.add(ANNOTATION.invoke(ANNOTATIONS[STACK_TRACE], false));
+            if (_threshold != null) {
+                annotations.add(ANNOTATION.invoke(ANNOTATIONS[THRESHOLD], _threshold));
+            }
+
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < _fields.length; i += 2) {
+                values.add(VALUE.invoke((Class<?>) _fields[i], (String) _fields[i + 1]));
+            }
+
+            Object factory = CREATE.invoke(annotations, values);
+            _eventType = GET_EVENT_TYPE.invoke(factory);
+            _factory = factory;
+        } catch (Throwable t) {
+            failed("Unable to define Flight Recorder event " + _name, t);
+        }
+    }
+
+    private static synchronized void refresh()
+    {
+        for (FlightRecorderEvent event : EVENTS) {
+            refresh(event);
+        }
+    }
+
+    private static void refresh(FlightRecorderEvent event)
+    {
+        if (event._factory == null || event._failed) {
+            event._enabled = false;
+            return;
+        }
+
+        try {
+            event._enabled = (boolean) IS_ENABLED.invoke(event._eventType);
+        } catch (Throwable t) {
+            event._enabled = false;
+        }
+    }
+
+    private void failed(String message, Throwable t)
+    {
+        _failed = true;
+        _enabled = false;
+        LOGGER.log(Level.WARNING, message + ", the event is now disabled", t);
+    }
+
+    static boolean isAvailable()
+    {
+        return CREATE != null;
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return whether a running recording has this event enabled
+     */
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /**
+     * Records an instant event if enabled.
+     */
+    public void emit(Object... values)
+    {
+        if (_enabled) {
+            try {
+                Object event = NEW_EVENT.invoke(_factory);
+                set(event, values);
+                COMMIT.invoke(event);
+            } catch (Throwable t) {
+                failed("Unable to record Flight Recorder event " + _name + " with " + Arrays.toString(values), t);
+            }
+        }
+    }
+
+    /**
+     * Starts timing a duration event.
+     *
+     * @return the started event, or null if the event is not enabled or could not be started
+     */
+    public Object begin()
+    {
+        if (!_enabled) {
+            return null;
+        }
+
+        try {
+            Object event = NEW_EVENT.invoke(_factory);
+            BEGIN.invoke(event);
+            return event;
+        } catch (Throwable t) {
+            failed("Unable to begin Flight Recorder event " + _name, t);
+            return null;
+        }
+    }
+
+    /**
+     * Ends a duration event started by {@link #begin()}, recording it if it exceeded its threshold.
+     *
+     * @param event the started event, nothing is recorded if null
+     */
+    public void commit(Object event, Object... values)
+    {
+        if (event == null) {
+            return;
+        }
+
+        try {
+            END.invoke(event);
+            if ((boolean) SHOULD_COMMIT.invoke(event)) {
+                set(event, values);
+                COMMIT.invoke(event);
+            }
+        } catch (Throwable t) {
+            failed("Unable to record Flight Recorder event " + _name + " with " + Arrays.toString(values), t);
+        }
+    }
+
+    private static void set(Object event, Object[] values) throws Throwable
+    {
+        for (int i = 0; i < values.length; i++) {
+            SET.invoke(event, i, values[i]);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return _name;
+    }
+}
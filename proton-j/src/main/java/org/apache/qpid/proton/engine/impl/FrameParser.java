@@ -337,6 +337,8 @@ class FrameParser implements TransportInput
 
                 case PARSING:
 
+                    _transport.captureIncoming(size, in);
+
                     int dataOffset = (in.get() << 2) & 0x3FF;
 
                     if(dataOffset < 8)
@@ -593,6 +595,12 @@ class FrameParser implements TransportInput
         return _framesInput;
     }
 
+    int getBufferCapacity()
+    {
+        return (_inputBuffer == null ? 0 : _inputBuffer.capacity()) +
+               (_frameBuffer == null ? 0 : _frameBuffer.capacity());
+    }
+
     private void logHeader() {
         if (_transport.isFrameTracingEnabled()) {
             _transport.log(TransportImpl.INCOMING, HEADER_DESCRIPTION);
@@ -73,6 +73,14 @@ class FrameWriter {
         return frameBuffer.transferTo(dst);
     }
 
+    int getBufferedBytes() {
+        return frameBuffer.position();
+    }
+
+    int getBufferCapacity() {
+        return frameBuffer.array().length;
+    }
+
     long getFramesOutput() {
         return framesOutput;
     }
@@ -101,29 +109,60 @@ class FrameWriter {
         frameStart = frameBuffer.position();
         try {
             final int performativeSize = writePerformative(frameBody, payload, onPayloadTooLarge);
-            final int capacity = maxFrameSize > 0 ? maxFrameSize - performativeSize : Integer.MAX_VALUE;
-            final int payloadSize = Math.min(payload == null ? 0 : payload.remaining(), capacity);
-
-            if (transport.isFrameTracingEnabled()) {
-                logFrame(channel, frameBody, payload, payloadSize);
-            }
+            completeFrame(channel, frameBody, payload, performativeSize);
+        } catch (Exception e) {
+            frameBuffer.position(frameStart);
+            throw e;
+        }
+    }
 
-            if (payloadSize > 0) {
-                int oldLimit = payload.limit();
-                payload.limit(payload.position() + payloadSize);
-                frameBuffer.put(payload);
-                payload.limit(oldLimit);
+    /**
+     * Writes the frame only if the whole payload fits in it along with the encoded performative,
+     * otherwise nothing is written.
+     *
+     * @return true if the frame was written
+     */
+    boolean writeFrameIfPayloadFits(int channel, Object frameBody, ReadableBuffer payload) {
+        frameStart = frameBuffer.position();
+        try {
+            final int performativeSize = writePerformative(frameBody, payload, null);
+            if (maxFrameSize > 0 && payload.remaining() > maxFrameSize - performativeSize) {
+                frameBuffer.position(frameStart);
+                return false;
             }
 
-            endFrame(channel);
-
-            framesOutput++;
+            completeFrame(channel, frameBody, payload, performativeSize);
+            return true;
         } catch (Exception e) {
             frameBuffer.position(frameStart);
             throw e;
         }
     }
 
+    private void completeFrame(int channel, Object frameBody, ReadableBuffer payload, int performativeSize) {
+        final int capacity = maxFrameSize > 0 ? maxFrameSize - performativeSize : Integer.MAX_VALUE;
+        final int payloadSize = Math.min(payload == null ? 0 : payload.remaining(), capacity);
+
+        if (transport.isFrameTracingEnabled()) {
+            logFrame(channel, frameBody, payload, payloadSize);
+        }
+
+        if (payloadSize > 0) {
+            int oldLimit = payload.limit();
+            payload.limit(payload.position() + payloadSize);
+            frameBuffer.put(payload);
+            payload.limit(oldLimit);
+        }
+
+        endFrame(channel);
+
+        if (frameType == AMQP_FRAME_TYPE) {
+            transport.captureOutgoing(frameBuffer.array(), frameStart, frameBuffer.position() - frameStart);
+        }
+
+        framesOutput++;
+    }
+
     private int writePerformative(Object frameBody, ReadableBuffer payload, Runnable onPayloadTooLarge) {
         frameBuffer.position(frameStart + FRAME_HEADER_SIZE);
 
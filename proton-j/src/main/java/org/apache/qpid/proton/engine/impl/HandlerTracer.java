@@ -1,4 +1,3 @@
-package org.apache.qpid.proton.engine.impl;
 /*
  *
  * Licensed to the Apache Software Foundation (ASF) under one
@@ -18,26 +17,18 @@ package org.apache.qpid.proton.engine.impl;
  * specific language governing permissions and limitations
  * under the License.
  *
-*/
-
+ */
+package org.apache.qpid.proton.engine.impl;
 
-import java.util.EnumSet;
-import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Handler;
 
-class EndpointImplQuery<T extends EndpointImpl> implements LinkNode.Query<T>
+/**
+ * Told as each handler starts and finishes handling an event collected by a
+ * {@link CollectorImpl} it is set on. A handler's children are dispatched after it
+ * has finished, unless it delegates to them while it is still handling the event.
+ */
+public interface HandlerTracer
 {
-    private final EnumSet<EndpointState> _local;
-    private final EnumSet<EndpointState> _remote;
-
-    EndpointImplQuery(EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
-    {
-        _local = local;
-        _remote = remote;
-    }
-
-    public boolean matches(LinkNode<T> node)
-    {
-        return (_local == null || _local.contains(node.getValue().getLocalState()))
-                && (_remote == null || _remote.contains(node.getValue().getRemoteState()));
-    }
+    public void handlerStarted(Handler handler);
+    public void handlerFinished(Handler handler);
 }
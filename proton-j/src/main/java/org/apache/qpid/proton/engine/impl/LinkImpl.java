@@ -95,14 +95,15 @@ public abstract class LinkImpl extends EndpointImpl implements Link
     @Override
     public DeliveryImpl delivery(byte[] tag, int offset, int length)
     {
-        if (offset != 0 || length != tag.length)
+        if (offset < 0 || length < 0 || length > tag.length - offset)
         {
-            throw new IllegalArgumentException("At present delivery tag must be the whole byte array");
+            throw new IndexOutOfBoundsException("Delivery tag offset " + offset + " and length " + length +
+                                                " out of bounds for array of length " + tag.length);
         }
         incrementQueued();
         try
         {
-            DeliveryImpl delivery = new DeliveryImpl(tag, this, _tail);
+            DeliveryImpl delivery = getConnectionImpl().obtainDelivery(tag, offset, length, this, _tail);
             if (_tail == null)
             {
                 _head = delivery;
@@ -122,6 +123,26 @@ public abstract class LinkImpl extends EndpointImpl implements Link
         }
     }
 
+    /*
+     * Appends a completed delivery to the end of the link without making it current or
+     * updating the connection work list, used when the caller enqueues deliveries in bulk.
+     */
+    DeliveryImpl appendDelivery(byte[] tag, int offset, int length)
+    {
+        DeliveryImpl delivery = getConnectionImpl().obtainDelivery(tag, offset, length, this, _tail);
+        if (_tail == null)
+        {
+            _head = delivery;
+        }
+        _tail = delivery;
+        return delivery;
+    }
+
+    void addQueued(int count)
+    {
+        _queued += count;
+    }
+
     @Override
     void postFinal() {
         _session.getConnectionImpl().put(Event.Type.LINK_FINAL, this);
@@ -253,12 +274,19 @@ public abstract class LinkImpl extends EndpointImpl implements Link
     @Override
     public Link next(EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
     {
-        LinkNode.Query<LinkImpl> query = new EndpointImplQuery<LinkImpl>(local, remote);
-
-        LinkNode<LinkImpl> linkNode = _node.next(query);
+        if(local == null && remote == null)
+        {
+            LinkNode<LinkImpl> linkNode = _node.getNext();
+            return linkNode == null ? null : linkNode.getValue();
+        }
+        return _session.getConnectionImpl().nextLink(this, local, remote);
+    }
 
+    @Override
+    EndpointImpl createdBefore()
+    {
+        LinkNode<LinkImpl> linkNode = _node == null ? null : _node.getPrev();
         return linkNode == null ? null : linkNode.getValue();
-
     }
 
     abstract TransportLink getTransportLink();
@@ -20,7 +20,6 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
-import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.codec.ReadableBuffer;
 import org.apache.qpid.proton.codec.WritableBuffer;
 import org.apache.qpid.proton.engine.Receiver;
@@ -44,7 +43,7 @@ public class ReceiverImpl extends LinkImpl implements Receiver
             decrementCredit();
             getSession().incrementIncomingBytes(-current.pending());
             getSession().incrementIncomingDeliveries(-1);
-            if (getSession().getTransportSession().getIncomingWindowSize().equals(UnsignedInteger.ZERO)) {
+            if (getSession().getTransportSession().getIncomingWindowSize() == 0) {
                 modified();
             }
         }
@@ -73,6 +72,11 @@ public class ReceiverImpl extends LinkImpl implements Receiver
         }
     }
 
+    int getUnsentCredits()
+    {
+        return _unsentCredits;
+    }
+
     int clearUnsentCredits()
     {
         int credits = _unsentCredits;
@@ -90,7 +94,7 @@ public class ReceiverImpl extends LinkImpl implements Receiver
         int consumed = _current.recv(bytes, offset, size);
         if (consumed > 0) {
             getSession().incrementIncomingBytes(-consumed);
-            if (getSession().getTransportSession().getIncomingWindowSize().equals(UnsignedInteger.ZERO)) {
+            if (getSession().getTransportSession().getIncomingWindowSize() == 0) {
                 modified();
             }
         }
@@ -107,7 +111,7 @@ public class ReceiverImpl extends LinkImpl implements Receiver
         int consumed = _current.recv(buffer);
         if (consumed > 0) {
             getSession().incrementIncomingBytes(-consumed);
-            if (getSession().getTransportSession().getIncomingWindowSize().equals(UnsignedInteger.ZERO)) {
+            if (getSession().getTransportSession().getIncomingWindowSize() == 0) {
                 modified();
             }
         }
@@ -124,7 +128,7 @@ public class ReceiverImpl extends LinkImpl implements Receiver
         ReadableBuffer consumed = _current.recv();
         if (consumed.remaining() > 0) {
             getSession().incrementIncomingBytes(-consumed.remaining());
-            if (getSession().getTransportSession().getIncomingWindowSize().equals(UnsignedInteger.ZERO)) {
+            if (getSession().getTransportSession().getIncomingWindowSize() == 0) {
                 modified();
             }
         }
@@ -20,7 +20,11 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import org.apache.qpid.proton.engine.Handler;
 import org.apache.qpid.proton.engine.Record;
+import org.apache.qpid.proton.engine.RecordSlot;
+
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,27 +32,87 @@ import java.util.Map;
 /**
  * RecordImpl
  *
+ * Values keyed by a {@link RecordSlot} with a slot, or by {@link Handler Handler.class},
+ * are held in a small array indexed by slot. Any other key falls back to a map, which is
+ * only created when first needed.
  */
 
 public class RecordImpl implements Record
 {
 
-    private Map<Object,Object> values = new HashMap<Object,Object>();
+    private static final int INITIAL_SLOTS = 4;
+
+    private Object[] slots;
+    private Map<Object,Object> values;
+
+    private static int slotOf(Object key) {
+        if (key instanceof RecordSlot) {
+            return ((RecordSlot<?>) key).getSlot();
+        } else if (key == Handler.class) {
+            return RecordSlot.HANDLER.getSlot();
+        }
+        return -1;
+    }
 
     public <T> void set(Object key, Class<T> klass, T value) {
-        values.put(key, value);
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            if (slots == null) {
+                if (value == null) {
+                    return;
+                }
+                slots = new Object[Math.max(INITIAL_SLOTS, slot + 1)];
+            } else if (slot >= slots.length) {
+                if (value == null) {
+                    return;
+                }
+                slots = Arrays.copyOf(slots, Math.min(Math.max(slots.length * 2, slot + 1), RecordSlot.MAX_SLOTS));
+            }
+            slots[slot] = value;
+        } else {
+            if (values == null) {
+                values = new HashMap<Object,Object>();
+            }
+            values.put(key, value);
+        }
     }
 
     public <T> T get(Object key, Class<T> klass) {
-        return klass.cast(values.get(key));
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            return slots != null && slot < slots.length ? klass.cast(slots[slot]) : null;
+        }
+        return values == null ? null : klass.cast(values.get(key));
     }
 
     public void clear() {
-        values.clear();
+        if (slots != null) {
+            Arrays.fill(slots, null);
+        }
+        if (values != null) {
+            values.clear();
+        }
     }
 
     void copy(RecordImpl src) {
-        values.putAll(src.values);
+        if (src.slots != null) {
+            if (slots == null) {
+                slots = new Object[src.slots.length];
+            } else if (slots.length < src.slots.length) {
+                slots = Arrays.copyOf(slots, src.slots.length);
+            }
+            for (int i = 0; i < src.slots.length; i++) {
+                if (src.slots[i] != null) {
+                    slots[i] = src.slots[i];
+                }
+            }
+        }
+        if (src.values != null) {
+            if (values == null) {
+                values = new HashMap<Object,Object>();
+            }
+            values.putAll(src.values);
+        }
     }
 
 }
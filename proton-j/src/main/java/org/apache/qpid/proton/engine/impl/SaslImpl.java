@@ -84,6 +84,9 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>,
     private Symbol _chosenMechanism;
 
     private Role _role;
+
+    // Flight Recorder event timing the exchange, when enabled
+    private Object _handshakeEvent;
     private boolean _allowSkip = true;
 
     private SaslListener _saslListener;
@@ -123,6 +126,11 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>,
 
     private void process()
     {
+        if (_handshakeEvent == null && !_done)
+        {
+            _handshakeEvent = FlightRecorderEvent.SASL_HANDSHAKE.begin();
+        }
+
         processHeader();
 
         if(_role == Role.SERVER)
@@ -156,6 +164,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>,
                 }
                 writeFrame(outcome);
                 setChallengeResponse(null);
+                commitHandshakeEvent();
             }
         }
         else if(_role == Role.CLIENT)
@@ -441,6 +450,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>,
             }
         }
         _done = true;
+        commitHandshakeEvent();
 
         if(_logger.isLoggable(Level.FINE))
         {
@@ -452,6 +462,17 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>,
         }
     }
 
+    private void commitHandshakeEvent()
+    {
+        if (_handshakeEvent != null)
+        {
+            FlightRecorderEvent.SASL_HANDSHAKE.commit(_handshakeEvent, String.valueOf(_role),
+                                                     _chosenMechanism == null ? null : _chosenMechanism.toString(),
+                                                     String.valueOf(_outcome));
+            _handshakeEvent = null;
+        }
+    }
+
     private SaslState classifyStateFromOutcome(SaslOutcome outcome)
     {
         return outcome == SaslOutcome.PN_SASL_OK ? SaslState.PN_SASL_PASS : SaslState.PN_SASL_FAIL;
@@ -20,20 +20,161 @@
  */
 package org.apache.qpid.proton.engine.impl;
 
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Sender;
 
 public class SenderImpl  extends LinkImpl implements Sender
 {
+    private static final int TAG_POOL_SIZE = 32;
+
     private int _offered;
     private TransportSender _transportLink;
 
+    private long _nextTag;
+    private Binary _presettledTag;
+    private byte[][] _tagPool;
+    private int _tagPoolCount;
+
     SenderImpl(SessionImpl session, String name)
     {
         super(session, name);
     }
 
+    @Override
+    public DeliveryImpl delivery()
+    {
+        DeliveryImpl delivery = delivery(nextTag());
+        delivery.setTagGenerated();
+        return delivery;
+    }
+
+    @Override
+    public boolean sendPresettled(ReadableBuffer payload)
+    {
+        if (getLocalState() == EndpointState.CLOSED)
+        {
+            throw new IllegalStateException("send not allowed after the sender is closed.");
+        }
+
+        TransportImpl transport = getConnectionImpl().getTransport();
+        if (transport == null || getCredit() <= 0)
+        {
+            return false;
+        }
+
+        if (_presettledTag == null)
+        {
+            // Pre-settled deliveries never need to be told apart by tag, so one generated tag serves them all
+            _presettledTag = new Binary(encodeTag(_nextTag++));
+        }
+
+        return transport.writePresettledTransfer(this, _presettledTag, payload);
+    }
+
+    @Override
+    public Delivery[] sendBatch(ReadableBuffer[] payloads, byte[][] tags, boolean settled)
+    {
+        if (getLocalState() == EndpointState.CLOSED)
+        {
+            throw new IllegalStateException("send not allowed after the sender is closed.");
+        }
+        if (current() != null)
+        {
+            throw new IllegalStateException("sendBatch not allowed while the current delivery is incomplete.");
+        }
+        if (tags != null && tags.length != payloads.length)
+        {
+            throw new IllegalArgumentException("Expected " + payloads.length + " tags but got " + tags.length);
+        }
+
+        final DeliveryImpl[] deliveries = new DeliveryImpl[payloads.length];
+        int bytes = 0;
+        for (int i = 0; i < payloads.length; i++)
+        {
+            final DeliveryImpl delivery;
+            if (tags == null)
+            {
+                delivery = appendDelivery(nextTag());
+                delivery.setTagGenerated();
+            }
+            else
+            {
+                delivery = appendDelivery(tags[i], 0, tags[i].length);
+            }
+
+            bytes += payloads[i].remaining();
+            delivery.setBatchPayload(payloads[i]);
+            deliveries[i] = delivery;
+        }
+
+        addQueued(deliveries.length);
+        addCredit(-deliveries.length);
+        _offered = Math.max(0, _offered - deliveries.length);
+        getSession().incrementOutgoingBytes(bytes);
+        getSession().incrementOutgoingDeliveries(deliveries.length);
+        getConnectionImpl().addTransportWork(deliveries);
+
+        if (settled)
+        {
+            for (DeliveryImpl delivery : deliveries)
+            {
+                delivery.settle();
+            }
+        }
+
+        return deliveries;
+    }
+
+    private byte[] nextTag()
+    {
+        if (_tagPoolCount > 0)
+        {
+            byte[] tag = _tagPool[--_tagPoolCount];
+            _tagPool[_tagPoolCount] = null;
+            return tag;
+        }
+
+        return encodeTag(_nextTag++);
+    }
+
+    private DeliveryImpl appendDelivery(byte[] tag)
+    {
+        return appendDelivery(tag, 0, tag.length);
+    }
+
+    /*
+     * Called once a delivery with a generated tag is finally settled, at which point the tag no
+     * longer identifies an unsettled delivery and can be handed out again.
+     */
+    void releaseTag(byte[] tag)
+    {
+        if (_tagPool == null)
+        {
+            _tagPool = new byte[TAG_POOL_SIZE][];
+        }
+
+        if (_tagPoolCount < _tagPool.length)
+        {
+            _tagPool[_tagPoolCount++] = tag;
+        }
+    }
+
+    private static byte[] encodeTag(long value)
+    {
+        int length = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8);
+        byte[] tag = new byte[length];
+        for (int i = length - 1; i >= 0; i--)
+        {
+            tag[i] = (byte) value;
+            value >>>= 8;
+        }
+
+        return tag;
+    }
+
     @Override
     public void offer(final int credits)
     {
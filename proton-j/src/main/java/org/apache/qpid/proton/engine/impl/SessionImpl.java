@@ -113,10 +113,18 @@ public class SessionImpl extends EndpointImpl implements ProtonJSession
     @Override
     public Session next(EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
     {
-        LinkNode.Query<SessionImpl> query = new EndpointImplQuery<SessionImpl>(local, remote);
-
-        LinkNode<SessionImpl> sessionNode = _node.next(query);
+        if(local == null && remote == null)
+        {
+            LinkNode<SessionImpl> sessionNode = _node.getNext();
+            return sessionNode == null ? null : sessionNode.getValue();
+        }
+        return _connection.nextSession(this, local, remote);
+    }
 
+    @Override
+    EndpointImpl createdBefore()
+    {
+        LinkNode<SessionImpl> sessionNode = _node == null ? null : _node.getPrev();
         return sessionNode == null ? null : sessionNode.getValue();
     }
 
@@ -237,6 +245,7 @@ public class SessionImpl extends EndpointImpl implements ProtonJSession
     void incrementIncomingBytes(int delta)
     {
         _incomingBytes += delta;
+        _connection.incrementIncomingBytes(delta);
     }
 
     @Override
@@ -248,6 +257,7 @@ public class SessionImpl extends EndpointImpl implements ProtonJSession
     void incrementOutgoingBytes(int delta)
     {
         _outgoingBytes += delta;
+        _connection.incrementOutgoingBytes(delta);
     }
 
     void incrementIncomingDeliveries(int delta)
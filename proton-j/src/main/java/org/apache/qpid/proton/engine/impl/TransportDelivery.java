@@ -29,6 +29,7 @@ public class TransportDelivery
     private DeliveryImpl _delivery;
     private TransportLink _transportLink;
     private int _sessionSize = 1;
+    private long _sentNanos;
 
     TransportDelivery(UnsignedInteger currentDeliveryId, DeliveryImpl delivery, TransportLink transportLink)
     {
@@ -37,16 +38,38 @@ public class TransportDelivery
         _transportLink = transportLink;
     }
 
+    void reset(UnsignedInteger currentDeliveryId, TransportLink<?> transportLink)
+    {
+        _deliveryId = currentDeliveryId;
+        _transportLink = transportLink;
+        _sessionSize = 1;
+    }
+
     public UnsignedInteger getDeliveryId()
     {
         return _deliveryId;
     }
 
+    DeliveryImpl getDelivery()
+    {
+        return _delivery;
+    }
+
     public TransportLink getTransportLink()
     {
         return _transportLink;
     }
 
+    long getSentNanos()
+    {
+        return _sentNanos;
+    }
+
+    void setSentNanos(long sentNanos)
+    {
+        _sentNanos = sentNanos;
+    }
+
     void incrementSessionSize()
     {
         _sessionSize++;
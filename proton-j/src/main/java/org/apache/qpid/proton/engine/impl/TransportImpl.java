@@ -22,9 +22,7 @@ import static org.apache.qpid.proton.engine.impl.ByteBufferUtils.pourBufferToArr
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
@@ -53,6 +51,9 @@ import org.apache.qpid.proton.codec.ReadableBuffer;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.MemoryBudget;
+import org.apache.qpid.proton.engine.MemoryUsage;
 import org.apache.qpid.proton.engine.ProtonJTransport;
 import org.apache.qpid.proton.engine.Sasl;
 import org.apache.qpid.proton.engine.Ssl;
@@ -60,9 +61,11 @@ import org.apache.qpid.proton.engine.SslDomain;
 import org.apache.qpid.proton.engine.SslPeerDetails;
 import org.apache.qpid.proton.engine.TransportDecodeException;
 import org.apache.qpid.proton.engine.TransportException;
+import org.apache.qpid.proton.engine.TransportMetrics;
 import org.apache.qpid.proton.engine.TransportResult;
 import org.apache.qpid.proton.engine.TransportResultFactory;
 import org.apache.qpid.proton.engine.impl.ssl.SslImpl;
+import org.apache.qpid.proton.framing.FrameCapture;
 import org.apache.qpid.proton.framing.TransportFrame;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.Selectable;
@@ -97,11 +100,12 @@ public class TransportImpl extends EndpointImpl
     private boolean _isCloseSent;
 
     private boolean _headerWritten;
-    private Map<Integer, TransportSession> _remoteSessions = new HashMap<Integer, TransportSession>();
-    private Map<Integer, TransportSession> _localSessions = new HashMap<Integer, TransportSession>();
+    private final ChannelTable _remoteSessions = new ChannelTable();
+    private final ChannelTable _localSessions = new ChannelTable();
 
     private TransportInput _inputProcessor;
     private TransportOutput _outputProcessor;
+    private TransportOutputAdaptor _outputAdaptor;
 
     private DecoderImpl _decoder = new DecoderImpl();
     private EncoderImpl _encoder = new EncoderImpl(_decoder);
@@ -119,12 +123,17 @@ public class TransportImpl extends EndpointImpl
     private SaslImpl _sasl;
     private SslImpl _ssl;
     private final Ref<ProtocolTracer> _protocolTracer = new Ref<>(null);
+    private FrameCapture _frameCapture;
+    private int _captureConnection;
+    private long _captureFrames;
 
     private TransportResult _lastTransportResult = TransportResultFactory.ok();
 
     private boolean _init;
     private boolean _processingStarted;
     private boolean _emitFlowEventOnSend = true;
+    private int _flowReplenishThreshold;
+    private int _flowPass;
     private boolean _useReadOnlyOutputBuffer = true;
 
     private FrameHandler _frameHandler = this;
@@ -137,6 +146,35 @@ public class TransportImpl extends EndpointImpl
 
     private int _localIdleTimeout = 0;
     private int _remoteIdleTimeout = 0;
+    private final TransportMetricsImpl _metrics = new TransportMetricsImpl();
+    private MemoryBudget _memoryBudget;
+    private long _memoryBudgeted;
+    private final MemoryBudget.Listener _memoryBudgetListener = new MemoryBudget.Listener()
+    {
+        @Override
+        public void budgetAvailable(MemoryBudget budget)
+        {
+            // A transport stalled by the budget may see no events of its own, so have its
+            // reactor update it once the memory released elsewhere lets it make progress
+            Reactor reactor = _reactor;
+            if (reactor != null)
+            {
+                reactor.execute(_memoryBudgetTask);
+            }
+        }
+    };
+    private final Runnable _memoryBudgetTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (_memoryBudget != null)
+            {
+                put(Event.Type.TRANSPORT, TransportImpl.this);
+            }
+        }
+    };
+    private boolean _creditWithheld;
     private long _bytesInput = 0;
     private long _bytesOutput = 0;
     private long _localIdleDeadline = 0;
@@ -145,7 +183,7 @@ public class TransportImpl extends EndpointImpl
     private long _remoteIdleDeadline = 0;
 
     private Selectable _selectable;
-    private Reactor _reactor;
+    private volatile Reactor _reactor;
 
     private List<TransportLayer> _additionalTransportLayers;
 
@@ -184,7 +222,7 @@ public class TransportImpl extends EndpointImpl
             _init = true;
             _frameParser = new FrameParser(_frameHandler , _decoder, _maxFrameSize, this);
             _inputProcessor = _frameParser;
-            _outputProcessor = new TransportOutputAdaptor(this, _maxFrameSize, isUseReadOnlyOutputBuffer());
+            _outputProcessor = _outputAdaptor = new TransportOutputAdaptor(this, _maxFrameSize, isUseReadOnlyOutputBuffer());
         }
     }
 
@@ -301,11 +339,17 @@ public class TransportImpl extends EndpointImpl
     @Override
     public void unbind()
     {
-        for (TransportSession ts: _localSessions.values()) {
-            ts.unbind();
+        for (int i = 0; i < _localSessions.capacity(); i++) {
+            TransportSession ts = _localSessions.get(i);
+            if (ts != null) {
+                ts.unbind();
+            }
         }
-        for (TransportSession ts: _remoteSessions.values()) {
-            ts.unbind();
+        for (int i = 0; i < _remoteSessions.capacity(); i++) {
+            TransportSession ts = _remoteSessions.get(i);
+            if (ts != null) {
+                ts.unbind();
+            }
         }
 
         put(Event.Type.CONNECTION_UNBOUND, _connectionEndpoint);
@@ -313,6 +357,8 @@ public class TransportImpl extends EndpointImpl
         _connectionEndpoint.modifyEndpoints();
         _connectionEndpoint.setTransport(null);
         _connectionEndpoint.decref();
+
+        setMemoryBudget(null);
     }
 
     @Override
@@ -358,6 +404,9 @@ public class TransportImpl extends EndpointImpl
     @Override
     public boolean writeInto(ByteBuffer outputBuffer)
     {
+        Object batch = FlightRecorderEvent.FRAMES_WRITTEN.begin();
+        long framesBefore = batch == null ? 0 : _frameWriter.getFramesOutput();
+
         processHeader();
         processOpen();
         processBegin();
@@ -373,7 +422,15 @@ public class TransportImpl extends EndpointImpl
         processEnd();
         processClose();
 
-        _frameWriter.readBytes(outputBuffer);
+        if (batch == null) {
+            _frameWriter.readBytes(outputBuffer);
+        } else {
+            int bytes = _frameWriter.readBytes(outputBuffer);
+            int frames = (int) (_frameWriter.getFramesOutput() - framesBefore);
+            if (frames > 0) {
+                FlightRecorderEvent.FRAMES_WRITTEN.commit(batch, frames, bytes);
+            }
+        }
 
         return _isCloseSent || _head_closed;
     }
@@ -483,15 +540,15 @@ public class TransportImpl extends EndpointImpl
     private void writeFlow(TransportSession ssn, TransportLink link)
     {
         cachedFlow.setNextIncomingId(ssn.getNextIncomingId());
-        cachedFlow.setNextOutgoingId(ssn.getNextOutgoingId());
+        cachedFlow.setNextOutgoingId(UnsignedInteger.valueOf(ssn.getNextOutgoingId()));
         ssn.updateIncomingWindow();
-        cachedFlow.setIncomingWindow(ssn.getIncomingWindowSize());
-        cachedFlow.setOutgoingWindow(ssn.getOutgoingWindowSize());
+        cachedFlow.setIncomingWindow(UnsignedInteger.valueOf(ssn.getIncomingWindowSize()));
+        cachedFlow.setOutgoingWindow(UnsignedInteger.valueOf(ssn.getOutgoingWindowSize()));
         cachedFlow.setProperties(null);
         if (link != null) {
             cachedFlow.setHandle(link.getLocalHandle());
-            cachedFlow.setDeliveryCount(link.getDeliveryCount());
-            cachedFlow.setLinkCredit(link.getLinkCredit());
+            cachedFlow.setDeliveryCount(link.isDeliveryCountSet() ? UnsignedInteger.valueOf(link.getDeliveryCount()) : null);
+            cachedFlow.setLinkCredit(UnsignedInteger.valueOf(link.getLinkCredit()));
             cachedFlow.setDrain(link.getLink().getDrain());
         } else {
             cachedFlow.setHandle(null);
@@ -499,6 +556,7 @@ public class TransportImpl extends EndpointImpl
             cachedFlow.setLinkCredit(null);
             cachedFlow.setDrain(false);
         }
+        ssn.setFlowPass(_flowPass);
         writeFrame(ssn.getLocalChannel(), cachedFlow, null, null);
     }
 
@@ -516,9 +574,9 @@ public class TransportImpl extends EndpointImpl
                     {
                         TransportSender transportLink = sender.getTransportLink();
                         TransportSession transportSession = sender.getSession().getTransportSession();
-                        UnsignedInteger credits = transportLink.getLinkCredit();
-                        transportLink.setLinkCredit(UnsignedInteger.ZERO);
-                        transportLink.setDeliveryCount(transportLink.getDeliveryCount().add(credits));
+                        int credits = transportLink.getLinkCredit();
+                        transportLink.setLinkCredit(0);
+                        transportLink.setDeliveryCount(transportLink.getDeliveryCount() + credits);
                         sender.setDrained(0);
 
                         writeFlow(transportSession, transportLink);
@@ -571,7 +629,7 @@ public class TransportImpl extends EndpointImpl
 
         if(!delivery.isDone() &&
            (delivery.getDataLength() > 0 || delivery != snd.current()) &&
-           tpSession.hasOutgoingCredit() && tpLink.hasCredit() &&
+           !stalled(tpSession, tpLink) &&
            tpSession.isLocalChannelSet() &&
            tpLink.getLocalHandle() != null && !_frameWriter.isFull())
         {
@@ -587,17 +645,20 @@ public class TransportImpl extends EndpointImpl
 
             TransportDelivery tpDelivery = delivery.getTransportDelivery();
             UnsignedInteger deliveryId;
-            if (tpDelivery != null) {
+            boolean firstTransfer = tpDelivery == null;
+            if (!firstTransfer) {
                 deliveryId = tpDelivery.getDeliveryId();
             } else {
                 deliveryId = tpSession.getOutgoingDeliveryId();
                 tpSession.incrementOutgoingDeliveryId();
             }
-            tpDelivery = new TransportDelivery(deliveryId, delivery, tpLink);
-            delivery.setTransportDelivery(tpDelivery);
+            tpDelivery = delivery.createTransportDelivery(deliveryId, tpLink);
+            if (firstTransfer) {
+                tpDelivery.setSentNanos(System.nanoTime());
+            }
 
             cachedTransfer.setDeliveryId(deliveryId);
-            cachedTransfer.setDeliveryTag(new Binary(delivery.getTag()));
+            cachedTransfer.setDeliveryTag(delivery.getTagBinary());
             cachedTransfer.setHandle(tpLink.getLocalHandle());
             cachedTransfer.setRcvSettleMode(null);
             cachedTransfer.setResume(false); // Ensure default is written
@@ -662,10 +723,15 @@ public class TransportImpl extends EndpointImpl
                     tpLink.setInProgressDelivery(null);
 
                     delivery.setDone();
-                    tpLink.setDeliveryCount(tpLink.getDeliveryCount().add(UnsignedInteger.ONE));
-                    tpLink.setLinkCredit(tpLink.getLinkCredit().subtract(UnsignedInteger.ONE));
+                    if (delivery.isSettled())
+                    {
+                        delivery.releaseGeneratedTag();
+                    }
+                    tpLink.incrementDeliveryCount();
+                    tpLink.decrementLinkCredit();
                     session.incrementOutgoingDeliveries(-1);
                     snd.decrementQueued();
+                    _metrics.deliverySent();
                 }
             }
             else
@@ -694,6 +760,7 @@ public class TransportImpl extends EndpointImpl
             if(delivery.isSettled())
             {
                 tpDelivery.settled();
+                delivery.releaseGeneratedTag();
             }
             cachedDisposition.setState(delivery.getLocalState());
 
@@ -708,6 +775,88 @@ public class TransportImpl extends EndpointImpl
         return !delivery.isBuffered();
     }
 
+    /**
+     * Checks whether the link credit or the peer's session window is holding back transfers,
+     * counting each time a session or link becomes stalled.
+     */
+    private boolean stalled(TransportSession tpSession, TransportLink<?> tpLink)
+    {
+        if (!tpLink.hasCredit()) {
+            if (tpLink.setCreditStalled(true)) {
+                _metrics.creditStall();
+                if (FlightRecorderEvent.FLOW_STALL.isEnabled()) {
+                    FlightRecorderEvent.FLOW_STALL.emit(tpLink.getName(), "credit");
+                }
+            }
+            return true;
+        }
+        tpLink.setCreditStalled(false);
+
+        if (!tpSession.hasOutgoingCredit()) {
+            if (tpSession.setWindowStalled(true)) {
+                _metrics.sessionWindowStall();
+                if (FlightRecorderEvent.FLOW_STALL.isEnabled()) {
+                    FlightRecorderEvent.FLOW_STALL.emit(tpLink.getName(), "session window");
+                }
+            }
+            return true;
+        }
+        tpSession.setWindowStalled(false);
+        return false;
+    }
+
+    /**
+     * Writes a single pre-settled Transfer for the given sender straight into the frame writer,
+     * bypassing the delivery and transport work machinery.
+     *
+     * @return false if the transfer cannot be written immediately, in which case nothing was written
+     */
+    boolean writePresettledTransfer(SenderImpl snd, Binary tag, ReadableBuffer payload)
+    {
+        TransportSender tpLink = snd.getTransportLink();
+        TransportSession tpSession = snd.getSession().getTransportSession();
+
+        if (_isCloseSent || _head_closed || tpLink == null || tpSession == null || tpSession.endSent() || tpLink.detachSent() ||
+            !tpSession.isLocalChannelSet() || tpLink.getLocalHandle() == null ||
+            !tpSession.hasOutgoingCredit() || !tpLink.hasCredit() ||
+            tpLink.getInProgressDelivery() != null || snd.getQueued() > 0 || _frameWriter.isFull())
+        {
+            return false;
+        }
+
+        cachedTransfer.setDeliveryId(tpSession.getOutgoingDeliveryId());
+        cachedTransfer.setDeliveryTag(tag);
+        cachedTransfer.setHandle(tpLink.getLocalHandle());
+        cachedTransfer.setMessageFormat(UnsignedInteger.ZERO);
+        cachedTransfer.setSettled(Boolean.TRUE);
+        cachedTransfer.setMore(false);
+        cachedTransfer.setState(null);
+        cachedTransfer.setRcvSettleMode(null);
+        cachedTransfer.setResume(false); // Ensure default is written
+        cachedTransfer.setAborted(false); // Ensure default is written
+        cachedTransfer.setBatchable(false); // Ensure default is written
+
+        // The performative is encoded first so the payload is only written if it fits in the frame
+        if (!_frameWriter.writeFrameIfPayloadFits(tpSession.getLocalChannel(), cachedTransfer, payload))
+        {
+            return false;
+        }
+        _metrics.frameOutput(cachedTransfer);
+        _metrics.outputBuffered(_frameWriter.getBufferedBytes());
+
+        tpSession.incrementOutgoingDeliveryId();
+        tpSession.incrementOutgoingId();
+        tpSession.decrementRemoteIncomingWindow();
+        tpLink.incrementDeliveryCount();
+        tpLink.decrementLinkCredit();
+        snd.decrementCredit();
+        _metrics.deliverySent();
+
+        put(Event.Type.TRANSPORT, this);
+
+        return true;
+    }
+
     private boolean processTransportWorkReceiver(DeliveryImpl delivery, ReceiverImpl rcv)
     {
         TransportDelivery tpDelivery = delivery.getTransportDelivery();
@@ -746,10 +895,36 @@ public class TransportImpl extends EndpointImpl
         return false;
     }
 
+    private boolean deferCredit(TransportLink<?> transportLink, int credits, boolean overBudget)
+    {
+        if (credits > 0 && overBudget)
+        {
+            return true;
+        }
+        int threshold = _flowReplenishThreshold;
+        return credits > 0 && credits < threshold && transportLink.getLinkCredit() >= threshold;
+    }
+
     private void processReceiverFlow()
     {
         if(_connectionEndpoint != null && _isOpenSent && !_isCloseSent)
         {
+            _flowPass++;
+            boolean overBudget = isMemoryBudgetExceeded();
+            if(_creditWithheld && !overBudget)
+            {
+                // receivers that withheld credit have since left the modified list
+                _creditWithheld = false;
+                Link link = _connectionEndpoint.linkHead(null, null);
+                while(link != null)
+                {
+                    if(link instanceof ReceiverImpl && ((ReceiverImpl) link).getUnsentCredits() > 0)
+                    {
+                        ((ReceiverImpl) link).modified(false);
+                    }
+                    link = link.next(null, null);
+                }
+            }
             EndpointImpl endpoint = _connectionEndpoint.getTransportHead();
             while(endpoint != null)
             {
@@ -761,9 +936,22 @@ public class TransportImpl extends EndpointImpl
 
                     if(receiver.getLocalState() == EndpointState.ACTIVE && transportSession.isLocalChannelSet() && !receiver.detached())
                     {
-                        int credits = receiver.clearUnsentCredits();
+                        int credits = receiver.getUnsentCredits();
+                        boolean windowClosed = transportSession.getIncomingWindowSize() == 0;
+                        if(credits != 0 && !receiver.getDrain() && !windowClosed && deferCredit(transportLink, credits, overBudget))
+                        {
+                            _creditWithheld |= overBudget;
+                            credits = 0;
+                        }
+                        else
+                        {
+                            receiver.clearUnsentCredits();
+                        }
+
+                        // a link flow carries the session state too, so a closed window
+                        // alone only needs one flow per session in each pass
                         if(credits != 0 || receiver.getDrain() ||
-                           transportSession.getIncomingWindowSize().equals(UnsignedInteger.ZERO))
+                           (windowClosed && transportSession.getFlowPass() != _flowPass))
                         {
                             transportLink.addCredit(credits);
                             writeFlow(transportSession, transportLink);
@@ -783,7 +971,7 @@ public class TransportImpl extends EndpointImpl
 
                     if(session.getLocalState() == EndpointState.ACTIVE && transportSession.isLocalChannelSet())
                     {
-                        if(transportSession.getIncomingWindowSize().equals(UnsignedInteger.ZERO))
+                        if(transportSession.getIncomingWindowSize() == 0 && transportSession.getFlowPass() != _flowPass)
                         {
                             writeFlow(transportSession, null);
                         }
@@ -970,9 +1158,9 @@ public class TransportImpl extends EndpointImpl
                         transportSession.updateIncomingWindow();
 
                         begin.setHandleMax(transportSession.getHandleMax());
-                        begin.setIncomingWindow(transportSession.getIncomingWindowSize());
-                        begin.setOutgoingWindow(transportSession.getOutgoingWindowSize());
-                        begin.setNextOutgoingId(transportSession.getNextOutgoingId());
+                        begin.setIncomingWindow(UnsignedInteger.valueOf(transportSession.getIncomingWindowSize()));
+                        begin.setOutgoingWindow(UnsignedInteger.valueOf(transportSession.getOutgoingWindowSize()));
+                        begin.setNextOutgoingId(UnsignedInteger.valueOf(transportSession.getNextOutgoingId()));
 
                         if(session.getProperties() != null)
                         {
@@ -1021,17 +1209,12 @@ public class TransportImpl extends EndpointImpl
 
     private int allocateLocalChannel(TransportSession transportSession)
     {
-        for (int i = 0; i < _connectionEndpoint.getMaxChannels(); i++)
+        int channel = _localSessions.allocate(transportSession, _connectionEndpoint.getMaxChannels());
+        if (channel >= 0)
         {
-            if (!_localSessions.containsKey(i))
-            {
-                _localSessions.put(i, transportSession);
-                transportSession.setLocalChannel(i);
-                return i;
-            }
+            transportSession.setLocalChannel(channel);
         }
-
-        return -1;
+        return channel;
     }
 
     private int freeLocalChannel(TransportSession transportSession)
@@ -1148,6 +1331,8 @@ public class TransportImpl extends EndpointImpl
                               ReadableBuffer payload, Runnable onPayloadTooLarge)
     {
         _frameWriter.writeFrame(channel, frameBody, payload, onPayloadTooLarge);
+        _metrics.frameOutput(frameBody);
+        _metrics.outputBuffered(_frameWriter.getBufferedBytes());
     }
 
     //==================================================================================================================
@@ -1203,13 +1388,19 @@ public class TransportImpl extends EndpointImpl
         {
             _remoteIdleTimeout = open.getIdleTimeOut().intValue();
         }
+
+        if (FlightRecorderEvent.CONNECTION_OPEN.isEnabled())
+        {
+            FlightRecorderEvent.CONNECTION_OPEN.emit(_connectionEndpoint == null ? null : _connectionEndpoint.getContainer(),
+                                                     open.getContainerId(), open.getHostname());
+        }
     }
 
     @Override
     public void handleBegin(Begin begin, Binary payload, Integer channel)
     {
         // TODO - check channel < max_channel
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession != null)
         {
             // TODO - fail due to begin on begun session
@@ -1239,7 +1430,7 @@ public class TransportImpl extends EndpointImpl
             session.setRemoteDesiredCapabilities(begin.getDesiredCapabilities());
             session.setRemoteOfferedCapabilities(begin.getOfferedCapabilities());
 
-            _remoteSessions.put(channel, transportSession);
+            _remoteSessions.put(channel.intValue(), transportSession);
 
             _connectionEndpoint.put(Event.Type.SESSION_REMOTE_OPEN, session);
         }
@@ -1249,7 +1440,7 @@ public class TransportImpl extends EndpointImpl
     @Override
     public void handleAttach(Attach attach, Binary payload, Integer channel)
     {
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession == null)
         {
             // TODO - fail due to attach on non-begun session
@@ -1258,7 +1449,7 @@ public class TransportImpl extends EndpointImpl
         {
             SessionImpl session = transportSession.getSession();
             final UnsignedInteger handle = attach.getHandle();
-            if (handle.compareTo(transportSession.getHandleMax()) > 0) {
+            if (!transportSession.isRemoteHandleInRange(handle)) {
                 // The handle-max value is the highest handle value that can be used on the session. A peer MUST
                 // NOT attempt to attach a link using a handle value outside the range that its partner can handle.
                 // A peer that receives a handle outside the supported range MUST close the connection with the
@@ -1326,13 +1517,23 @@ public class TransportImpl extends EndpointImpl
             }
 
             _connectionEndpoint.put(Event.Type.LINK_REMOTE_OPEN, link);
+
+            if (FlightRecorderEvent.LINK_ATTACH.isEnabled())
+            {
+                FlightRecorderEvent.LINK_ATTACH.emit(attach.getName(), role(link), channel);
+            }
         }
     }
 
+    private static String role(LinkImpl link)
+    {
+        return link instanceof SenderImpl ? "sender" : "receiver";
+    }
+
     @Override
     public void handleFlow(Flow flow, Binary payload, Integer channel)
     {
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession == null)
         {
             // TODO - fail due to attach on non-begun session
@@ -1348,7 +1549,7 @@ public class TransportImpl extends EndpointImpl
     public void handleTransfer(Transfer transfer, Binary payload, Integer channel)
     {
         // TODO - check channel < max_channel
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession != null)
         {
             transportSession.handleTransfer(transfer, payload);
@@ -1362,7 +1563,7 @@ public class TransportImpl extends EndpointImpl
     @Override
     public void handleDisposition(Disposition disposition, Binary payload, Integer channel)
     {
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession == null)
         {
             // TODO - fail due to attach on non-begun session
@@ -1376,7 +1577,7 @@ public class TransportImpl extends EndpointImpl
     @Override
     public void handleDetach(Detach detach, Binary payload, Integer channel)
     {
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession == null)
         {
             // TODO - fail due to attach on non-begun session
@@ -1401,6 +1602,12 @@ public class TransportImpl extends EndpointImpl
                 {
                     link.getRemoteCondition().copyFrom(detach.getError());
                 }
+
+                if (FlightRecorderEvent.LINK_DETACH.isEnabled())
+                {
+                    FlightRecorderEvent.LINK_DETACH.emit(link.getName(), role(link), detach.getClosed(),
+                                                         detach.getError() == null ? null : String.valueOf(detach.getError().getCondition()));
+                }
             }
             else
             {
@@ -1412,14 +1619,14 @@ public class TransportImpl extends EndpointImpl
     @Override
     public void handleEnd(End end, Binary payload, Integer channel)
     {
-        TransportSession transportSession = _remoteSessions.get(channel);
+        TransportSession transportSession = _remoteSessions.get(channel.intValue());
         if(transportSession == null)
         {
             // TODO - fail due to attach on non-begun session
         }
         else
         {
-            _remoteSessions.remove(channel);
+            _remoteSessions.remove(channel.intValue());
             transportSession.receivedEnd();
             transportSession.unsetRemoteChannel();
             SessionImpl session = transportSession.getSession();
@@ -1451,6 +1658,12 @@ public class TransportImpl extends EndpointImpl
             _connectionEndpoint.put(Event.Type.CONNECTION_REMOTE_CLOSE, _connectionEndpoint);
         }
 
+        if (FlightRecorderEvent.CONNECTION_CLOSE.isEnabled())
+        {
+            FlightRecorderEvent.CONNECTION_CLOSE.emit(_connectionEndpoint == null ? null : _connectionEndpoint.getContainer(),
+                                                      _connectionEndpoint == null ? null : _connectionEndpoint.getRemoteContainer(),
+                                                      close.getError() == null ? null : String.valueOf(close.getError().getCondition()));
+        }
     }
 
     @Override
@@ -1469,6 +1682,7 @@ public class TransportImpl extends EndpointImpl
             tracer.receivedFrame(frame);
         }
 
+        _metrics.frameInput(frame.getBody());
         frame.getBody().invoke(this,frame.getPayload(), frame.getChannel());
         return _closeReceived;
     }
@@ -1534,6 +1748,45 @@ public class TransportImpl extends EndpointImpl
         this._protocolTracer.set(protocolTracer);
     }
 
+    @Override
+    public void setFrameCapture(FrameCapture frameCapture)
+    {
+        _frameCapture = frameCapture;
+        _captureConnection = frameCapture == null ? 0 : frameCapture.nextConnectionId();
+        _captureFrames = 0;
+    }
+
+    @Override
+    public FrameCapture getFrameCapture()
+    {
+        return _frameCapture;
+    }
+
+    private FrameCapture sampleFrameCapture()
+    {
+        FrameCapture capture = _frameCapture;
+        if (capture != null && _captureFrames++ % capture.getSampleInterval() == 0) {
+            return capture;
+        }
+        return null;
+    }
+
+    void captureOutgoing(byte[] frame, int offset, int length)
+    {
+        FrameCapture capture = sampleFrameCapture();
+        if (capture != null) {
+            capture.capture(_captureConnection, FrameCapture.OUTGOING, frame, offset, length);
+        }
+    }
+
+    void captureIncoming(int frameSize, ByteBuffer remainder)
+    {
+        FrameCapture capture = sampleFrameCapture();
+        if (capture != null) {
+            capture.capture(_captureConnection, FrameCapture.INCOMING, frameSize, remainder);
+        }
+    }
+
     @Override
     public ByteBuffer getInputBuffer()
     {
@@ -1568,7 +1821,12 @@ public class TransportImpl extends EndpointImpl
     public int capacity()
     {
         init();
-        return _inputProcessor.capacity();
+        int capacity = _inputProcessor.capacity();
+        if (capacity > 0 && isMemoryBudgetExceeded())
+        {
+            return 0;
+        }
+        return capacity;
     }
 
     @Override
@@ -1585,9 +1843,18 @@ public class TransportImpl extends EndpointImpl
 
         try {
             init();
+            Object batch = FlightRecorderEvent.FRAMES_PARSED.begin();
+            long framesBefore = batch == null ? 0 : _frameParser.getFramesInput();
             int beforePosition = _inputProcessor.position();
             _inputProcessor.process();
             _bytesInput += beforePosition - _inputProcessor.position();
+            _metrics.bytesInput(beforePosition - _inputProcessor.position());
+            if (batch != null) {
+                int frames = (int) (_frameParser.getFramesInput() - framesBefore);
+                if (frames > 0) {
+                    FlightRecorderEvent.FRAMES_PARSED.commit(batch, frames, beforePosition - _inputProcessor.position());
+                }
+            }
         } catch (TransportException e) {
             _head_closed = true;
             throw e;
@@ -1621,6 +1888,7 @@ public class TransportImpl extends EndpointImpl
         init();
         _outputProcessor.pop(bytes);
         _bytesOutput += bytes;
+        _metrics.bytesOutput(bytes);
 
         int p = pending();
         if (p < 0 && !postedHeadClosed) {
@@ -1724,6 +1992,95 @@ public class TransportImpl extends EndpointImpl
         return _frameWriter.getFramesOutput();
     }
 
+    @Override
+    public TransportMetrics getMetrics()
+    {
+        return _metrics;
+    }
+
+    TransportMetricsImpl getMetricsImpl()
+    {
+        return _metrics;
+    }
+
+    @Override
+    public MemoryUsage getMemoryUsage()
+    {
+        long incoming = 0;
+        long outgoing = 0;
+        if (_connectionEndpoint != null)
+        {
+            incoming = _connectionEndpoint.getIncomingBytes();
+            outgoing = _connectionEndpoint.getOutgoingBytes();
+        }
+        long parser = _frameParser == null ? 0 : _frameParser.getBufferCapacity();
+        long writer = _frameWriter.getBufferCapacity() + (_outputAdaptor == null ? 0 : _outputAdaptor.getBufferCapacity());
+        long ssl = _ssl == null ? 0 : _ssl.getBufferCapacity();
+        return new MemoryUsage(incoming, outgoing, parser, writer, ssl);
+    }
+
+    @Override
+    public void setMemoryBudget(MemoryBudget budget)
+    {
+        if (_memoryBudget != null)
+        {
+            _memoryBudget.removeListener(_memoryBudgetListener);
+            _memoryBudget.adjust(-_memoryBudgeted);
+            _memoryBudgeted = 0;
+        }
+        _memoryBudget = budget;
+        if (budget != null)
+        {
+            budget.addListener(_memoryBudgetListener);
+            updateMemoryBudget();
+        }
+    }
+
+    @Override
+    public MemoryBudget getMemoryBudget()
+    {
+        return _memoryBudget;
+    }
+
+    /**
+     * Brings this transport's contribution to its memory budget up to date. The delivery
+     * bytes are running totals kept by the connection, so this is cheap enough to call
+     * whenever they change.
+     */
+    void updateMemoryBudget()
+    {
+        MemoryBudget budget = _memoryBudget;
+        if (budget != null)
+        {
+            long used = 0;
+            if (_connectionEndpoint != null)
+            {
+                used = _connectionEndpoint.getIncomingBytes() + _connectionEndpoint.getOutgoingBytes();
+            }
+            used += (_frameParser == null ? 0 : _frameParser.getBufferCapacity())
+                    + _frameWriter.getBufferCapacity()
+                    + (_outputAdaptor == null ? 0 : _outputAdaptor.getBufferCapacity())
+                    + (_ssl == null ? 0 : _ssl.getBufferCapacity());
+            if (used != _memoryBudgeted)
+            {
+                long delta = used - _memoryBudgeted;
+                _memoryBudgeted = used;
+                budget.adjust(delta);
+            }
+        }
+    }
+
+    private boolean isMemoryBudgetExceeded()
+    {
+        MemoryBudget budget = _memoryBudget;
+        if (budget == null)
+        {
+            return false;
+        }
+        updateMemoryBudget();
+        return budget.isExceeded();
+    }
+
     @Override
     public long getFramesInput()
     {
@@ -1837,6 +2194,22 @@ public class TransportImpl extends EndpointImpl
         return _emitFlowEventOnSend;
     }
 
+    @Override
+    public void setFlowReplenishThreshold(int credits)
+    {
+        if (credits < 0)
+        {
+            throw new IllegalArgumentException("Replenish threshold must not be negative: " + credits);
+        }
+        _flowReplenishThreshold = credits;
+    }
+
+    @Override
+    public int getFlowReplenishThreshold()
+    {
+        return _flowReplenishThreshold;
+    }
+
     @Override
     public void setUseReadOnlyOutputBuffer(boolean value)
     {
@@ -30,8 +30,11 @@ class TransportLink<T extends LinkImpl>
     private UnsignedInteger _localHandle;
     private String _name;
     private UnsignedInteger _remoteHandle;
-    private UnsignedInteger _deliveryCount;
-    private UnsignedInteger _linkCredit = UnsignedInteger.ZERO;
+    // AMQP uint values held as ints to avoid allocating on every transfer, boxed only for encoding
+    private int _deliveryCount;
+    private boolean _deliveryCountSet;
+    private int _linkCredit;
+    private boolean _creditStalled;
     private T _link;
     private UnsignedInteger _remoteDeliveryCount;
     private UnsignedInteger _remoteLinkCredit;
@@ -128,24 +131,40 @@ class TransportLink<T extends LinkImpl>
         _remoteHandle = null;
     }
 
-    public UnsignedInteger getDeliveryCount()
+    public int getDeliveryCount()
     {
         return _deliveryCount;
     }
 
-    public UnsignedInteger getLinkCredit()
+    boolean isDeliveryCountSet()
+    {
+        return _deliveryCountSet;
+    }
+
+    public int getLinkCredit()
     {
         return _linkCredit;
     }
 
     public void addCredit(int credits)
     {
-        _linkCredit = UnsignedInteger.valueOf(_linkCredit.intValue() + credits);
+        _linkCredit += credits;
+    }
+
+    /**
+     * @return true if the link was not already stalled and now is
+     */
+    boolean setCreditStalled(boolean stalled)
+    {
+        boolean changed = stalled && !_creditStalled;
+        _creditStalled = stalled;
+        return changed;
     }
 
     public boolean hasCredit()
     {
-        return getLinkCredit().compareTo(UnsignedInteger.ZERO) > 0;
+        // Unsigned, so any non-zero value is credit
+        return _linkCredit != 0;
     }
 
     public T getLink()
@@ -162,14 +181,21 @@ class TransportLink<T extends LinkImpl>
         _link.getConnectionImpl().put(Event.Type.LINK_FLOW, _link);
     }
 
-    void setLinkCredit(UnsignedInteger linkCredit)
+    void setLinkCredit(int linkCredit)
     {
         _linkCredit = linkCredit;
     }
 
-    public void setDeliveryCount(UnsignedInteger deliveryCount)
+    public void setDeliveryCount(int deliveryCount)
     {
         _deliveryCount = deliveryCount;
+        _deliveryCountSet = true;
+    }
+
+    void setDeliveryCount(UnsignedInteger deliveryCount)
+    {
+        _deliveryCountSet = deliveryCount != null;
+        _deliveryCount = _deliveryCountSet ? deliveryCount.intValue() : 0;
     }
 
     public void settled(TransportDelivery transportDelivery)
@@ -195,12 +221,12 @@ class TransportLink<T extends LinkImpl>
 
     void decrementLinkCredit()
     {
-        _linkCredit = _linkCredit.subtract(UnsignedInteger.ONE);
+        _linkCredit--;
     }
 
     void incrementDeliveryCount()
     {
-        _deliveryCount = _deliveryCount.add(UnsignedInteger.ONE);
+        _deliveryCount++;
     }
 
     public void receivedDetach()
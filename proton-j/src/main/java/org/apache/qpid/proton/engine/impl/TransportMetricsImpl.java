@@ -0,0 +1,276 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Begin;
+import org.apache.qpid.proton.amqp.transport.Close;
+import org.apache.qpid.proton.amqp.transport.Detach;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.End;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.Open;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.apache.qpid.proton.engine.TransportMetrics;
+
+/**
+ * Counters behind {@link TransportMetrics}.
+ *
+ * Only the transport's own thread updates the counters, so each update is
+ * a plain read followed by an ordered write, which other threads can read
+ * without locking.
+ */
+class TransportMetricsImpl implements TransportMetrics
+{
+    private static final Performative[] PERFORMATIVES = Performative.values();
+
+    private static final int FRAMES_INPUT = 0;
+    private static final int FRAMES_OUTPUT = FRAMES_INPUT + PERFORMATIVES.length;
+    private static final int BYTES_INPUT = FRAMES_OUTPUT + PERFORMATIVES.length;
+    private static final int BYTES_OUTPUT = BYTES_INPUT + 1;
+    private static final int DELIVERIES_SENT = BYTES_OUTPUT + 1;
+    private static final int DELIVERIES_RECEIVED = DELIVERIES_SENT + 1;
+    private static final int DELIVERIES_SETTLED = DELIVERIES_RECEIVED + 1;
+    private static final int DELIVERIES_ABORTED = DELIVERIES_SETTLED + 1;
+    private static final int CREDIT_STALLS = DELIVERIES_ABORTED + 1;
+    private static final int SESSION_WINDOW_STALLS = CREDIT_STALLS + 1;
+    private static final int OUTPUT_HIGH_WATER_MARK = SESSION_WINDOW_STALLS + 1;
+    private static final int SETTLE_LATENCY_TOTAL = OUTPUT_HIGH_WATER_MARK + 1;
+    private static final int SETTLE_LATENCY_HISTOGRAM = SETTLE_LATENCY_TOTAL + 1;
+    private static final int SIZE = SETTLE_LATENCY_HISTOGRAM + SETTLE_LATENCY_BUCKETS;
+
+    private final AtomicLongArray counters = new AtomicLongArray(SIZE);
+
+    private void increment(int index)
+    {
+        counters.lazySet(index, counters.get(index) + 1);
+    }
+
+    private void add(int index, long delta)
+    {
+        counters.lazySet(index, counters.get(index) + delta);
+    }
+
+    static Performative performative(Object frameBody)
+    {
+        if (frameBody instanceof Transfer) {
+            return Performative.TRANSFER;
+        } else if (frameBody instanceof Flow) {
+            return Performative.FLOW;
+        } else if (frameBody instanceof Disposition) {
+            return Performative.DISPOSITION;
+        } else if (frameBody instanceof Attach) {
+            return Performative.ATTACH;
+        } else if (frameBody instanceof Detach) {
+            return Performative.DETACH;
+        } else if (frameBody instanceof Begin) {
+            return Performative.BEGIN;
+        } else if (frameBody instanceof End) {
+            return Performative.END;
+        } else if (frameBody instanceof Open) {
+            return Performative.OPEN;
+        } else if (frameBody instanceof Close) {
+            return Performative.CLOSE;
+        } else {
+            return Performative.EMPTY;
+        }
+    }
+
+    static int settleLatencyBucket(long nanos)
+    {
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, SETTLE_LATENCY_BUCKETS - 1);
+    }
+
+    void frameInput(Object frameBody)
+    {
+        increment(FRAMES_INPUT + performative(frameBody).ordinal());
+    }
+
+    void frameOutput(Object frameBody)
+    {
+        increment(FRAMES_OUTPUT + performative(frameBody).ordinal());
+    }
+
+    void bytesInput(long bytes)
+    {
+        add(BYTES_INPUT, bytes);
+    }
+
+    void bytesOutput(long bytes)
+    {
+        add(BYTES_OUTPUT, bytes);
+    }
+
+    void outputBuffered(int bytes)
+    {
+        if (bytes > counters.get(OUTPUT_HIGH_WATER_MARK)) {
+            counters.lazySet(OUTPUT_HIGH_WATER_MARK, bytes);
+        }
+    }
+
+    void deliverySent()
+    {
+        increment(DELIVERIES_SENT);
+    }
+
+    void deliveryReceived()
+    {
+        increment(DELIVERIES_RECEIVED);
+    }
+
+    void deliveryAborted()
+    {
+        increment(DELIVERIES_ABORTED);
+    }
+
+    void deliverySettled(long sentNanos)
+    {
+        increment(DELIVERIES_SETTLED);
+        if (sentNanos != 0) {
+            long latency = Math.max(0, System.nanoTime() - sentNanos);
+            add(SETTLE_LATENCY_TOTAL, latency);
+            increment(SETTLE_LATENCY_HISTOGRAM + settleLatencyBucket(latency));
+        }
+    }
+
+    void creditStall()
+    {
+        increment(CREDIT_STALLS);
+    }
+
+    void sessionWindowStall()
+    {
+        increment(SESSION_WINDOW_STALLS);
+    }
+
+    private long sum(int from, int count)
+    {
+        long total = 0;
+        for (int i = from; i < from + count; i++) {
+            total += counters.get(i);
+        }
+        return total;
+    }
+
+    @Override
+    public long getFramesInput()
+    {
+        return sum(FRAMES_INPUT, PERFORMATIVES.length);
+    }
+
+    @Override
+    public long getFramesOutput()
+    {
+        return sum(FRAMES_OUTPUT, PERFORMATIVES.length);
+    }
+
+    @Override
+    public long getFramesInput(Performative performative)
+    {
+        return counters.get(FRAMES_INPUT + performative.ordinal());
+    }
+
+    @Override
+    public long getFramesOutput(Performative performative)
+    {
+        return counters.get(FRAMES_OUTPUT + performative.ordinal());
+    }
+
+    @Override
+    public long getBytesInput()
+    {
+        return counters.get(BYTES_INPUT);
+    }
+
+    @Override
+    public long getBytesOutput()
+    {
+        return counters.get(BYTES_OUTPUT);
+    }
+
+    @Override
+    public long getDeliveriesSent()
+    {
+        return counters.get(DELIVERIES_SENT);
+    }
+
+    @Override
+    public long getDeliveriesReceived()
+    {
+        return counters.get(DELIVERIES_RECEIVED);
+    }
+
+    @Override
+    public long getDeliveriesSettled()
+    {
+        return counters.get(DELIVERIES_SETTLED);
+    }
+
+    @Override
+    public long getDeliveriesAborted()
+    {
+        return counters.get(DELIVERIES_ABORTED);
+    }
+
+    @Override
+    public long getCreditStalls()
+    {
+        return counters.get(CREDIT_STALLS);
+    }
+
+    @Override
+    public long getSessionWindowStalls()
+    {
+        return counters.get(SESSION_WINDOW_STALLS);
+    }
+
+    @Override
+    public long getOutputBufferHighWaterMark()
+    {
+        return counters.get(OUTPUT_HIGH_WATER_MARK);
+    }
+
+    @Override
+    public long getSettleLatencyCount()
+    {
+        return sum(SETTLE_LATENCY_HISTOGRAM, SETTLE_LATENCY_BUCKETS);
+    }
+
+    @Override
+    public long getSettleLatencyTotalNanos()
+    {
+        return counters.get(SETTLE_LATENCY_TOTAL);
+    }
+
+    @Override
+    public long[] getSettleLatencyHistogram()
+    {
+        long[] histogram = new long[SETTLE_LATENCY_BUCKETS];
+        for (int i = 0; i < SETTLE_LATENCY_BUCKETS; i++) {
+            histogram[i] = counters.get(SETTLE_LATENCY_HISTOGRAM + i);
+        }
+        return histogram;
+    }
+}
@@ -104,6 +104,11 @@ class TransportOutputAdaptor implements TransportOutput
         release_buffers();
     }
 
+    int getBufferCapacity()
+    {
+        return _outputBuffer == null ? 0 : _outputBuffer.capacity();
+    }
+
     private void init_buffers() {
         _outputBuffer = newWriteableBuffer(_maxFrameSize);
         if (_readOnlyHead) {
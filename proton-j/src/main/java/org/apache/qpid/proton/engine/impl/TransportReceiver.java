@@ -44,13 +44,13 @@ class TransportReceiver extends TransportLink<ReceiverImpl>
     {
         super.handleFlow(flow);
         int remote = getRemoteDeliveryCount().intValue();
-        int local = getDeliveryCount().intValue();
+        int local = getDeliveryCount();
         int delta = remote - local;
         if(delta > 0)
         {
             getLink().addCredit(-delta);
             addCredit(-delta);
-            setDeliveryCount(getRemoteDeliveryCount());
+            setDeliveryCount(remote);
             getLink().setDrained(getLink().getDrained() + delta);
         }
     }
@@ -21,14 +21,13 @@
 
 package org.apache.qpid.proton.engine.impl;
 
-import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.transport.Flow;
 
 class TransportSender extends TransportLink<SenderImpl>
 {
     private boolean _drain;
     private DeliveryImpl _inProgressDelivery;
-    private static final UnsignedInteger ORIGINAL_DELIVERY_COUNT = UnsignedInteger.ZERO;
+    private static final int ORIGINAL_DELIVERY_COUNT = 0;
 
     TransportSender(SenderImpl link)
     {
@@ -44,14 +43,14 @@ class TransportSender extends TransportLink<SenderImpl>
         _drain = flow.getDrain();
         getLink().setDrain(flow.getDrain());
         int oldCredit = getLink().getCredit();
-        UnsignedInteger oldLimit = getLinkCredit().add(getDeliveryCount());
-        UnsignedInteger transferLimit = flow.getLinkCredit().add(flow.getDeliveryCount() == null
-                                                                         ? ORIGINAL_DELIVERY_COUNT
-                                                                         : flow.getDeliveryCount());
-        UnsignedInteger linkCredit = transferLimit.subtract(getDeliveryCount());
+        int oldLimit = getLinkCredit() + getDeliveryCount();
+        int transferLimit = flow.getLinkCredit().intValue() + (flow.getDeliveryCount() == null
+                                                                   ? ORIGINAL_DELIVERY_COUNT
+                                                                   : flow.getDeliveryCount().intValue());
+        int linkCredit = transferLimit - getDeliveryCount();
 
         setLinkCredit(linkCredit);
-        getLink().setCredit(transferLimit.subtract(oldLimit).intValue() + oldCredit);
+        getLink().setCredit(transferLimit - oldLimit + oldCredit);
 
         DeliveryImpl current = getLink().current();
         getLink().getConnectionImpl().workUpdate(current);
@@ -21,6 +21,7 @@
 
 package org.apache.qpid.proton.engine.impl;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,7 +36,8 @@ import org.apache.qpid.proton.engine.Event;
 class TransportSession
 {
     private static final int HANDLE_MAX = 65535;
-    private static final UnsignedInteger DEFAULT_WINDOW_SIZE = UnsignedInteger.valueOf(2147483647); // biggest legal value
+    private static final int INITIAL_HANDLE_TABLE_SIZE = 8;
+    private static final int DEFAULT_WINDOW_SIZE = 2147483647; // biggest legal value
 
     private final TransportImpl _transport;
     private final SessionImpl _session;
@@ -44,24 +46,36 @@ class TransportSession
     private boolean _openSent;
     private final UnsignedInteger _handleMax = UnsignedInteger.valueOf(HANDLE_MAX); //TODO: should this be configurable?
     // This is used for the delivery-id actually stamped in each transfer frame of a given message delivery.
-    private UnsignedInteger _outgoingDeliveryId = UnsignedInteger.ZERO;
+    private int _outgoingDeliveryId = 0;
     // These are used for the session windows communicated via Begin/Flow frames
-    // and the conceptual transfer-id relating to updating them.
-    private UnsignedInteger _incomingWindowSize = UnsignedInteger.ZERO;
-    private UnsignedInteger _outgoingWindowSize = UnsignedInteger.ZERO;
-    private UnsignedInteger _nextOutgoingId = UnsignedInteger.ONE;
-    private UnsignedInteger _nextIncomingId = null;
-
-    private final Map<UnsignedInteger, TransportLink<?>> _remoteHandlesMap = new HashMap<UnsignedInteger, TransportLink<?>>();
-    private final Map<UnsignedInteger, TransportLink<?>> _localHandlesMap = new HashMap<UnsignedInteger, TransportLink<?>>();
+    // and the conceptual transfer-id relating to updating them. They are AMQP uint
+    // values held in primitive ints so the per-transfer bookkeeping does not allocate,
+    // arithmetic wraps as sequence numbers should and they are only boxed for encoding.
+    private int _incomingWindowSize = 0;
+    private int _outgoingWindowSize = 0;
+    private int _nextOutgoingId = 1;
+    private int _nextIncomingId;
+    private boolean _nextIncomingIdSet;
+
+    // Handles are small dense integers bounded by handle-max, so the links are
+    // held in arrays indexed by handle and grown on demand. Freed local handles
+    // are kept on a stack for reuse before the high water mark is advanced.
+    private TransportLink<?>[] _remoteHandles = new TransportLink<?>[INITIAL_HANDLE_TABLE_SIZE];
+    private TransportLink<?>[] _localHandles = new TransportLink<?>[INITIAL_HANDLE_TABLE_SIZE];
+    private int _localHandleCount;
+    private int[] _freeLocalHandles = new int[INITIAL_HANDLE_TABLE_SIZE];
+    private int _freeLocalHandleCount;
     private final Map<String, TransportLink> _halfOpenSenderLinks = new HashMap<String, TransportLink>();
     private final Map<String, TransportLink> _halfOpenReceiverLinks = new HashMap<String, TransportLink>();
 
 
     private UnsignedInteger _incomingDeliveryId = null;
-    private UnsignedInteger _remoteIncomingWindow;
+    private int _remoteIncomingWindow;
+    private boolean _remoteIncomingWindowSet;
+    private int _flowPass;
+    private boolean _windowStalled;
     private UnsignedInteger _remoteOutgoingWindow;
-    private UnsignedInteger _remoteNextIncomingId = _nextOutgoingId;
+    private UnsignedInteger _remoteNextIncomingId = UnsignedInteger.ONE;
     private UnsignedInteger _remoteNextOutgoingId;
     private final Map<UnsignedInteger, DeliveryImpl>
             _unsettledIncomingDeliveriesById = new HashMap<UnsignedInteger, DeliveryImpl>();
@@ -76,7 +90,7 @@ class TransportSession
     {
         _transport = transport;
         _session = session;
-        _outgoingWindowSize = UnsignedInteger.valueOf(session.getOutgoingWindow());
+        _outgoingWindowSize = (int) session.getOutgoingWindow();
     }
 
     void unbind()
@@ -147,11 +161,17 @@ class TransportSession
 
     private void unsetLocalHandles()
     {
-        for (TransportLink<?> tl : _localHandlesMap.values())
+        for (int i = 0; i < _localHandleCount; i++)
         {
-            tl.clearLocalHandle();
+            TransportLink<?> tl = _localHandles[i];
+            if (tl != null)
+            {
+                tl.clearLocalHandle();
+                _localHandles[i] = null;
+            }
         }
-        _localHandlesMap.clear();
+        _localHandleCount = 0;
+        _freeLocalHandleCount = 0;
     }
 
     public void unsetRemoteChannel()
@@ -165,11 +185,15 @@ class TransportSession
 
     private void unsetRemoteHandles()
     {
-        for (TransportLink<?> tl : _remoteHandlesMap.values())
+        for (int i = 0; i < _remoteHandles.length; i++)
         {
-            tl.clearRemoteHandle();
+            TransportLink<?> tl = _remoteHandles[i];
+            if (tl != null)
+            {
+                tl.clearRemoteHandle();
+                _remoteHandles[i] = null;
+            }
         }
-        _remoteHandlesMap.clear();
     }
 
     public UnsignedInteger getHandleMax()
@@ -177,7 +201,7 @@ class TransportSession
         return _handleMax;
     }
 
-    public UnsignedInteger getIncomingWindowSize()
+    public int getIncomingWindowSize()
     {
         return _incomingWindowSize;
     }
@@ -189,68 +213,121 @@ class TransportSession
         if (incomingCapacity <= 0 || size <= 0) {
             _incomingWindowSize = DEFAULT_WINDOW_SIZE;
         } else {
-            _incomingWindowSize = UnsignedInteger.valueOf((incomingCapacity - _session.getIncomingBytes())/size);
+            _incomingWindowSize = (incomingCapacity - _session.getIncomingBytes())/size;
         }
     }
 
     public UnsignedInteger getOutgoingDeliveryId()
     {
-        return _outgoingDeliveryId;
+        return UnsignedInteger.valueOf(_outgoingDeliveryId);
     }
 
     void incrementOutgoingDeliveryId()
     {
-        _outgoingDeliveryId = _outgoingDeliveryId.add(UnsignedInteger.ONE);
+        _outgoingDeliveryId++;
     }
 
-    public UnsignedInteger getOutgoingWindowSize()
+    public int getOutgoingWindowSize()
     {
         return _outgoingWindowSize;
     }
 
-    public UnsignedInteger getNextOutgoingId()
+    public int getNextOutgoingId()
     {
         return _nextOutgoingId;
     }
 
     public TransportLink getLinkFromRemoteHandle(UnsignedInteger handle)
     {
-        return _remoteHandlesMap.get(handle);
+        return handle == null ? null : getLinkFromRemoteHandle(handle.intValue());
+    }
+
+    TransportLink getLinkFromRemoteHandle(int handle)
+    {
+        // a negative value is a uint above Integer.MAX_VALUE, beyond any handle-max
+        return handle >= 0 && handle < _remoteHandles.length ? _remoteHandles[handle] : null;
     }
 
     public UnsignedInteger allocateLocalHandle(TransportLink transportLink)
     {
-        for(int i = 0; i <= HANDLE_MAX; i++)
+        int handle;
+        if(_freeLocalHandleCount > 0)
         {
-            UnsignedInteger handle = UnsignedInteger.valueOf(i);
-            if(!_localHandlesMap.containsKey(handle))
+            handle = _freeLocalHandles[--_freeLocalHandleCount];
+        }
+        else if(_localHandleCount <= HANDLE_MAX)
+        {
+            handle = _localHandleCount++;
+            if(handle == _localHandles.length)
             {
-                _localHandlesMap.put(handle, transportLink);
-                transportLink.setLocalHandle(handle);
-                return handle;
+                _localHandles = Arrays.copyOf(_localHandles, growHandleTable(handle));
             }
         }
-        throw new IllegalStateException("no local handle available for allocation");
+        else
+        {
+            throw new IllegalStateException("no local handle available for allocation");
+        }
+
+        _localHandles[handle] = transportLink;
+        UnsignedInteger localHandle = UnsignedInteger.valueOf(handle);
+        transportLink.setLocalHandle(localHandle);
+        return localHandle;
     }
 
-    public void addLinkRemoteHandle(TransportLink link, UnsignedInteger remoteHandle)
+    boolean isRemoteHandleInRange(UnsignedInteger remoteHandle)
     {
-        _remoteHandlesMap.put(remoteHandle, link);
+        return remoteHandle.compareTo(_handleMax) <= 0;
     }
 
-    public void addLinkLocalHandle(TransportLink link, UnsignedInteger localhandle)
+    /**
+     * @return false if the handle exceeds handle-max, in which case the link is not added
+     */
+    public boolean addLinkRemoteHandle(TransportLink link, UnsignedInteger remoteHandle)
     {
-        _localHandlesMap.put(localhandle, link);
+        if(!isRemoteHandleInRange(remoteHandle))
+        {
+            return false;
+        }
+        int handle = remoteHandle.intValue();
+        if(handle >= _remoteHandles.length)
+        {
+            _remoteHandles = Arrays.copyOf(_remoteHandles, growHandleTable(handle));
+        }
+        _remoteHandles[handle] = link;
+        return true;
     }
 
     public void freeLocalHandle(UnsignedInteger handle)
     {
-        _localHandlesMap.remove(handle);
+        int index = handle.intValue();
+        if(index >= 0 && index < _localHandleCount && _localHandles[index] != null)
+        {
+            _localHandles[index] = null;
+            if(_freeLocalHandleCount == _freeLocalHandles.length)
+            {
+                _freeLocalHandles = Arrays.copyOf(_freeLocalHandles, _freeLocalHandleCount * 2);
+            }
+            _freeLocalHandles[_freeLocalHandleCount++] = index;
+        }
     }
 
     public void freeRemoteHandle(UnsignedInteger handle)
     {
-        _remoteHandlesMap.remove(handle);
+        int index = handle.intValue();
+        if(index >= 0 && index < _remoteHandles.length)
+        {
+            _remoteHandles[index] = null;
+        }
+    }
+
+    private static int growHandleTable(int handle)
+    {
+        int size = INITIAL_HANDLE_TABLE_SIZE;
+        while(size <= handle)
+        {
+            size <<= 1;
+        }
+        return Math.min(size, HANDLE_MAX + 1);
     }
 
     public TransportLink resolveHalfOpenLink(String name, boolean isSender)
@@ -305,11 +382,12 @@ class TransportSession
             if(messageFormat != null) {
                 delivery.setMessageFormat(messageFormat.intValue());
             }
-            TransportDelivery transportDelivery = new TransportDelivery(deliveryId, delivery, transportReceiver);
-            delivery.setTransportDelivery(transportDelivery);
+            delivery.createTransportDelivery(deliveryId, transportReceiver);
             transportReceiver.setIncomingDeliveryId(deliveryId);
             _unsettledIncomingDeliveriesById.put(deliveryId, delivery);
+            delivery.setSessionUnsettled(true);
             getSession().incrementIncomingDeliveries(1);
+            _transport.getMetricsImpl().deliveryReceived();
         }
 
         if( transfer.getState()!=null )
@@ -332,12 +410,18 @@ class TransportSession
             transportReceiver.setIncomingDeliveryId(null);
             if(aborted) {
                 delivery.setAborted();
+                _transport.getMetricsImpl().deliveryAborted();
             } else {
                 delivery.setComplete();
             }
 
             delivery.getLink().getTransportLink().decrementLinkCredit();
             delivery.getLink().getTransportLink().incrementDeliveryCount();
+
+            // revisit any credit held back by the replenish threshold
+            if (transportReceiver.getReceiver().getUnsentCredits() != 0) {
+                transportReceiver.getReceiver().modified(false);
+            }
         }
 
         if(Boolean.TRUE.equals(transfer.getSettled()) || aborted)
@@ -345,10 +429,10 @@ class TransportSession
             delivery.setRemoteSettled(true);
         }
 
-        _incomingWindowSize = _incomingWindowSize.subtract(UnsignedInteger.ONE);
+        _incomingWindowSize--;
 
         // this will cause a flow to happen
-        if (_incomingWindowSize.equals(UnsignedInteger.ZERO)) {
+        if (_incomingWindowSize == 0) {
             delivery.getLink().modified(false);
         }
 
@@ -381,14 +465,15 @@ class TransportSession
         unsetRemoteChannel();
     }
 
-    private void setRemoteIncomingWindow(UnsignedInteger incomingWindow)
+    private void setRemoteIncomingWindow(int incomingWindow)
     {
         _remoteIncomingWindow = incomingWindow;
+        _remoteIncomingWindowSet = true;
     }
 
     void decrementRemoteIncomingWindow()
     {
-        _remoteIncomingWindow = _remoteIncomingWindow.subtract(UnsignedInteger.ONE);
+        _remoteIncomingWindow--;
     }
 
     private void setRemoteOutgoingWindow(UnsignedInteger outgoingWindow)
@@ -404,11 +489,11 @@ class TransportSession
         if(inext != null)
         {
             setRemoteNextIncomingId(inext);
-            setRemoteIncomingWindow(inext.add(iwin).subtract(_nextOutgoingId));
+            setRemoteIncomingWindow(inext.intValue() + iwin.intValue() - _nextOutgoingId);
         }
         else
         {
-            setRemoteIncomingWindow(iwin);
+            setRemoteIncomingWindow(iwin.intValue());
         }
         setRemoteNextOutgoingId(flow.getNextOutgoingId());
         setRemoteOutgoingWindow(flow.getOutgoingWindow());
@@ -451,12 +536,23 @@ class TransportSession
                 }
                 if(Boolean.TRUE.equals(disposition.getSettled()))
                 {
+                    if(disposition.getRole() == Role.RECEIVER)
+                    {
+                        TransportDelivery transportDelivery = delivery.getTransportDelivery();
+                        _transport.getMetricsImpl().deliverySettled(transportDelivery == null ? 0 : transportDelivery.getSentNanos());
+                    }
                     delivery.setRemoteSettled(true);
                     unsettledDeliveries.remove(id);
+                    delivery.setSessionUnsettled(false);
+                    if (delivery.isSettled())
+                    {
+                        delivery.releaseGeneratedTag();
+                    }
                 }
                 delivery.updateWork();
 
                 getSession().getConnection().put(Event.Type.DELIVERY, delivery);
+                delivery.recycleIfReleased();
             }
             id = id.add(UnsignedInteger.ONE);
         }
@@ -466,22 +562,44 @@ class TransportSession
     void addUnsettledOutgoing(UnsignedInteger deliveryId, DeliveryImpl delivery)
     {
         _unsettledOutgoingDeliveriesById.put(deliveryId, delivery);
+        delivery.setSessionUnsettled(true);
+    }
+
+    /**
+     * @return true if the session was not already stalled and now is
+     */
+    boolean setWindowStalled(boolean stalled)
+    {
+        boolean changed = stalled && !_windowStalled;
+        _windowStalled = stalled;
+        return changed;
+    }
+
+    int getFlowPass()
+    {
+        return _flowPass;
+    }
+
+    void setFlowPass(int flowPass)
+    {
+        _flowPass = flowPass;
     }
 
     public boolean hasOutgoingCredit()
     {
-        return _remoteIncomingWindow == null ? false
-            : _remoteIncomingWindow.compareTo(UnsignedInteger.ZERO)>0;
+        // Unsigned, so any non-zero window is credit
+        return _remoteIncomingWindowSet && _remoteIncomingWindow != 0;
 
     }
 
     void incrementOutgoingId()
     {
-        _nextOutgoingId = _nextOutgoingId.add(UnsignedInteger.ONE);
+        _nextOutgoingId++;
     }
 
     public void settled(TransportDelivery transportDelivery)
     {
+        transportDelivery.getDelivery().setSessionUnsettled(false);
         if(transportDelivery.getTransportLink().getLink() instanceof ReceiverImpl)
         {
             _unsettledIncomingDeliveriesById.remove(transportDelivery.getDeliveryId());
@@ -494,19 +612,23 @@ class TransportSession
         }
     }
 
+    /**
+     * @return the next incoming transfer id, boxed for encoding, or null if the remote Begin has not been received
+     */
     public UnsignedInteger getNextIncomingId()
     {
-        return _nextIncomingId;
+        return _nextIncomingIdSet ? UnsignedInteger.valueOf(_nextIncomingId) : null;
     }
 
     public void setNextIncomingId(UnsignedInteger nextIncomingId)
     {
-        _nextIncomingId = nextIncomingId;
+        _nextIncomingIdSet = nextIncomingId != null;
+        _nextIncomingId = _nextIncomingIdSet ? nextIncomingId.intValue() : 0;
     }
 
     public void incrementNextIncomingId()
     {
-        _nextIncomingId = _nextIncomingId.add(UnsignedInteger.ONE);
+        _nextIncomingId++;
     }
 
     public boolean endReceived()
@@ -34,6 +34,7 @@ import javax.net.ssl.SSLException;
 
 import org.apache.qpid.proton.engine.Transport;
 import org.apache.qpid.proton.engine.TransportException;
+import org.apache.qpid.proton.engine.impl.FlightRecorderEvent;
 import org.apache.qpid.proton.engine.impl.TransportInput;
 import org.apache.qpid.proton.engine.impl.TransportOutput;
 
@@ -70,6 +71,8 @@ public class SimpleSslTransportWrapper implements SslTransportWrapper
     /** could change during the lifetime of the ssl connection owing to renegotiation. */
     private String _protocolName;
 
+    /** Flight Recorder event timing the initial handshake, when enabled. */
+    private Object _handshakeEvent;
 
     SimpleSslTransportWrapper(ProtonSslEngine sslEngine, TransportInput underlyingInput, TransportOutput underlyingOutput)
     {
@@ -293,12 +296,32 @@ public class SimpleSslTransportWrapper implements SslTransportWrapper
         return _protocolName;
     }
 
+    @Override
+    public int getBufferCapacity()
+    {
+        return _inputBuffer.capacity() + _outputBuffer.capacity() + _decodedInputBuffer.capacity();
+    }
+
     private void updateCipherAndProtocolName(SSLEngineResult result)
     {
         if (result.getHandshakeStatus() == HandshakeStatus.FINISHED)
         {
             _cipherName = _sslEngine.getCipherSuite();
             _protocolName = _sslEngine.getProtocol();
+
+            if (_handshakeEvent != null)
+            {
+                FlightRecorderEvent.TLS_HANDSHAKE.commit(_handshakeEvent, _sslEngine.getUseClientMode(), _protocolName, _cipherName);
+                _handshakeEvent = null;
+            }
+        }
+    }
+
+    private void beginHandshakeEvent()
+    {
+        if (_handshakeEvent == null && _cipherName == null)
+        {
+            _handshakeEvent = FlightRecorderEvent.TLS_HANDSHAKE.begin();
         }
     }
 
@@ -364,6 +387,7 @@ public class SimpleSslTransportWrapper implements SslTransportWrapper
     {
         if (_tail_closed) throw new TransportException("tail closed");
 
+        beginHandshakeEvent();
         _inputBuffer.flip();
 
         try {
@@ -396,6 +420,7 @@ public class SimpleSslTransportWrapper implements SslTransportWrapper
     @Override
     public int pending()
     {
+        beginHandshakeEvent();
         try {
             wrapOutput();
         } catch (SSLException e) {
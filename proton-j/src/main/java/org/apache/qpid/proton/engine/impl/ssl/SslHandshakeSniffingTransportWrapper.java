@@ -64,6 +64,13 @@ public class SslHandshakeSniffingTransportWrapper extends HandshakeSniffingTrans
         }
     }
 
+    @Override
+    public int getBufferCapacity()
+    {
+        // the secure wrapper is created up front, so holds its buffers either way
+        return _wrapper1.getBufferCapacity();
+    }
+
     private boolean isSecureWrapperSelected()
     {
         return _selectedTransportWrapper == _wrapper1;
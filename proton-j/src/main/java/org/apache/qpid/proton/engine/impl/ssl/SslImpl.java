@@ -98,6 +98,15 @@ public class SslImpl implements Ssl, TransportLayer
         return _unsecureClientAwareTransportWrapper.getProtocolName();
     }
 
+    /**
+     * @return the total capacity in bytes of the buffers held by the SSL layer, which are
+     * only allocated once the first I/O has taken place
+     */
+    public int getBufferCapacity()
+    {
+        return _unsecureClientAwareTransportWrapper == null ? 0 : _unsecureClientAwareTransportWrapper.getBufferCapacity();
+    }
+
     private class UnsecureClientAwareTransportWrapper implements SslTransportWrapper
     {
         private final TransportInput _inputProcessor;
@@ -231,6 +240,12 @@ public class SslImpl implements Ssl, TransportLayer
             }
         }
 
+        @Override
+        public int getBufferCapacity()
+        {
+            return _transportWrapper == null ? 0 : _transportWrapper.getBufferCapacity();
+        }
+
         private void initTransportWrapperOnFirstIO()
         {
             try {
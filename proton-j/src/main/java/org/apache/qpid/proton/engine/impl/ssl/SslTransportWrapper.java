@@ -25,4 +25,9 @@ public interface SslTransportWrapper extends TransportWrapper
 {
     String getCipherName();
     String getProtocolName();
+
+    /**
+     * @return the total capacity in bytes of the buffers currently held by this wrapper
+     */
+    int getBufferCapacity();
 }
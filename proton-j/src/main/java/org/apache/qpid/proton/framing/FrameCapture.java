@@ -0,0 +1,294 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.framing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size ring of raw AMQP frames captured from one or more transports, cheap enough to
+ * leave enabled in production.
+ *
+ * Each frame is copied, truncated to the snap length, into the next slot of the ring together
+ * with a timestamp, the id of the connection it belongs to and its direction. Writers claim slots
+ * with a single atomic increment and never block, overwriting the oldest frames once the ring is
+ * full. The ring is either held on the heap and saved with {@link #writeTo(OutputStream)}, or
+ * backed by a memory mapped file that outlives the process. Both are read back and decoded with
+ * {@link FrameCaptureReader}.
+ *
+ * Capture is enabled per connection by passing the capture to
+ * {@link org.apache.qpid.proton.engine.ProtonJTransport#setFrameCapture(FrameCapture)}.
+ */
+public final class FrameCapture
+{
+    public static final byte INCOMING = 0;
+    public static final byte OUTGOING = 1;
+
+    public static final int DEFAULT_SNAP_LENGTH = 256;
+
+    static final long MAGIC = 0x504E2D4652414D45L; // "PN-FRAME"
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER_SIZE = 32;
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 8;
+    static final int HEADER_SLOT_COUNT = 12;
+    static final int HEADER_SNAP_LENGTH = 16;
+
+    static final int SLOT_HEADER_SIZE = 32;
+    static final int SLOT_SEQUENCE = 0;
+    static final int SLOT_TIMESTAMP = 8;
+    static final int SLOT_CONNECTION = 16;
+    static final int SLOT_DIRECTION = 20;
+    static final int SLOT_FRAME_SIZE = 24;
+    static final int SLOT_CAPTURED = 28;
+
+    private final ByteBuffer _buffer;
+    private final int _slotCount;
+    private final int _snapLength;
+    private final int _slotSize;
+
+    private final AtomicLong _sequence = new AtomicLong();
+    // Sequence + 1 of the frame last completely written to each slot, 0 while one is being written
+    private final AtomicLongArray _published;
+    private final AtomicInteger _connections = new AtomicInteger();
+    private volatile int _sampleInterval = 1;
+
+    private final long _epochNanos = System.currentTimeMillis() * 1000000L;
+    private final long _baseNanos = System.nanoTime();
+
+    private FrameCapture(ByteBuffer buffer, int slotCount, int snapLength)
+    {
+        _buffer = buffer;
+        _slotCount = slotCount;
+        _snapLength = snapLength;
+        _slotSize = slotSize(snapLength);
+        _published = new AtomicLongArray(slotCount);
+
+        _buffer.putLong(HEADER_MAGIC, MAGIC);
+        _buffer.putInt(HEADER_VERSION, VERSION);
+        _buffer.putInt(HEADER_SLOT_COUNT, slotCount);
+        _buffer.putInt(HEADER_SNAP_LENGTH, snapLength);
+    }
+
+    /**
+     * Creates a capture held on the heap.
+     *
+     * @param slotCount the number of frames retained before the oldest are overwritten
+     * @param snapLength the maximum number of bytes kept from each frame, including its header
+     */
+    public static FrameCapture inMemory(int slotCount, int snapLength)
+    {
+        return new FrameCapture(ByteBuffer.allocate(capacity(slotCount, snapLength)), slotCount, snapLength);
+    }
+
+    /**
+     * Creates a capture backed by a memory mapped file, replacing any existing content.
+     *
+     * @param file the file to map
+     * @param slotCount the number of frames retained before the oldest are overwritten
+     * @param snapLength the maximum number of bytes kept from each frame, including its header
+     */
+    public static FrameCapture mapped(File file, int slotCount, int snapLength) throws IOException
+    {
+        int capacity = capacity(slotCount, snapLength);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.setLength(0);
+            raf.setLength(capacity);
+            // The mapping remains valid once the file is closed
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new FrameCapture(buffer, slotCount, snapLength);
+        }
+    }
+
+    static int slotSize(int snapLength)
+    {
+        // Keep slots 8 byte aligned
+        return SLOT_HEADER_SIZE + ((snapLength + 7) & ~7);
+    }
+
+    private static int capacity(int slotCount, int snapLength)
+    {
+        if (slotCount <= 0)
+        {
+            throw new IllegalArgumentException("slot count must be positive: " + slotCount);
+        }
+        if (snapLength < 8)
+        {
+            throw new IllegalArgumentException("snap length must cover the frame header: " + snapLength);
+        }
+
+        long capacity = FILE_HEADER_SIZE + (long) slotCount * slotSize(snapLength);
+        if (capacity > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("capture of " + slotCount + " slots of " + snapLength + " bytes is too large");
+        }
+        return (int) capacity;
+    }
+
+    public int getSlotCount()
+    {
+        return _slotCount;
+    }
+
+    public int getSnapLength()
+    {
+        return _snapLength;
+    }
+
+    /**
+     * @return the number of frames captured so far, including those since overwritten
+     */
+    public long getCapturedFrames()
+    {
+        return _sequence.get();
+    }
+
+    /**
+     * Captures only one in every {@code interval} frames of each connection, 1 by default.
+     */
+    public void setSampleInterval(int interval)
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("sample interval must be at least 1: " + interval);
+        }
+        _sampleInterval = interval;
+    }
+
+    public int getSampleInterval()
+    {
+        return _sampleInterval;
+    }
+
+    /**
+     * @return a new id distinguishing a connection's frames from others in this capture
+     */
+    public int nextConnectionId()
+    {
+        return _connections.incrementAndGet();
+    }
+
+    /**
+     * Captures a complete frame held in an array.
+     */
+    public void capture(int connection, byte direction, byte[] frame, int offset, int length)
+    {
+        int captured = Math.min(length, _snapLength);
+        long sequence = _sequence.getAndIncrement();
+        int slot = claim(sequence, connection, direction, length, captured);
+        int position = slot + SLOT_HEADER_SIZE;
+        for (int i = 0; i < captured; i++)
+        {
+            _buffer.put(position + i, frame[offset + i]);
+        }
+        publish(sequence, slot);
+    }
+
+    /**
+     * Captures a frame whose size field has already been read, with the rest of the frame
+     * starting at the buffer's position. The buffer's position is left unchanged.
+     */
+    public void capture(int connection, byte direction, int frameSize, ByteBuffer remainder)
+    {
+        int captured = Math.min(frameSize, _snapLength);
+        long sequence = _sequence.getAndIncrement();
+        int slot = claim(sequence, connection, direction, frameSize, captured);
+        int position = slot + SLOT_HEADER_SIZE;
+        int start = remainder.position() - 4;
+        _buffer.putInt(position, frameSize);
+        for (int i = 4; i < captured; i++)
+        {
+            _buffer.put(position + i, remainder.get(start + i));
+        }
+        publish(sequence, slot);
+    }
+
+    private int claim(long sequence, int connection, byte direction, int frameSize, int captured)
+    {
+        int index = (int) (sequence % _slotCount);
+        int slot = FILE_HEADER_SIZE + index * _slotSize;
+
+        _published.set(index, 0);
+        _buffer.putLong(slot + SLOT_SEQUENCE, 0);
+        _buffer.putLong(slot + SLOT_TIMESTAMP, _epochNanos + (System.nanoTime() - _baseNanos));
+        _buffer.putInt(slot + SLOT_CONNECTION, connection);
+        _buffer.putInt(slot + SLOT_DIRECTION, direction);
+        _buffer.putInt(slot + SLOT_FRAME_SIZE, frameSize);
+        _buffer.putInt(slot + SLOT_CAPTURED, captured);
+        return slot;
+    }
+
+    private void publish(long sequence, int slot)
+    {
+        _buffer.putLong(slot + SLOT_SEQUENCE, sequence + 1);
+        _published.lazySet((int) (sequence % _slotCount), sequence + 1);
+    }
+
+    /**
+     * Writes the capture to the given stream in the format read by {@link FrameCaptureReader},
+     * leaving out any frame that is being overwritten while it is copied.
+     */
+    public void writeTo(OutputStream out) throws IOException
+    {
+        byte[] bytes = new byte[Math.max(FILE_HEADER_SIZE, _slotSize)];
+        for (int i = 0; i < FILE_HEADER_SIZE; i++)
+        {
+            bytes[i] = _buffer.get(i);
+        }
+        out.write(bytes, 0, FILE_HEADER_SIZE);
+
+        for (int index = 0; index < _slotCount; index++)
+        {
+            int slot = FILE_HEADER_SIZE + index * _slotSize;
+            long before = _published.get(index);
+            for (int i = 0; i < _slotSize; i++)
+            {
+                bytes[i] = _buffer.get(slot + i);
+            }
+            if (before == 0 || _published.get(index) != before)
+            {
+                ByteBuffer.wrap(bytes).putLong(SLOT_SEQUENCE, 0);
+            }
+            out.write(bytes, 0, _slotSize);
+        }
+    }
+
+    /**
+     * Forces the contents of a memory mapped capture out to its file.
+     */
+    public void flush()
+    {
+        if (_buffer instanceof MappedByteBuffer)
+        {
+            ((MappedByteBuffer) _buffer).force();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.framing;
+
+import static org.apache.qpid.proton.framing.FrameCapture.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.transport.EmptyFrame;
+import org.apache.qpid.proton.amqp.transport.FrameBody;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+
+/**
+ * Reads back the frames recorded by a {@link FrameCapture}, decoding them with the regular codec.
+ *
+ * Run as a program it prints each capture file named on the command line, oldest frame first.
+ */
+public final class FrameCaptureReader
+{
+    private final DecoderImpl _decoder = new DecoderImpl();
+
+    public FrameCaptureReader()
+    {
+        AMQPDefinedTypes.registerAllTypes(_decoder, new EncoderImpl(_decoder));
+    }
+
+    /**
+     * A frame read from a capture. The body is null when the frame is not an AMQP frame or its
+     * performative was cut short by the capture's snap length.
+     */
+    public static final class CapturedFrame
+    {
+        private final long _sequence;
+        private final long _timestamp;
+        private final int _connection;
+        private final byte _direction;
+        private final int _frameSize;
+        private final int _channel;
+        private final FrameBody _body;
+        private final Binary _payload;
+        private final boolean _truncated;
+
+        CapturedFrame(long sequence, long timestamp, int connection, byte direction, int frameSize,
+                      int channel, FrameBody body, Binary payload, boolean truncated)
+        {
+            _sequence = sequence;
+            _timestamp = timestamp;
+            _connection = connection;
+            _direction = direction;
+            _frameSize = frameSize;
+            _channel = channel;
+            _body = body;
+            _payload = payload;
+            _truncated = truncated;
+        }
+
+        public long getSequence()
+        {
+            return _sequence;
+        }
+
+        /**
+         * @return the capture time in nanoseconds since the epoch
+         */
+        public long getTimestamp()
+        {
+            return _timestamp;
+        }
+
+        public int getConnection()
+        {
+            return _connection;
+        }
+
+        public boolean isOutgoing()
+        {
+            return _direction == OUTGOING;
+        }
+
+        public int getFrameSize()
+        {
+            return _frameSize;
+        }
+
+        public int getChannel()
+        {
+            return _channel;
+        }
+
+        public FrameBody getBody()
+        {
+            return _body;
+        }
+
+        /**
+         * @return the captured part of the frame's payload, or null if none was captured
+         */
+        public Binary getPayload()
+        {
+            return _payload;
+        }
+
+        public boolean isTruncated()
+        {
+            return _truncated;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder();
+            builder.append(Instant.ofEpochSecond(0, _timestamp));
+            builder.append(" [").append(_connection).append(":").append(_channel).append("] ");
+            builder.append(isOutgoing() ? "->" : "<-").append(" ");
+            builder.append(_body == null ? "<undecoded>" : _body);
+            if (_payload != null || _truncated)
+            {
+                builder.append(" (").append(_payload == null ? 0 : _payload.getLength());
+                builder.append(" of ").append(_frameSize).append(" bytes captured)");
+            }
+            return builder.toString();
+        }
+    }
+
+    public List<CapturedFrame> read(File file) throws IOException
+    {
+        return read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * @return the frames held in the given capture, oldest first
+     */
+    public List<CapturedFrame> read(ByteBuffer capture) throws IOException
+    {
+        if (capture.remaining() < FILE_HEADER_SIZE || capture.getLong(capture.position() + HEADER_MAGIC) != MAGIC)
+        {
+            throw new IOException("Not a frame capture");
+        }
+
+        int base = capture.position();
+        int version = capture.getInt(base + HEADER_VERSION);
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported frame capture version " + version);
+        }
+
+        int slotCount = capture.getInt(base + HEADER_SLOT_COUNT);
+        int slotSize = slotSize(capture.getInt(base + HEADER_SNAP_LENGTH));
+        if (capture.remaining() < FILE_HEADER_SIZE + (long) slotCount * slotSize)
+        {
+            throw new IOException("Frame capture is incomplete");
+        }
+
+        List<CapturedFrame> frames = new ArrayList<>();
+        for (int index = 0; index < slotCount; index++)
+        {
+            int slot = base + FILE_HEADER_SIZE + index * slotSize;
+            long sequence = capture.getLong(slot + SLOT_SEQUENCE);
+            if (sequence != 0)
+            {
+                frames.add(readFrame(capture, slot, sequence - 1));
+            }
+        }
+
+        Collections.sort(frames, Comparator.comparingLong(CapturedFrame::getSequence));
+        return frames;
+    }
+
+    private CapturedFrame readFrame(ByteBuffer capture, int slot, long sequence)
+    {
+        int frameSize = capture.getInt(slot + SLOT_FRAME_SIZE);
+        int captured = capture.getInt(slot + SLOT_CAPTURED);
+
+        ByteBuffer frame = capture.duplicate();
+        frame.position(slot + SLOT_HEADER_SIZE);
+        frame.limit(slot + SLOT_HEADER_SIZE + captured);
+        frame = frame.slice();
+
+        int channel = 0;
+        FrameBody body = null;
+        Binary payload = null;
+        if (captured >= 8)
+        {
+            int dataOffset = (frame.get(4) & 0xFF) << 2;
+            int type = frame.get(5) & 0xFF;
+            channel = frame.getShort(6) & 0xFFFF;
+
+            if (type == 0 && dataOffset >= 8 && dataOffset <= captured)
+            {
+                if (dataOffset == frameSize)
+                {
+                    body = EmptyFrame.INSTANCE;
+                }
+                else
+                {
+                    frame.position(dataOffset);
+                    body = decodeBody(frame);
+                    if (body != null && frame.hasRemaining())
+                    {
+                        payload = Binary.create(frame);
+                    }
+                }
+            }
+        }
+
+        return new CapturedFrame(sequence,
+                                 capture.getLong(slot + SLOT_TIMESTAMP),
+                                 capture.getInt(slot + SLOT_CONNECTION),
+                                 (byte) capture.getInt(slot + SLOT_DIRECTION),
+                                 frameSize, channel, body, payload, captured < frameSize);
+    }
+
+    private FrameBody decodeBody(ByteBuffer frame)
+    {
+        _decoder.setByteBuffer(frame);
+        try
+        {
+            Object body = _decoder.readObject();
+            return body instanceof FrameBody ? (FrameBody) body : null;
+        }
+        catch (RuntimeException e)
+        {
+            // The performative did not fit within the snap length
+            return null;
+        }
+        finally
+        {
+            _decoder.setByteBuffer(null);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            System.err.println("Usage: FrameCaptureReader <capture file>...");
+            System.exit(1);
+        }
+
+        FrameCaptureReader reader = new FrameCaptureReader();
+        PrintStream out = System.out;
+        for (String arg : args)
+        {
+            if (args.length > 1)
+            {
+                out.println("== " + arg);
+            }
+            for (CapturedFrame frame : reader.read(new File(arg)))
+            {
+                out.println(frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+
+/**
+ * A handler that applies byte based, adaptive flow control to receivers.
+ * <p>
+ * Where {@link FlowController} keeps a fixed number of messages of credit
+ * outstanding, this handler gives every receiver a window measured in bytes
+ * and grants as much credit as fits the window given the observed average
+ * message size. The window itself is adjusted once per round, a round being
+ * a window's worth of credit given back by the application advancing past
+ * messages: when the application keeps up the window grows additively, when
+ * messages it has not advanced past build up it is halved.
+ * <p>
+ * The handler only looks at the receiver when it handles an event for the
+ * link, such as a delivery arriving or a flow, so as with {@link FlowController}
+ * the application should advance past messages while handling their delivery
+ * events for the credit to be replenished promptly.
+ * <p>
+ * Unless the application has set an incoming capacity on a session itself,
+ * the session capacity is kept at the sum of the windows of its receivers so
+ * the session window does not throttle the links.
+ */
+public class AdaptiveFlowController extends BaseHandler {
+
+    public static final int DEFAULT_INITIAL_WINDOW = 256 * 1024;
+    public static final int DEFAULT_MIN_WINDOW = 16 * 1024;
+    public static final int DEFAULT_MAX_WINDOW = 16 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CREDIT = 1024;
+
+    // As for FlowController a single credit may never be replenished
+    private static final int MIN_CREDIT = 2;
+    private static final int INITIAL_MESSAGE_SIZE = 1024;
+
+    private static final Object LINK_STATE = new Object();
+    private static final Object SESSION_STATE = new Object();
+
+    private final int initialWindow;
+    private final int minWindow;
+    private final int maxWindow;
+    private final int maxCredit;
+
+    public AdaptiveFlowController(int initialWindow, int minWindow, int maxWindow, int maxCredit) {
+        if (minWindow <= 0 || minWindow > initialWindow || initialWindow > maxWindow) {
+            throw new IllegalArgumentException("Windows must satisfy 0 < min <= initial <= max");
+        }
+        if (maxCredit < MIN_CREDIT) {
+            throw new IllegalArgumentException("Maximum credit must be at least " + MIN_CREDIT);
+        }
+        this.initialWindow = initialWindow;
+        this.minWindow = minWindow;
+        this.maxWindow = maxWindow;
+        this.maxCredit = maxCredit;
+    }
+
+    public AdaptiveFlowController() {
+        this(DEFAULT_INITIAL_WINDOW, DEFAULT_MIN_WINDOW, DEFAULT_MAX_WINDOW, DEFAULT_MAX_CREDIT);
+    }
+
+    /**
+     * Flow control metrics of a single receiver.
+     */
+    public interface LinkMetrics {
+
+        /** @return the current window of the receiver in bytes */
+        int getWindow();
+
+        /** @return the number of messages of credit the window currently translates to */
+        int getCreditTarget();
+
+        /** @return the total credit granted to the peer */
+        long getGrantedCredit();
+
+        /**
+         * @return the credit given back by the application advancing past messages, excluding
+         *         credit drained by the peer; messages that arrived but were not advanced past yet
+         *         are not included
+         */
+        long getAdvancedCredit();
+
+        /** @return the total size of the complete messages observed on the receiver */
+        long getObservedBytes();
+
+        /** @return the moving average size of the messages observed on the receiver */
+        int getAverageMessageSize();
+
+        /** @return the number of times the window was grown */
+        int getIncreases();
+
+        /** @return the number of times the window was halved */
+        int getDecreases();
+    }
+
+    /**
+     * @param link the link to look up
+     * @return the metrics of the given receiver, or null if this handler has not seen it
+     */
+    public static LinkMetrics getMetrics(Link link) {
+        return link.attachments().get(LINK_STATE, LinkState.class);
+    }
+
+    @Override
+    public void onUnhandled(Event event) {
+        Link link = event.getLink();
+        if (!(link instanceof Receiver)) {
+            return;
+        }
+
+        switch(event.getType()) {
+        case LINK_LOCAL_OPEN:
+        case LINK_REMOTE_OPEN:
+        case LINK_FLOW:
+            flow((Receiver) link, null);
+            break;
+        case DELIVERY:
+            flow((Receiver) link, event.getDelivery());
+            break;
+        case LINK_FINAL:
+            release(link);
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void flow(Receiver receiver, Delivery delivery) {
+        LinkState state = getOrCreateState(receiver);
+
+        state.drained += receiver.drained();
+        if (receiver.draining()) {
+            return;
+        }
+
+        if (delivery != null) {
+            state.observe(delivery);
+        }
+
+        long advanced = state.getAdvancedCredit();
+        if (advanced - state.roundStart >= state.creditTarget()) {
+            adjust(receiver, state, advanced);
+        }
+
+        int delta = state.creditTarget() - receiver.getCredit();
+        if (delta > 0) {
+            state.granted += delta;
+            receiver.flow(delta);
+        }
+    }
+
+    private void adjust(Receiver receiver, LinkState state, long advanced) {
+        state.roundStart = advanced;
+
+        long backlog = (long) receiver.getQueued() * state.averageSize;
+        int window;
+        if (backlog > state.window / 2) {
+            window = Math.max(minWindow, state.window / 2);
+            state.decreases++;
+        } else {
+            window = Math.min(maxWindow, state.window + Math.max(minWindow, state.averageSize));
+            state.increases++;
+        }
+
+        setWindow(receiver, state, window);
+    }
+
+    private LinkState getOrCreateState(Receiver receiver) {
+        LinkState state = receiver.attachments().get(LINK_STATE, LinkState.class);
+        if (state == null) {
+            state = new LinkState(receiver);
+            receiver.attachments().set(LINK_STATE, LinkState.class, state);
+            setWindow(receiver, state, initialWindow);
+        }
+
+        return state;
+    }
+
+    private void setWindow(Receiver receiver, LinkState state, int window) {
+        Session session = receiver.getSession();
+        SessionState sessionState = session.attachments().get(SESSION_STATE, SessionState.class);
+        if (sessionState == null) {
+            sessionState = new SessionState(session.getIncomingCapacity() <= 0);
+            session.attachments().set(SESSION_STATE, SessionState.class, sessionState);
+        }
+
+        if (!sessionState.managed) {
+            // The application sized the session, a link window beyond that would never be used
+            window = Math.min(window, Math.max(minWindow, session.getIncomingCapacity()));
+        }
+
+        sessionState.totalWindow += window - state.window;
+        state.window = window;
+
+        if (sessionState.managed) {
+            updateCapacity(session, sessionState);
+        }
+    }
+
+    private void updateCapacity(Session session, SessionState sessionState) {
+        int capacity = (int) Math.min(Integer.MAX_VALUE, sessionState.totalWindow);
+        Transport transport = session.getConnection().getTransport();
+        if (transport != null && transport.getMaxFrameSize() > 0) {
+            // The session window is the capacity in whole frames, it must never round down to zero
+            capacity = Math.max(capacity, 2 * transport.getMaxFrameSize());
+        }
+        session.setIncomingCapacity(capacity);
+    }
+
+    private void release(Link link) {
+        LinkState state = link.attachments().get(LINK_STATE, LinkState.class);
+        if (state == null) {
+            return;
+        }
+
+        link.attachments().set(LINK_STATE, LinkState.class, null);
+        Session session = link.getSession();
+        SessionState sessionState = session.attachments().get(SESSION_STATE, SessionState.class);
+        if (sessionState != null) {
+            sessionState.totalWindow -= state.window;
+            if (sessionState.managed && sessionState.totalWindow > 0) {
+                updateCapacity(session, sessionState);
+            }
+        }
+    }
+
+    private final class LinkState implements LinkMetrics {
+
+        private final Receiver receiver;
+        private int window;
+        private long drained;
+        private long granted;
+        private long roundStart;
+        private long observedBytes;
+        private int averageSize = INITIAL_MESSAGE_SIZE;
+        private boolean sampled;
+        private Delivery lastObserved;
+        private int increases;
+        private int decreases;
+
+        LinkState(Receiver receiver) {
+            this.receiver = receiver;
+        }
+
+        void observe(Delivery delivery) {
+            if (delivery == lastObserved || delivery.isPartial() || delivery != receiver.current()) {
+                return;
+            }
+
+            lastObserved = delivery;
+            int size = delivery.available();
+            observedBytes += size;
+            if (sampled) {
+                // Exponential moving average weighting the new sample by 1/8
+                averageSize += (size - averageSize) >> 3;
+            } else {
+                averageSize = size;
+                sampled = true;
+            }
+        }
+
+        int creditTarget() {
+            int target = window / Math.max(1, averageSize);
+            return Math.max(MIN_CREDIT, Math.min(maxCredit, target));
+        }
+
+        @Override
+        public int getWindow() {
+            return window;
+        }
+
+        @Override
+        public int getCreditTarget() {
+            return creditTarget();
+        }
+
+        @Override
+        public long getGrantedCredit() {
+            return granted;
+        }
+
+        @Override
+        public long getAdvancedCredit() {
+            return granted - drained - receiver.getCredit();
+        }
+
+        @Override
+        public long getObservedBytes() {
+            return observedBytes;
+        }
+
+        @Override
+        public int getAverageMessageSize() {
+            return averageSize;
+        }
+
+        @Override
+        public int getIncreases() {
+            return increases;
+        }
+
+        @Override
+        public int getDecreases() {
+            return decreases;
+        }
+    }
+
+    private static final class SessionState {
+
+        private final boolean managed;
+        private long totalWindow;
+
+        SessionState(boolean managed) {
+            this.managed = managed;
+        }
+    }
+}
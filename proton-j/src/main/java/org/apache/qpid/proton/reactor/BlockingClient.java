@@ -0,0 +1,183 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton.InterruptException;
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.TimeoutException;
+
+/**
+ * A blocking facade over a {@link ReactorGroup} for applications that prefer to
+ * write simple synchronous code rather than reactor event handlers.
+ * <p>
+ * All engine objects are owned and driven by the reactor threads of the group,
+ * calls made on {@link BlockingConnection}, {@link BlockingSender} and
+ * {@link BlockingReceiver} hand work to the reactor thread owning the connection
+ * and then park the calling thread until the outcome is known.  Parking is cheap
+ * for virtual threads, so when running on Java 21 or later {@link #threadFactory()}
+ * creates virtual threads and very large numbers of synchronous clients can share a
+ * handful of reactor threads.  On older runtimes platform threads are used instead.
+ */
+public class BlockingClient {
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+    private static final AtomicInteger PLATFORM_THREAD_COUNTER = new AtomicInteger();
+
+    private final ReactorGroup group;
+    private final ThreadFactory threadFactory;
+    private long timeout = 30000;
+
+    /**
+     * Creates a client whose connections are processed by the given number of reactor threads.
+     *
+     * @param reactors the number of reactor threads.
+     * @throws IOException if the reactors cannot be created.
+     */
+    public BlockingClient(int reactors) throws IOException {
+        this(ReactorGroup.Factory.create(reactors));
+    }
+
+    /**
+     * Creates a client whose connections are processed by the given group, which
+     * is started by this constructor and must not have been started already.
+     *
+     * @param group the reactors used to process connections.
+     */
+    public BlockingClient(ReactorGroup group) {
+        this.group = group;
+        this.threadFactory = VIRTUAL_THREAD_FACTORY != null ? VIRTUAL_THREAD_FACTORY : new PlatformThreadFactory();
+        group.start();
+    }
+
+    /**
+     * @return true if the runtime supports virtual threads and they are used by {@link #threadFactory()}.
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * @return a factory creating the threads that application code using this
+     *         client should run on, virtual threads when available.
+     */
+    public ThreadFactory threadFactory() {
+        return threadFactory;
+    }
+
+    /**
+     * Starts a new thread from {@link #threadFactory()} running the given task.
+     *
+     * @param task the task to run.
+     * @return the started thread.
+     */
+    public Thread startThread(Runnable task) {
+        Thread thread = threadFactory.newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @return the time in milliseconds that blocking calls wait for the remote peer.
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout the time in milliseconds that blocking calls wait for the remote peer.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Opens a connection to the given host and port, blocking until the remote
+     * peer has opened its end of the connection.
+     *
+     * @param host the host to connect to.
+     * @param port the port to connect to.
+     * @return the open connection.
+     */
+    public BlockingConnection connect(String host, int port) {
+        int index = group.next();
+        BlockingConnection connection = new BlockingConnection(this, group.getReactor(index), host, port);
+        connection.open();
+        return connection;
+    }
+
+    /**
+     * Stops the reactor threads, any connections still open are dropped.
+     *
+     * @throws InterruptedException if interrupted while waiting for the reactor threads to finish.
+     */
+    public void close() throws InterruptedException {
+        group.stop();
+        group.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        group.free();
+    }
+
+    static <T> T await(CompletableFuture<T> future, long timeout, String pendingCondition) {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptException(e);
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new TimeoutException(timeout, pendingCondition);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ProtonException) {
+                throw (ProtonException) cause;
+            }
+            throw new ProtonException(cause);
+        }
+    }
+
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads need Java 21, or are disabled.
+            return null;
+        }
+    }
+
+    private static class PlatformThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "proton-blocking-client-" + PLATFORM_THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
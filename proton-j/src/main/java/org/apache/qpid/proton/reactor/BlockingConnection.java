@@ -0,0 +1,216 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.TimeoutException;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+
+/**
+ * A connection created by a {@link BlockingClient}.  Methods of this class may be
+ * called from any thread, they block the calling thread until the reactor thread
+ * owning the connection has completed the requested operation.
+ */
+public class BlockingConnection {
+
+    private final BlockingClient client;
+    private final Reactor reactor;
+    private final String host;
+    private final int port;
+    private final CompletableFuture<Void> opened = new CompletableFuture<Void>();
+    private final CompletableFuture<Void> closed = new CompletableFuture<Void>();
+
+    // Only accessed by the reactor thread
+    private final List<BlockingLinkHandler> links = new ArrayList<BlockingLinkHandler>();
+    private Connection connection;
+    private Session session;
+    private ProtonException failure;
+
+    BlockingConnection(BlockingClient client, Reactor reactor, String host, int port) {
+        this.client = client;
+        this.reactor = reactor;
+        this.host = host;
+        this.port = port;
+    }
+
+    void open() {
+        reactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                connection = reactor.connectionToHost(host, port, new ConnectionHandler());
+                connection.open();
+                session = connection.session();
+                session.open();
+            }
+        });
+        try {
+            BlockingClient.await(opened, client.getTimeout(), "connection to " + host + ":" + port + " to open");
+        } catch (final TimeoutException e) {
+            reactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    failed(e);
+                    if (connection != null) {
+                        connection.close();
+                        Transport transport = connection.getTransport();
+                        if (transport != null) {
+                            transport.close_tail();
+                        }
+                    }
+                }
+            });
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a sender link to the given address.
+     *
+     * @param address the target address of the link.
+     * @return the open sender.
+     */
+    public BlockingSender openSender(String address) {
+        BlockingSender sender = new BlockingSender(this, address);
+        sender.open();
+        return sender;
+    }
+
+    /**
+     * Opens a receiver link from the given address.
+     *
+     * @param address the source address of the link.
+     * @param credit the number of messages the peer may send ahead of them being received.
+     * @return the open receiver.
+     */
+    public BlockingReceiver openReceiver(String address, int credit) {
+        if (credit < 1) {
+            throw new IllegalArgumentException("Credit must be at least 1");
+        }
+        BlockingReceiver receiver = new BlockingReceiver(this, address, credit);
+        receiver.open();
+        return receiver;
+    }
+
+    /**
+     * Closes the connection, blocking until the remote peer has closed its end.
+     */
+    public void close() {
+        reactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        });
+        BlockingClient.await(closed, client.getTimeout(), "connection to " + host + ":" + port + " to close");
+    }
+
+    BlockingClient getClient() {
+        return client;
+    }
+
+    Reactor getReactor() {
+        return reactor;
+    }
+
+    // Called on the reactor thread
+    Session getSession() {
+        return session;
+    }
+
+    // Called on the reactor thread, returns false if the connection has already failed
+    boolean register(BlockingLinkHandler link) {
+        if (failure != null) {
+            link.failed(failure);
+            return false;
+        }
+        links.add(link);
+        return true;
+    }
+
+    private void closedByPeer() {
+        if (failure == null) {
+            failure = new ProtonException("Connection to " + host + ":" + port + " closed");
+            opened.completeExceptionally(failure);
+            for (BlockingLinkHandler link : links) {
+                link.connectionClosed(failure);
+            }
+            links.clear();
+        }
+        closed.complete(null);
+    }
+
+    private void failed(ProtonException cause) {
+        if (failure == null) {
+            failure = cause;
+            opened.completeExceptionally(cause);
+            for (BlockingLinkHandler link : links) {
+                link.failed(cause);
+            }
+            links.clear();
+        }
+        closed.complete(null);
+    }
+
+    static ProtonException failure(String message, ErrorCondition condition) {
+        if (condition != null && condition.getCondition() != null) {
+            return new ProtonException(message + ": " + condition.getCondition() +
+                (condition.getDescription() != null ? " " + condition.getDescription() : ""));
+        }
+        return new ProtonException(message);
+    }
+
+    private class ConnectionHandler extends BaseHandler {
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            opened.complete(null);
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            Connection connection = event.getConnection();
+            connection.close();
+            ErrorCondition condition = connection.getRemoteCondition();
+            if (condition == null || condition.getCondition() == null) {
+                closedByPeer();
+            } else {
+                failed(failure("Connection closed", condition));
+            }
+        }
+
+        @Override
+        public void onTransportClosed(Event event) {
+            failed(failure("Connection lost", event.getTransport().getCondition()));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+
+/**
+ * Common handling of the life cycle of the links created by a {@link BlockingConnection},
+ * all methods other than {@link #open()} and {@link #close()} run on the reactor thread.
+ */
+abstract class BlockingLinkHandler extends BaseHandler {
+
+    protected final BlockingConnection connection;
+    protected final String address;
+    private final CompletableFuture<Void> opened = new CompletableFuture<Void>();
+    private final CompletableFuture<Void> closed = new CompletableFuture<Void>();
+    protected Link link;
+    protected ProtonException failure;
+
+    BlockingLinkHandler(BlockingConnection connection, String address) {
+        this.connection = connection;
+        this.address = address;
+    }
+
+    protected abstract Link createLink();
+
+    void open() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (connection.register(BlockingLinkHandler.this)) {
+                    link = createLink();
+                    BaseHandler.setHandler(link, BlockingLinkHandler.this);
+                    link.open();
+                }
+            }
+        });
+        BlockingClient.await(opened, connection.getClient().getTimeout(), "link to " + address + " to open");
+    }
+
+    /**
+     * Closes the link, blocking until the remote peer has closed its end.
+     */
+    public void close() {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (link != null) {
+                    link.close();
+                }
+            }
+        });
+        BlockingClient.await(closed, connection.getClient().getTimeout(), "link to " + address + " to close");
+    }
+
+    protected void execute(Runnable task) {
+        connection.getReactor().execute(task);
+    }
+
+    void failed(ProtonException cause) {
+        if (end(cause)) {
+            onFailed(cause);
+        }
+    }
+
+    // Called once the remote peer has closed the connection without an error
+    void connectionClosed(ProtonException cause) {
+        if (end(cause)) {
+            onClosed(cause);
+        }
+    }
+
+    private boolean end(ProtonException cause) {
+        if (failure == null) {
+            failure = cause;
+            opened.completeExceptionally(cause);
+            closed.complete(null);
+            return true;
+        }
+        return false;
+    }
+
+    protected abstract void onFailed(ProtonException cause);
+
+    /**
+     * Called when the link ends because the remote peer closed the connection without
+     * an error, by default handled in the same way as a failure.
+     */
+    protected void onClosed(ProtonException cause) {
+        onFailed(cause);
+    }
+
+    @Override
+    public void onLinkRemoteOpen(Event event) {
+        opened.complete(null);
+    }
+
+    @Override
+    public void onLinkRemoteClose(Event event) {
+        Link link = event.getLink();
+        link.close();
+        failed(BlockingConnection.failure("Link to " + address + " closed", link.getRemoteCondition()));
+    }
+
+    @Override
+    public void onLinkRemoteDetach(Event event) {
+        Link link = event.getLink();
+        link.detach();
+        failed(BlockingConnection.failure("Link to " + address + " detached", link.getRemoteCondition()));
+    }
+}
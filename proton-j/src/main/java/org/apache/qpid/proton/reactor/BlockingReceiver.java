@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.InterruptException;
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * A receiver link created by a {@link BlockingConnection}.  Messages are accepted
+ * and settled as they arrive and are then buffered until taken by a call to one of
+ * the receive methods, credit is only returned to the peer as messages are taken so
+ * no more than the configured credit is ever buffered.
+ */
+public class BlockingReceiver extends BlockingLinkHandler {
+
+    private static final Object FAILED = new Object();
+    private static final Object CLOSED = new Object();
+
+    private final int credit;
+    private final LinkedBlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+    private final Runnable flow = new Runnable() {
+        @Override
+        public void run() {
+            if (failure == null) {
+                ((Receiver) link).flow(1);
+            }
+        }
+    };
+
+    private volatile ProtonException receiveFailure;
+    private byte[] buffer = new byte[1024];
+
+    BlockingReceiver(BlockingConnection connection, String address, int credit) {
+        super(connection, address);
+        this.credit = credit;
+    }
+
+    @Override
+    protected Link createLink() {
+        Receiver receiver = connection.getSession().receiver(address);
+        Source source = new Source();
+        source.setAddress(address);
+        receiver.setSource(source);
+        receiver.flow(credit);
+        return receiver;
+    }
+
+    /**
+     * Waits for a message for up to the client's default timeout.
+     *
+     * @return the message received, or null if no message arrived in time.
+     */
+    public Message receive() {
+        return receive(connection.getClient().getTimeout());
+    }
+
+    /**
+     * Waits for a message.
+     *
+     * @param timeout the maximum time in milliseconds to wait for a message.
+     * @return the message received, or null if no message arrived in time or the
+     *         remote peer has closed the connection and no messages remain.
+     */
+    public Message receive(long timeout) {
+        Object next;
+        try {
+            next = received.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptException(e);
+        }
+
+        if (next == FAILED) {
+            // Leave the marker for any other thread waiting on this receiver.
+            received.offer(FAILED);
+            throw receiveFailure;
+        } else if (next == CLOSED) {
+            received.offer(CLOSED);
+            return null;
+        } else if (next != null) {
+            execute(flow);
+        }
+        return (Message) next;
+    }
+
+    @Override
+    public void onDelivery(Event event) {
+        Delivery delivery = event.getDelivery();
+        if (!delivery.isReadable() || delivery.isPartial()) {
+            return;
+        }
+
+        Receiver receiver = (Receiver) delivery.getLink();
+        int size = delivery.pending();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+        }
+        int length = receiver.recv(buffer, 0, size);
+        receiver.advance();
+
+        Message message = Message.Factory.create();
+        message.decode(buffer, 0, length);
+
+        delivery.disposition(Accepted.getInstance());
+        delivery.settle();
+
+        received.offer(message);
+    }
+
+    @Override
+    protected void onFailed(ProtonException cause) {
+        receiveFailure = cause;
+        received.offer(FAILED);
+    }
+
+    @Override
+    protected void onClosed(ProtonException cause) {
+        received.offer(CLOSED);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.nio.BufferOverflowException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.qpid.proton.ProtonException;
+import org.apache.qpid.proton.TimeoutException;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+
+/**
+ * A sender link created by a {@link BlockingConnection}.  The send methods may be
+ * called concurrently from any number of threads, each call blocks until the
+ * message has been settled by the remote peer.
+ */
+public class BlockingSender extends BlockingLinkHandler {
+
+    private static final int INITIAL_ENCODE_BUFFER_SIZE = 1024;
+
+    private static final class PendingSend {
+        private final byte[] encoded;
+        private final int length;
+        private final CompletableFuture<DeliveryState> outcome;
+
+        PendingSend(byte[] encoded, int length, CompletableFuture<DeliveryState> outcome) {
+            this.encoded = encoded;
+            this.length = length;
+            this.outcome = outcome;
+        }
+    }
+
+    // Only accessed by the reactor thread
+    private final ArrayDeque<PendingSend> pending = new ArrayDeque<PendingSend>();
+    private final Set<CompletableFuture<DeliveryState>> unsettled = new HashSet<CompletableFuture<DeliveryState>>();
+
+    BlockingSender(BlockingConnection connection, String address) {
+        super(connection, address);
+    }
+
+    @Override
+    protected Link createLink() {
+        Sender sender = connection.getSession().sender(address);
+        Target target = new Target();
+        target.setAddress(address);
+        sender.setTarget(target);
+        return sender;
+    }
+
+    /**
+     * Sends a message, blocking until it is settled by the remote peer.
+     *
+     * @param message the message to send.
+     * @return the delivery state set by the remote peer when settling the message.
+     */
+    public DeliveryState send(Message message) {
+        return send(message, connection.getClient().getTimeout());
+    }
+
+    /**
+     * Sends a message, blocking until it is settled by the remote peer.
+     *
+     * @param message the message to send.
+     * @param timeout the maximum time in milliseconds to wait for the remote peer.
+     * @return the delivery state set by the remote peer when settling the message.
+     */
+    public DeliveryState send(Message message, long timeout) {
+        byte[] buffer = new byte[INITIAL_ENCODE_BUFFER_SIZE];
+        int length;
+        while (true) {
+            try {
+                length = message.encode(buffer, 0, buffer.length);
+                break;
+            } catch (BufferOverflowException e) {
+                buffer = new byte[buffer.length * 2];
+            }
+        }
+
+        final PendingSend send = new PendingSend(buffer, length, new CompletableFuture<DeliveryState>());
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                if (failure != null) {
+                    send.outcome.completeExceptionally(failure);
+                } else {
+                    pending.add(send);
+                    pump();
+                }
+            }
+        });
+        try {
+            return BlockingClient.await(send.outcome, timeout, "message sent to " + address + " to be settled");
+        } catch (TimeoutException e) {
+            abandon(send, e);
+            throw e;
+        }
+    }
+
+    // The caller has been told the send failed, so a message still waiting for
+    // credit must not be sent later, and one in flight is no longer tracked.
+    private void abandon(final PendingSend send, TimeoutException cause) {
+        send.outcome.completeExceptionally(cause);
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                pending.remove(send);
+                unsettled.remove(send.outcome);
+            }
+        });
+    }
+
+    private void pump() {
+        Sender sender = (Sender) link;
+        while (!pending.isEmpty() && sender.getCredit() > 0) {
+            PendingSend send = pending.poll();
+            Delivery delivery = sender.delivery();
+            delivery.setContext(send.outcome);
+            sender.send(send.encoded, 0, send.length);
+            sender.advance();
+            unsettled.add(send.outcome);
+        }
+    }
+
+    @Override
+    public void onLinkFlow(Event event) {
+        pump();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onDelivery(Event event) {
+        Delivery delivery = event.getDelivery();
+        if (delivery.remotelySettled() || delivery.getRemoteState() != null) {
+            CompletableFuture<DeliveryState> outcome = (CompletableFuture<DeliveryState>) delivery.getContext();
+            delivery.settle();
+            if (outcome != null) {
+                unsettled.remove(outcome);
+                outcome.complete(delivery.getRemoteState());
+            }
+        }
+    }
+
+    @Override
+    protected void onFailed(ProtonException cause) {
+        for (PendingSend send : pending) {
+            send.outcome.completeExceptionally(cause);
+        }
+        pending.clear();
+        for (CompletableFuture<DeliveryState> outcome : unsettled) {
+            outcome.completeExceptionally(cause);
+        }
+        unsettled.clear();
+    }
+}
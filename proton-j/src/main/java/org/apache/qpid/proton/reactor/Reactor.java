@@ -43,7 +43,8 @@ import org.apache.qpid.proton.reactor.impl.ReactorImpl;
  * implement methods for.
  * <p>
  * This class is not thread safe (with the exception of the {@link #wakeup()}
- * method) and should only be used by a single thread at any given time.
+ * and {@link #execute(Runnable)} methods) and should only be used by a single
+ * thread at any given time.
  */
 public interface Reactor {
 
@@ -205,6 +206,19 @@ public interface Reactor {
      */
     void wakeup();
 
+    /**
+     * Queues a task to be run by the thread processing the reactor, waking that
+     * thread up if required.  Queued tasks are run, in the order they were
+     * submitted, at the start of the next call to {@link #process()}.
+     * <p>
+     * Like {@link #wakeup()} this method is thread safe and may be called by any
+     * thread at the same time as another thread is using the reactor.  Tasks can
+     * safely use the reactor, and the connections belonging to it.
+     *
+     * @param task the task to run.
+     */
+    void execute(Runnable task);
+
     /**
      * Starts the reactor.  This method should be invoked before the first call
      * to {@link #process()}.
@@ -290,6 +304,15 @@ public interface Reactor {
      */
     ReactorOptions getOptions();
 
+    /**
+     * Gets the statistics describing where the reactor's loop spends its time. These are
+     * only collected when enabled through the reactor's options.
+     *
+     * @return a live view of the statistics, which may be read from any thread
+     * @see ReactorOptions#setStatisticsEnabled(boolean)
+     */
+    ReactorStatistics getStatistics();
+
     /**
      * Get the address used by the connection
      * <p>
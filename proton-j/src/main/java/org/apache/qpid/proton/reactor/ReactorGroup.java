@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.reactor.impl.ReactorGroupImpl;
+
+/**
+ * A fixed size group of {@link Reactor} instances, each of which is run by its
+ * own thread, allowing AMQP processing to be spread over several cores.
+ * <p>
+ * Every connection belongs to exactly one reactor of the group and all events for
+ * that connection (and its sessions, links and deliveries) are dispatched on that
+ * reactor's thread, so the engine objects of a connection must only be used from
+ * that thread.  Connections accepted by an acceptor created with
+ * {@link #acceptor(String, int, Handler)} are handed to the reactors of the group
+ * according to the group's {@link Balancing} policy.
+ * <p>
+ * Work can be handed to a particular reactor from any thread using
+ * {@link #execute(int, Runnable)}, the task is run on the reactor's own thread.
+ */
+public interface ReactorGroup {
+
+    /**
+     * Policies used to pick the reactor that a new connection is assigned to.
+     */
+    enum Balancing {
+        /** Connections are assigned to each reactor in turn. */
+        ROUND_ROBIN,
+        /** Connections are assigned to the reactor that currently has the fewest connections. */
+        LEAST_CONNECTIONS
+    }
+
+    public static final class Factory
+    {
+        public static ReactorGroup create(int size) throws IOException {
+            return new ReactorGroupImpl(size, new ReactorOptions(), Balancing.ROUND_ROBIN);
+        }
+
+        public static ReactorGroup create(int size, ReactorOptions options) throws IOException {
+            return new ReactorGroupImpl(size, options, Balancing.ROUND_ROBIN);
+        }
+
+        public static ReactorGroup create(int size, ReactorOptions options, Balancing balancing) throws IOException {
+            return new ReactorGroupImpl(size, options, balancing);
+        }
+    }
+
+    /** @return the number of reactors in the group. */
+    int size();
+
+    /**
+     * @param index the index of the reactor, from zero to <code>size() - 1</code>
+     * @return the reactor at the given index.  Handlers should be added to the
+     *         reactor before the group is started.
+     */
+    Reactor getReactor(int index);
+
+    /**
+     * Selects the reactor that a new connection should be assigned to, using the
+     * balancing policy of the group.  This method is thread safe.
+     *
+     * @return the index of the reactor selected.
+     */
+    int next();
+
+    /**
+     * @param index the index of the reactor.
+     * @return the number of connections currently open on the given reactor.
+     */
+    int getConnectionCount(int index);
+
+    /**
+     * Runs the given task on the thread of the reactor at the given index.  This
+     * method is thread safe and can be used to safely act on the engine objects
+     * belonging to that reactor from other threads.
+     *
+     * @param index the index of the reactor that should run the task.
+     * @param task the task to run.
+     */
+    void execute(int index, Runnable task);
+
+    /**
+     * Creates an acceptor that listens for in-bound connections, the acceptor
+     * itself is owned by the first reactor of the group while each accepted
+     * connection is assigned to a reactor according to the balancing policy.
+     *
+     * @param host the host name or address of the NIC to listen on.
+     * @param port the port number to listen on.
+     * @param handler if non-<code>null</code> this handler is registered with each
+     *                new connection.  As the handler can be called from several
+     *                threads it must be thread safe, when <code>null</code> the
+     *                handler of the reactor that the connection is assigned to is
+     *                used instead.
+     * @return the newly created acceptor object.
+     * @throws IOException
+     */
+    Acceptor acceptor(String host, int port, Handler handler) throws IOException;
+
+    /**
+     * Starts a thread for each reactor of the group.
+     */
+    void start();
+
+    /**
+     * Requests that every reactor of the group stops processing, this method
+     * does not wait for the reactor threads to finish.
+     */
+    void stop();
+
+    /**
+     * Waits for the reactor threads to finish.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout argument.
+     * @return <code>true</code> if all of the reactor threads have finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Frees any resources held by the reactors of the group.  Should only be
+     * called once the reactor threads have finished.
+     */
+    void free();
+}
@@ -20,9 +20,18 @@
  */
 package org.apache.qpid.proton.reactor;
 
+import java.util.function.Consumer;
+
 public class ReactorOptions {
+    public static final long DEFAULT_STATISTICS_EXPORT_INTERVAL = 10000;
+
     private boolean enableSaslByDefault = true;
     private int maxFrameSize;
+    private boolean statisticsEnabled;
+    private Consumer<ReactorStatistics> statisticsExporter;
+    private long statisticsExportInterval = DEFAULT_STATISTICS_EXPORT_INTERVAL;
+    private long slowHandlerThreshold;
+    private Consumer<SlowHandlerReport> slowHandlerListener;
 
     /**
      * Sets whether SASL will be automatically enabled with ANONYMOUS as the mechanism,
@@ -66,4 +75,120 @@ public class ReactorOptions {
     public int getMaxFrameSize() {
       return maxFrameSize;
     }
+
+    /**
+     * Sets whether the reactor collects the {@link ReactorStatistics} returned by
+     * {@link Reactor#getStatistics()}.
+     *
+     * False by default, as timing each dispatched event has a small cost.
+     *
+     * @param statisticsEnabled
+     *            true if statistics should be collected, false if not.
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    /**
+     * Returns whether the reactor collects statistics.
+     *
+     * @return True if statistics should be collected, false if not.
+     * @see #setStatisticsEnabled(boolean)
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Sets a callback the reactor hands its statistics to, from its own thread, on the first
+     * iteration after each export interval has passed. Setting an exporter also enables the
+     * collection of statistics.
+     *
+     * @param statisticsExporter the callback, or null for none.
+     * @see #setStatisticsExportInterval(long)
+     */
+    public void setStatisticsExporter(Consumer<ReactorStatistics> statisticsExporter) {
+        this.statisticsExporter = statisticsExporter;
+    }
+
+    /**
+     * Gets the statistics exporter.
+     *
+     * @return the callback or null if none is set.
+     * @see #setStatisticsExporter(Consumer)
+     */
+    public Consumer<ReactorStatistics> getStatisticsExporter() {
+        return statisticsExporter;
+    }
+
+    /**
+     * Sets how often the statistics exporter is called.
+     *
+     * @param statisticsExportInterval the interval in milliseconds, {@link #DEFAULT_STATISTICS_EXPORT_INTERVAL} by default.
+     */
+    public void setStatisticsExportInterval(long statisticsExportInterval) {
+        if (statisticsExportInterval <= 0) {
+            throw new IllegalArgumentException("Export interval must be positive: " + statisticsExportInterval);
+        }
+        this.statisticsExportInterval = statisticsExportInterval;
+    }
+
+    /**
+     * Gets how often the statistics exporter is called.
+     *
+     * @return the interval in milliseconds.
+     * @see #setStatisticsExportInterval(long)
+     */
+    public long getStatisticsExportInterval() {
+        return statisticsExportInterval;
+    }
+
+    /**
+     * Sets how long a handler may take over a single event before the reactor reports it as
+     * slow. Blocking in a handler stalls every connection on the reactor, so while set a
+     * watchdog thread samples the stack of any handler that runs past the threshold and hands
+     * a {@link SlowHandlerReport} to the slow handler listener. Slow invocations are also
+     * counted in the reactor's statistics.
+     *
+     * Disabled by default.
+     *
+     * @param slowHandlerThreshold the threshold in milliseconds, or 0 to disable the watchdog.
+     */
+    public void setSlowHandlerThreshold(long slowHandlerThreshold) {
+        if (slowHandlerThreshold < 0) {
+            throw new IllegalArgumentException("Slow handler threshold must not be negative: " + slowHandlerThreshold);
+        }
+        this.slowHandlerThreshold = slowHandlerThreshold;
+    }
+
+    /**
+     * Gets the slow handler threshold.
+     *
+     * @return the threshold in milliseconds or 0 if slow handlers are not detected.
+     * @see #setSlowHandlerThreshold(long)
+     */
+    public long getSlowHandlerThreshold() {
+        return slowHandlerThreshold;
+    }
+
+    /**
+     * Sets the callback given slow handler reports, which may be called from the reactor thread
+     * or the watchdog thread. When none is set, reports are logged as warnings.
+     *
+     * @param slowHandlerListener the callback, or null to log reports.
+     * @see #setSlowHandlerThreshold(long)
+     */
+    public void setSlowHandlerListener(Consumer<SlowHandlerReport> slowHandlerListener) {
+        this.slowHandlerListener = slowHandlerListener;
+    }
+
+    /**
+     * Gets the slow handler listener.
+     *
+     * @return the callback or null if none is set.
+     * @see #setSlowHandlerListener(Consumer)
+     */
+    public Consumer<SlowHandlerReport> getSlowHandlerListener() {
+        return slowHandlerListener;
+    }
 }
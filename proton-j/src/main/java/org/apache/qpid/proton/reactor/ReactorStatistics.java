@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor;
+
+import org.apache.qpid.proton.engine.Event;
+
+/**
+ * A live view of where a {@link Reactor}'s loop spends its time.
+ * <p>
+ * Statistics are only collected when enabled with
+ * {@link ReactorOptions#setStatisticsEnabled(boolean)}, apart from the slow handler counts.
+ * They may be read from any thread while the reactor runs, although a reader on another thread
+ * can see an iteration of the loop partly counted. The statistics exporter runs on the reactor
+ * thread between iterations, so the values it reads agree with each other.
+ * <p>
+ * The histograms use power of two buckets: bucket 0 counts values of zero and bucket
+ * <code>n</code> counts values of at least 2<sup>n-1</sup> but less than 2<sup>n</sup>. The last
+ * bucket also counts everything larger.
+ *
+ * @see Reactor#getStatistics()
+ */
+public interface ReactorStatistics {
+
+    /**
+     * The number of buckets in each histogram.
+     */
+    int HISTOGRAM_BUCKETS = 32;
+
+    /**
+     * @return the number of calls to {@link Reactor#process()}
+     */
+    long getIterations();
+
+    /**
+     * @return a histogram of the number of events dispatched by each call to {@link Reactor#process()}
+     */
+    long[] getEventsPerIterationHistogram();
+
+    /**
+     * @return the number of selectables owned by the reactor at the end of the last iteration
+     */
+    int getSelectables();
+
+    /**
+     * @return the number of times the reactor waited for I/O or a timer deadline
+     */
+    long getSelects();
+
+    /**
+     * @return the sum in nanoseconds of the time spent waiting for I/O or a timer deadline
+     */
+    long getSelectWaitTotalNanos();
+
+    /**
+     * @return a histogram of the time spent in each wait for I/O or a timer deadline, in microseconds
+     */
+    long[] getSelectWaitHistogram();
+
+    /**
+     * @return the number of selectables reported readable by the waits
+     */
+    long getReadableSelectables();
+
+    /**
+     * @return the number of selectables reported writable by the waits
+     */
+    long getWritableSelectables();
+
+    /**
+     * @return the number of selectables reported expired by the waits
+     */
+    long getExpiredSelectables();
+
+    /**
+     * @return the number of selectables reported in error by the waits
+     */
+    long getErrorSelectables();
+
+    /**
+     * @return the number of events of the given type dispatched to the reactor's handlers
+     */
+    long getDispatchCount(Event.Type type);
+
+    /**
+     * @return the sum in nanoseconds of the time spent by the reactor's handlers in events of the given type;
+     * for {@link Event.Type#REACTOR_QUIESCED} this leaves out the wait for I/O counted by
+     * {@link #getSelectWaitTotalNanos()}
+     */
+    long getDispatchTotalNanos(Event.Type type);
+
+    /**
+     * @return a histogram of the time spent by the reactor's handlers in each event of the
+     * given type, in microseconds
+     */
+    long[] getDispatchHistogram(Event.Type type);
+
+    /**
+     * @return the number of handler invocations that ran past the slow handler threshold,
+     * counted whenever that threshold is set
+     * @see ReactorOptions#setSlowHandlerThreshold(long)
+     */
+    long getSlowHandlers();
+
+    /**
+     * @return the number of handler invocations for events of the given type that ran past the
+     * slow handler threshold
+     */
+    long getSlowHandlers(Event.Type type);
+
+    /**
+     * @return the number of scheduled tasks that have been run
+     */
+    long getTimerTasks();
+
+    /**
+     * @return the sum in milliseconds of how late scheduled tasks ran after their deadline
+     */
+    long getTimerLagTotalMillis();
+
+    /**
+     * @return a histogram of how late each scheduled task ran after its deadline, in milliseconds
+     */
+    long[] getTimerLagHistogram();
+}
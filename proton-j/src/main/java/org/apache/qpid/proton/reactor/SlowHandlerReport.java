@@ -0,0 +1,87 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor;
+
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.engine.Handler;
+
+/**
+ * Describes a handler that took longer than the reactor's slow handler threshold to handle an event.
+ *
+ * @see ReactorOptions#setSlowHandlerThreshold(long)
+ */
+public final class SlowHandlerReport {
+
+    private final EventType eventType;
+    private final Handler handler;
+    private final long elapsedMillis;
+    private final StackTraceElement[] stackTrace;
+
+    public SlowHandlerReport(EventType eventType, Handler handler, long elapsedMillis, StackTraceElement[] stackTrace) {
+        this.eventType = eventType;
+        this.handler = handler;
+        this.elapsedMillis = elapsedMillis;
+        this.stackTrace = stackTrace;
+    }
+
+    /**
+     * @return the type of the event being handled
+     */
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    /**
+     * @return the handler that was running when the stack was sampled or, when it was not, the handler
+     * that spent longest handling the event itself, not counting the children it dispatched to
+     */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * @return how long the handler had been running when the report was made
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the reactor thread's stack sampled while the handler was still running, or
+     * null if it finished before it could be sampled
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Handler ").append(handler).append(" has spent ").append(elapsedMillis)
+            .append(" ms handling ").append(eventType);
+        if (stackTrace != null) {
+            for (StackTraceElement element : stackTrace) {
+                builder.append(System.lineSeparator()).append("\tat ").append(element);
+            }
+        }
+        return builder.toString();
+    }
+}
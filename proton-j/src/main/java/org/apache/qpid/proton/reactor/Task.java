@@ -45,6 +45,7 @@ public interface Task extends Extendable {
 
     /**
      * Cancel the execution of this task. No-op if invoked after the task was already executed.
+     * May be called from any thread.
      */
     void cancel();
 }
@@ -47,6 +47,7 @@ public class AcceptorImpl implements Acceptor {
 
     private Record attachments = new RecordImpl();
     private final SelectableImpl sel;
+    private ReactorGroupImpl group;
     protected static final String CONNECTION_ACCEPTOR_KEY = "pn_reactor_connection_acceptor";
 
     private class AcceptorReadable implements Callback {
@@ -58,41 +59,91 @@ public class AcceptorImpl implements Acceptor {
                 if (socketChannel == null) {
                     throw new ReactorInternalException("Selectable readable, but no socket to accept");
                 }
-                Handler handler = BaseHandler.getHandler(AcceptorImpl.this);
-                if (handler == null) {
-                    handler = reactor.getHandler();
+                int index = -1;
+                if (group != null) {
+                    index = group.assign();
+                    Reactor target = group.getReactor(index);
+                    if (target != reactor) {
+                        group.execute(index, new AcceptedHandoff(target, socketChannel, index));
+                        return;
+                    }
                 }
-                Connection conn = reactor.connection(handler);
-                Record conn_recs = conn.attachments();
-                conn_recs.set(CONNECTION_ACCEPTOR_KEY, Acceptor.class, AcceptorImpl.this);
-                InetSocketAddress peerAddr = (InetSocketAddress)socketChannel.getRemoteAddress();
-                if (peerAddr != null) {
-                    Address addr = new Address();
-                    addr.setHost(peerAddr.getHostString());
-                    addr.setPort(Integer.toString(peerAddr.getPort()));
-                    conn_recs.set(ReactorImpl.CONNECTION_PEER_ADDRESS_KEY, Address.class, addr);
+                try {
+                    accepted(reactor, socketChannel);
+                } catch(IOException ioException) {
+                    if (index >= 0) {
+                        group.release(index);
+                    }
+                    throw ioException;
                 }
-                Transport trans = Proton.transport();
+            } catch(IOException ioException) {
+                sel.error();
+            }
+        }
+    }
 
-                int maxFrameSizeOption = reactor.getOptions().getMaxFrameSize();
-                if (maxFrameSizeOption != 0) {
-                    trans.setMaxFrameSize(maxFrameSizeOption);
-                }
+    // Completes the set up of a connection accepted on behalf of another reactor of the
+    // group, run on the thread of the reactor that will own the connection.
+    private class AcceptedHandoff implements Runnable {
+        private final Reactor reactor;
+        private final SocketChannel socketChannel;
+        private final int index;
 
-                if(reactor.getOptions().isEnableSaslByDefault()) {
-                    Sasl sasl = trans.sasl();
-                    sasl.server();
-                    sasl.setMechanisms("ANONYMOUS");
-                    sasl.done(SaslOutcome.PN_SASL_OK);
-                }
-                trans.bind(conn);
-                IOHandler.selectableTransport(reactor, socketChannel.socket(), trans);
+        AcceptedHandoff(Reactor reactor, SocketChannel socketChannel, int index) {
+            this.reactor = reactor;
+            this.socketChannel = socketChannel;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                accepted(reactor, socketChannel);
             } catch(IOException ioException) {
-                sel.error();
+                group.release(index);
+                try {
+                    socketChannel.close();
+                } catch(IOException e) {
+                    // Ignore
+                }
             }
         }
     }
 
+    // Only throws before the connection is created, so a connection counted against a
+    // reactor of the group is either created or given back.
+    private void accepted(Reactor reactor, SocketChannel socketChannel) throws IOException {
+        InetSocketAddress peerAddr = (InetSocketAddress)socketChannel.getRemoteAddress();
+        Handler handler = BaseHandler.getHandler(AcceptorImpl.this);
+        if (handler == null) {
+            handler = reactor.getHandler();
+        }
+        Connection conn = reactor.connection(handler);
+        Record conn_recs = conn.attachments();
+        conn_recs.set(CONNECTION_ACCEPTOR_KEY, Acceptor.class, AcceptorImpl.this);
+        if (peerAddr != null) {
+            Address addr = new Address();
+            addr.setHost(peerAddr.getHostString());
+            addr.setPort(Integer.toString(peerAddr.getPort()));
+            conn_recs.set(ReactorImpl.CONNECTION_PEER_ADDRESS_KEY, Address.class, addr);
+        }
+        Transport trans = Proton.transport();
+
+        int maxFrameSizeOption = reactor.getOptions().getMaxFrameSize();
+        if (maxFrameSizeOption != 0) {
+            trans.setMaxFrameSize(maxFrameSizeOption);
+        }
+
+        if(reactor.getOptions().isEnableSaslByDefault()) {
+            Sasl sasl = trans.sasl();
+            sasl.server();
+            sasl.setMechanisms("ANONYMOUS");
+            sasl.done(SaslOutcome.PN_SASL_OK);
+        }
+        trans.bind(conn);
+        IOHandler.selectableTransport(reactor, socketChannel.socket(), trans);
+    }
+
     private static class AcceptorFree implements Callback {
         @Override
         public void run(Selectable selectable) {
@@ -134,6 +185,15 @@ public class AcceptorImpl implements Acceptor {
         }
     }
 
+    // Set when the acceptor distributes its connections over the reactors of a group
+    void setGroup(ReactorGroupImpl group) {
+        this.group = group;
+    }
+
+    ReactorGroupImpl getGroup() {
+        return group;
+    }
+
     // Used for unit tests, where acceptor is bound to an ephemeral port
     public int getPortNumber() throws IOException {
         ServerSocketChannel ssc = (ServerSocketChannel)sel.getChannel();
@@ -0,0 +1,267 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.HandlerException;
+import org.apache.qpid.proton.engine.impl.HandlerTracer;
+import org.apache.qpid.proton.reactor.SlowHandlerReport;
+
+/**
+ * Times each handler invocation made by a reactor, reporting those that run
+ * past a threshold.
+ * <p>
+ * A shared watchdog thread polls the invocation in progress while the reactor
+ * is running, so a handler that blocks is reported with a sample of the reactor
+ * thread's stack while it is still blocked. A slow invocation that completes
+ * before the watchdog sees it is reported by the reactor thread without a stack
+ * sample.
+ * <p>
+ * As the reactor's events tell it when each handler in the dispatched tree starts
+ * and finishes, a report names the handler that was running when the stack was
+ * sampled, or the one that spent longest handling the event itself.
+ * <p>
+ * The IOHandler suspends the invocation in progress while it waits in the
+ * selector, so an idle reactor is not mistaken for a slow handler.
+ */
+class HandlerWatchdog implements HandlerTracer {
+
+    private static final Logger LOGGER = Logger.getLogger(HandlerWatchdog.class.getName());
+
+    private static final class Scheduler {
+        static final ScheduledExecutorService INSTANCE;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "proton-reactor-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            INSTANCE = executor;
+        }
+    }
+
+    private final long thresholdNanos;
+    private final Consumer<SlowHandlerReport> listener;
+    private final ReactorStatisticsImpl statistics;
+    private final long period;
+    private ScheduledFuture<?> poll;
+
+    // The invocation in progress, published by the write to start, which is 0 between invocations
+    private volatile long start;
+    private volatile EventType type;
+    private volatile Thread thread;
+    // The innermost handler handling the event
+    private volatile Handler handler;
+
+    // The start of the last invocation reported, so each is reported once
+    private final AtomicLong reported = new AtomicLong();
+
+    // Only used by the reactor thread: how long the invocation in progress had run for
+    // when it was suspended, or -1 if it is not suspended
+    private long suspendedElapsed = -1;
+    private boolean suspendedReported;
+
+    // Only used by the reactor thread: the handlers handling the event, outermost first, and
+    // the time each has spent doing so itself, up to when the time was last counted
+    private boolean dispatching;
+    private Handler[] handlers = new Handler[4];
+    private long[] own = new long[4];
+    private int depth;
+    private long counted;
+    private Handler slowest;
+    private long slowestOwn;
+
+    HandlerWatchdog(long thresholdMillis, Consumer<SlowHandlerReport> listener, ReactorStatisticsImpl statistics) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.listener = listener;
+        this.statistics = statistics;
+        this.period = Math.max(1, thresholdMillis / 2);
+    }
+
+    /**
+     * Starts polling for blocked handlers, until {@link #stop()}.
+     */
+    void start() {
+        if (poll == null) {
+            poll = Scheduler.INSTANCE.scheduleAtFixedRate(this::poll, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void dispatch(Event event, Handler handler) throws HandlerException {
+        EventType type = event.getEventType();
+        this.type = type;
+        this.handler = handler;
+        this.thread = Thread.currentThread();
+        dispatching = true;
+        long start = System.nanoTime() | 1;
+        this.start = start;
+        try {
+            event.dispatch(handler);
+        } finally {
+            long end = System.nanoTime();
+            Handler slowest = this.slowest;
+            dispatching = false;
+            depth = 0;
+            this.slowest = null;
+            slowestOwn = 0;
+            // Any suspension moved the start forward by the time spent suspended
+            start = this.start;
+            this.start = 0;
+            if (start == 0) {
+                start = end - suspendedElapsed;
+                suspendedElapsed = -1;
+            }
+            long elapsed = end - start;
+            if (elapsed >= thresholdNanos) {
+                statistics.slowHandler(type);
+                if (claim(start)) {
+                    report(new SlowHandlerReport(type, slowest != null ? slowest : handler,
+                                                 TimeUnit.NANOSECONDS.toMillis(elapsed), null));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void handlerStarted(Handler handler) {
+        if (dispatching) {
+            long now = System.nanoTime();
+            if (depth > 0) {
+                own[depth - 1] += now - counted;
+            }
+            if (depth == handlers.length) {
+                handlers = Arrays.copyOf(handlers, depth * 2);
+                own = Arrays.copyOf(own, depth * 2);
+            }
+            handlers[depth] = handler;
+            own[depth++] = 0;
+            counted = now;
+            this.handler = handler;
+        }
+    }
+
+    @Override
+    public void handlerFinished(Handler handler) {
+        if (dispatching && depth > 0) {
+            long now = System.nanoTime();
+            long spent = own[--depth] + now - counted;
+            if (slowest == null || spent > slowestOwn) {
+                slowest = handlers[depth];
+                slowestOwn = spent;
+            }
+            handlers[depth] = null;
+            counted = now;
+            if (depth > 0) {
+                this.handler = handlers[depth - 1];
+            }
+        }
+    }
+
+    /**
+     * Stops timing the invocation in progress until {@link #resume()}.
+     */
+    void suspend() {
+        long start = this.start;
+        if (start != 0) {
+            long now = System.nanoTime();
+            this.start = 0;
+            suspendedElapsed = now - start;
+            suspendedReported = reported.get() == start;
+            if (depth > 0) {
+                own[depth - 1] += now - counted;
+            }
+        }
+    }
+
+    /**
+     * Resumes timing the invocation suspended by {@link #suspend()}, leaving out the time it was suspended.
+     */
+    void resume() {
+        if (suspendedElapsed >= 0) {
+            long now = System.nanoTime();
+            long start = (now - suspendedElapsed) | 1;
+            if (suspendedReported) {
+                reported.set(start);
+            }
+            suspendedElapsed = -1;
+            counted = now;
+            this.start = start;
+        }
+    }
+
+    private void poll() {
+        long start = this.start;
+        EventType type = this.type;
+        Handler handler = this.handler;
+        Thread thread = this.thread;
+        if (start == 0 || System.nanoTime() - start < thresholdNanos || reported.get() == start) {
+            return;
+        }
+
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        long elapsed = System.nanoTime() - start;
+        // Only report if the same invocation is still running after sampling its stack
+        if (this.start == start && claim(start)) {
+            report(new SlowHandlerReport(type, handler, TimeUnit.NANOSECONDS.toMillis(elapsed), stackTrace));
+        }
+    }
+
+    private boolean claim(long start) {
+        long last = reported.get();
+        return last != start && reported.compareAndSet(last, start);
+    }
+
+    private void report(SlowHandlerReport report) {
+        try {
+            if (listener != null) {
+                listener.accept(report);
+            } else {
+                LOGGER.log(Level.WARNING, report.toString());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Slow handler listener failed", e);
+        }
+    }
+
+    /**
+     * Stops polling for blocked handlers, until started again.
+     */
+    void stop() {
+        if (poll != null) {
+            poll.cancel(false);
+            poll = null;
+        }
+    }
+}
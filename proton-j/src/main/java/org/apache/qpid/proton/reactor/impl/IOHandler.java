@@ -54,23 +54,43 @@ public class IOHandler extends BaseHandler {
         // check if we are still quiesced, other handlers of
         // PN_REACTOR_QUIESCED could have produced more events to process
         if (!reactor.quiesced()) return;
-        selector.select(reactor.getTimeout());
+        ReactorImpl reactorImpl = reactor instanceof ReactorImpl ? (ReactorImpl) reactor : null;
+        long selectWait = 0;
+        if (reactorImpl != null) {
+            reactorImpl.selectStarted();
+        }
+        try {
+            selector.select(reactor.getTimeout());
+        } finally {
+            if (reactorImpl != null) {
+                selectWait = reactorImpl.selectEnded();
+            }
+        }
         reactor.mark();
+        int readable = 0, writable = 0, expired = 0, error = 0;
         Iterator<Selectable> selectables = selector.readable();
         while(selectables.hasNext()) {
             selectables.next().readable();
+            readable++;
         }
         selectables = selector.writeable();
         while(selectables.hasNext()) {
             selectables.next().writeable();
+            writable++;
         }
         selectables = selector.expired();
         while(selectables.hasNext()) {
             selectables.next().expired();
+            expired++;
         }
         selectables = selector.error();
         while(selectables.hasNext()) {
             selectables.next().error();
+            error++;
+        }
+        ReactorStatisticsImpl statistics = reactorImpl == null ? null : reactorImpl.collectedStatistics();
+        if (statistics != null) {
+            statistics.selected(selectWait, readable, writable, expired, error);
         }
         reactor.yield();
     }
@@ -0,0 +1,240 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.impl.CollectorImpl;
+import org.apache.qpid.proton.reactor.Acceptor;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.ReactorGroup;
+import org.apache.qpid.proton.reactor.ReactorOptions;
+import org.apache.qpid.proton.reactor.Selectable;
+
+public class ReactorGroupImpl implements ReactorGroup {
+
+    private final ReactorImpl[] reactors;
+    private final Thread[] threads;
+    private final Selectable[] keepAlive;
+    private final AtomicIntegerArray connections;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Balancing balancing;
+    private volatile boolean started;
+
+    public ReactorGroupImpl(int size, ReactorOptions options, Balancing balancing) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("A reactor group must contain at least one reactor");
+        }
+        if (balancing == null) {
+            throw new IllegalArgumentException("A balancing policy must be provided");
+        }
+
+        this.balancing = balancing;
+        this.reactors = new ReactorImpl[size];
+        this.threads = new Thread[size];
+        this.keepAlive = new Selectable[size];
+        this.connections = new AtomicIntegerArray(size);
+
+        for (int i = 0; i < size; ++i) {
+            reactors[i] = new ReactorImpl(options);
+            // the connection counts must not depend on the interest set by the application
+            ((CollectorImpl) reactors[i].collector()).require(Event.Type.CONNECTION_INIT, Event.Type.CONNECTION_FINAL);
+            reactors[i].getGlobalHandler().add(new ConnectionCounter(i));
+        }
+    }
+
+    @Override
+    public int size() {
+        return reactors.length;
+    }
+
+    @Override
+    public Reactor getReactor(int index) {
+        return reactors[index];
+    }
+
+    @Override
+    public int next() {
+        if (reactors.length == 1) {
+            return 0;
+        }
+
+        switch (balancing) {
+        case LEAST_CONNECTIONS:
+            int selected = 0;
+            int least = connections.get(0);
+            for (int i = 1; i < reactors.length && least > 0; ++i) {
+                int count = connections.get(i);
+                if (count < least) {
+                    least = count;
+                    selected = i;
+                }
+            }
+            return selected;
+        case ROUND_ROBIN:
+        default:
+            return (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % reactors.length;
+        }
+    }
+
+    // Picks the reactor for a connection accepted on behalf of the group and counts the
+    // connection against it straight away, so that a burst of accepts is spread over the
+    // group before the connections are initialised on their reactors.
+    int assign() {
+        int index = next();
+        connections.incrementAndGet(index);
+        return index;
+    }
+
+    // Gives back a connection counted by assign() that could not be set up.
+    void release(int index) {
+        connections.decrementAndGet(index);
+    }
+
+    @Override
+    public int getConnectionCount(int index) {
+        return connections.get(index);
+    }
+
+    @Override
+    public void execute(int index, Runnable task) {
+        reactors[index].execute(task);
+    }
+
+    @Override
+    public Acceptor acceptor(String host, int port, Handler handler) throws IOException {
+        if (started) {
+            throw new IllegalStateException("Acceptors must be created before the reactor group is started");
+        }
+        AcceptorImpl acceptor = new AcceptorImpl(reactors[0], host, port, handler);
+        acceptor.setGroup(this);
+        return acceptor;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The reactor group has already been started");
+        }
+        started = true;
+
+        for (int i = 0; i < reactors.length; ++i) {
+            final int index = i;
+            final ReactorImpl reactor = reactors[i];
+
+            // The reactor would otherwise finish as soon as it had nothing to do, an
+            // idle selectable keeps it running until the group is stopped.
+            reactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    keepAlive[index] = reactor.selectable();
+                }
+            });
+
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reactor.run();
+                }
+            }, "proton-reactor-" + i);
+            threads[i].start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        for (int i = 0; i < reactors.length; ++i) {
+            final int index = i;
+            final ReactorImpl reactor = reactors[i];
+            reactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Selectable selectable = keepAlive[index];
+                    if (selectable != null) {
+                        keepAlive[index] = null;
+                        selectable.terminate();
+                        reactor.update(selectable);
+                    }
+                    reactor.stop();
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            if (thread == null) {
+                continue;
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining > 0) {
+                thread.join(remaining);
+            }
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void free() {
+        for (ReactorImpl reactor : reactors) {
+            reactor.free();
+        }
+    }
+
+    /*
+     * Tracks the number of open connections owned by each reactor, used when
+     * balancing by connection count.
+     */
+    private final class ConnectionCounter extends BaseHandler {
+
+        private final int index;
+
+        ConnectionCounter(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onConnectionInit(Event event) {
+            // connections accepted by the group were counted when they were assigned
+            Acceptor acceptor = event.getConnection().attachments().get(AcceptorImpl.CONNECTION_ACCEPTOR_KEY, Acceptor.class);
+            if (!(acceptor instanceof AcceptorImpl) || ((AcceptorImpl) acceptor).getGroup() != ReactorGroupImpl.this) {
+                connections.incrementAndGet(index);
+            }
+        }
+
+        @Override
+        public void onConnectionFinal(Event event) {
+            connections.decrementAndGet(index);
+        }
+    }
+}
@@ -27,6 +27,8 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.Pipe;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.BaseHandler;
@@ -42,12 +44,14 @@ import org.apache.qpid.proton.engine.HandlerException;
 import org.apache.qpid.proton.engine.Record;
 import org.apache.qpid.proton.engine.impl.CollectorImpl;
 import org.apache.qpid.proton.engine.impl.ConnectionImpl;
+import org.apache.qpid.proton.engine.impl.FlightRecorderEvent;
 import org.apache.qpid.proton.engine.impl.RecordImpl;
 import org.apache.qpid.proton.reactor.Acceptor;
 import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.ReactorChild;
 import org.apache.qpid.proton.reactor.ReactorOptions;
+import org.apache.qpid.proton.reactor.ReactorStatistics;
 import org.apache.qpid.proton.reactor.Selectable;
 import org.apache.qpid.proton.reactor.Selectable.Callback;
 import org.apache.qpid.proton.reactor.Selector;
@@ -67,12 +71,23 @@ public class ReactorImpl implements Reactor, Extendable {
     private boolean stop;
     private Selectable selectable;
     private EventType previous;
+    // Events dispatched by the current call to process(), counted for the Flight Recorder
+    private int iterationEvents;
     private Timer timer;
     private final Pipe wakeup;
     private Selector selector;
     private Record attachments;
     private final IO io;
     private final ReactorOptions options;
+    private final ReactorStatisticsImpl statistics = new ReactorStatisticsImpl();
+    private final boolean collectStatistics;
+    private long nextStatisticsExport;
+    private final HandlerWatchdog watchdog;
+    // The selector wait within the dispatch being timed, which is not handler time
+    private long selectStart;
+    private long selectWait;
+    private final TaskQueue pendingTasks = new TaskQueue();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
     protected static final String CONNECTION_PEER_ADDRESS_KEY = "pn_reactor_connection_peer_address";
 
     @Override
@@ -92,6 +107,13 @@ public class ReactorImpl implements Reactor, Extendable {
 
     protected ReactorImpl(IO io, ReactorOptions options) throws IOException {
         collector = (CollectorImpl)Proton.collector();
+        // the reactor's own I/O and scheduling are driven by these events
+        collector.require(Type.REACTOR_QUIESCED, Type.REACTOR_FINAL, Type.TIMER_TASK,
+                          Type.CONNECTION_LOCAL_OPEN, Type.CONNECTION_BOUND, Type.CONNECTION_FINAL,
+                          Type.TRANSPORT, Type.TRANSPORT_CLOSED,
+                          Type.SELECTABLE_INIT, Type.SELECTABLE_UPDATED, Type.SELECTABLE_READABLE,
+                          Type.SELECTABLE_WRITABLE, Type.SELECTABLE_EXPIRED, Type.SELECTABLE_ERROR,
+                          Type.SELECTABLE_FINAL);
         global = new IOHandler();
         handler = new BaseHandler();
         children = new HashSet<ReactorChild>();
@@ -102,6 +124,14 @@ public class ReactorImpl implements Reactor, Extendable {
         mark();
         attachments = new RecordImpl();
         this.options = options;
+        collectStatistics = options.isStatisticsEnabled() || options.getStatisticsExporter() != null;
+        nextStatisticsExport = now + options.getStatisticsExportInterval();
+        watchdog = options.getSlowHandlerThreshold() > 0
+            ? new HandlerWatchdog(options.getSlowHandlerThreshold(), options.getSlowHandlerListener(), statistics)
+            : null;
+        if (watchdog != null) {
+            collector.setHandlerTracer(watchdog);
+        }
     }
 
     public ReactorImpl() throws IOException {
@@ -133,6 +163,10 @@ public class ReactorImpl implements Reactor, Extendable {
             selector.free();
         }
 
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+
         for (ReactorChild child : children) {
             child.free();
         }
@@ -148,6 +182,40 @@ public class ReactorImpl implements Reactor, Extendable {
         return options;
     }
 
+    @Override
+    public ReactorStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the statistics to update, or null if they are not being collected
+     */
+    ReactorStatisticsImpl collectedStatistics() {
+        return collectStatistics ? statistics : null;
+    }
+
+    // Called by the IOHandler as it starts waiting in the selector
+    void selectStarted() {
+        if (watchdog != null) {
+            watchdog.suspend();
+        }
+        selectStart = System.nanoTime();
+    }
+
+    /**
+     * Called by the IOHandler once it is done waiting in the selector.
+     *
+     * @return how long it waited in nanoseconds
+     */
+    long selectEnded() {
+        long wait = System.nanoTime() - selectStart;
+        selectWait += wait;
+        if (watchdog != null) {
+            watchdog.resume();
+        }
+        return wait;
+    }
+
     @Override
     public long getTimeout() {
         return timeout;
@@ -278,7 +346,34 @@ public class ReactorImpl implements Reactor, Extendable {
 
     @Override
     public boolean process() throws HandlerException {
+        Object iteration = FlightRecorderEvent.REACTOR_ITERATION.begin();
+        iterationEvents = 0;
+        try {
+            return processEvents();
+        } finally {
+            if (collectStatistics) {
+                statistics.iteration(iterationEvents, selectables);
+            }
+            if (iteration != null) {
+                FlightRecorderEvent.REACTOR_ITERATION.commit(iteration, iterationEvents);
+            }
+        }
+    }
+
+    private void exportStatistics() {
+        Consumer<ReactorStatistics> exporter = options.getStatisticsExporter();
+        if (exporter != null && now >= nextStatisticsExport) {
+            nextStatisticsExport = now + options.getStatisticsExportInterval();
+            exporter.accept(statistics);
+        }
+    }
+
+    private boolean processEvents() throws HandlerException {
         mark();
+        if (collectStatistics) {
+            exportStatistics();
+        }
+        runPendingTasks();
         EventType previous = null;
         while (true) {
             Event event = collector.peek();
@@ -288,11 +383,18 @@ public class ReactorImpl implements Reactor, Extendable {
                     return true;
                 }
                 Handler handler = eventHandler(event);
-                dispatch(event, handler);
-                dispatch(event, global);
+                if (collectStatistics) {
+                    dispatchTimed(event, handler);
+                } else {
+                    dispatch(event, handler);
+                    dispatch(event, global);
+                }
+                iterationEvents++;
 
                 if (event.getEventType() == Type.CONNECTION_FINAL) {
                     children.remove(event.getConnection());
+                } else if (event.getEventType() == Type.REACTOR_FINAL && watchdog != null) {
+                    watchdog.stop();
                 }
                 this.previous = event.getEventType();
                 previous = this.previous;
@@ -321,17 +423,60 @@ public class ReactorImpl implements Reactor, Extendable {
 
     private void dispatch(Event event, Handler handler) {
         ROOT.set(event, handler);
-        event.dispatch(handler);
+        if (watchdog == null) {
+            event.dispatch(handler);
+        } else {
+            watchdog.dispatch(event, handler);
+        }
+    }
+
+    private void dispatchTimed(Event event, Handler handler) {
+        EventType type = event.getEventType();
+        if (type == Type.TIMER_TASK) {
+            statistics.timerTask(now - ((TaskImpl) event.getTask()).deadline());
+        }
+
+        selectWait = 0;
+        long start = System.nanoTime();
+        try {
+            dispatch(event, handler);
+            dispatch(event, global);
+        } finally {
+            statistics.dispatched(type, System.nanoTime() - start - selectWait);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        pendingTasks.add(task);
+        wakeup();
+    }
+
+    private void runPendingTasks() {
+        // Cleared before draining so that a task added while draining always
+        // writes to the pipe again, and is picked up on the next iteration.
+        wakeupPending.set(false);
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            task.run();
+        }
     }
 
+    // Only the first wakeup after the reactor last drained its tasks writes to the
+    // pipe, any others are satisfied by the byte that is already pending.
     @Override
     public void wakeup() {
-        try {
-            wakeup.sink().write(ByteBuffer.allocate(1));
-        } catch(ClosedChannelException channelClosedException) {
-            // Ignore - pipe already closed by reactor being shutdown.
-        } catch(IOException ioException) {
-            throw new ReactorInternalException(ioException);
+        if (wakeupPending.compareAndSet(false, true)) {
+            try {
+                wakeup.sink().write(ByteBuffer.allocate(1));
+            } catch(ClosedChannelException channelClosedException) {
+                // Ignore - pipe already closed by reactor being shutdown.
+            } catch(IOException ioException) {
+                throw new ReactorInternalException(ioException);
+            }
         }
     }
 
@@ -339,6 +484,9 @@ public class ReactorImpl implements Reactor, Extendable {
     public void start() {
         collector.put(Type.REACTOR_INIT, this);
         selectable = timerSelectable();
+        if (watchdog != null) {
+            watchdog.start();
+        }
     }
 
     @Override
@@ -347,16 +495,22 @@ public class ReactorImpl implements Reactor, Extendable {
     }
 
     private boolean more() {
-        return timer.tasks() > 0 || selectables > 1;
+        return timer.tasks() > 0 || selectables > 1 || !pendingTasks.isEmpty();
     }
 
     @Override
     public void run() throws HandlerException {
         setTimeout(3141);
-        start();
-        while(process()) {}
-        stop();
-        process();
+        try {
+            start();
+            while(process()) {}
+            stop();
+            process();
+        } finally {
+            if (watchdog != null) {
+                watchdog.stop();
+            }
+        }
         collector = null;
     }
 
@@ -496,4 +650,8 @@ public class ReactorImpl implements Reactor, Extendable {
     public IO getIO() {
         return io;
     }
+
+    public Timer getTimer() {
+        return timer;
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.reactor.ReactorStatistics;
+
+/**
+ * Counters behind {@link ReactorStatistics}.
+ *
+ * Every value, histogram buckets included, is a slot of one array laid out by
+ * the offsets below, with a block of slots per event type for the dispatch
+ * values. The reactor loop calls the recording methods between handler
+ * invocations, and the selector wait is recorded by the IOHandler apart from
+ * the dispatch of the REACTOR_QUIESCED event it happens in.
+ */
+class ReactorStatisticsImpl implements ReactorStatistics {
+
+    private static final int TYPES = Event.Type.values().length;
+
+    private static final int ITERATIONS = 0;
+    private static final int EVENTS_PER_ITERATION = ITERATIONS + 1;
+    private static final int SELECTABLES = EVENTS_PER_ITERATION + HISTOGRAM_BUCKETS;
+    private static final int SELECTS = SELECTABLES + 1;
+    private static final int SELECT_WAIT_TOTAL = SELECTS + 1;
+    private static final int SELECT_WAIT = SELECT_WAIT_TOTAL + 1;
+    private static final int READABLE = SELECT_WAIT + HISTOGRAM_BUCKETS;
+    private static final int WRITABLE = READABLE + 1;
+    private static final int EXPIRED = WRITABLE + 1;
+    private static final int ERROR = EXPIRED + 1;
+    private static final int TIMER_TASKS = ERROR + 1;
+    private static final int TIMER_LAG_TOTAL = TIMER_TASKS + 1;
+    private static final int TIMER_LAG = TIMER_LAG_TOTAL + 1;
+    private static final int SLOW_HANDLERS = TIMER_LAG + HISTOGRAM_BUCKETS;
+    private static final int DISPATCH = SLOW_HANDLERS + 1;
+
+    // Per event type: count, total nanos, slow handlers then the histogram
+    private static final int DISPATCH_COUNT = 0;
+    private static final int DISPATCH_TOTAL = 1;
+    private static final int DISPATCH_SLOW = 2;
+    private static final int DISPATCH_HISTOGRAM = 3;
+    private static final int DISPATCH_STRIDE = DISPATCH_HISTOGRAM + HISTOGRAM_BUCKETS;
+
+    private static final int SIZE = DISPATCH + TYPES * DISPATCH_STRIDE;
+
+    private final AtomicLongArray counters = new AtomicLongArray(SIZE);
+
+    static int bucket(long value) {
+        int bucket = value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    private void increment(int index) {
+        counters.lazySet(index, counters.get(index) + 1);
+    }
+
+    private void add(int index, long delta) {
+        counters.lazySet(index, counters.get(index) + delta);
+    }
+
+    private long[] histogram(int from) {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = counters.get(from + i);
+        }
+        return histogram;
+    }
+
+    void iteration(int events, int selectables) {
+        increment(ITERATIONS);
+        increment(EVENTS_PER_ITERATION + bucket(events));
+        counters.lazySet(SELECTABLES, selectables);
+    }
+
+    void selected(long waitNanos, int readable, int writable, int expired, int error) {
+        increment(SELECTS);
+        add(SELECT_WAIT_TOTAL, waitNanos);
+        increment(SELECT_WAIT + bucket(waitNanos / 1000));
+        add(READABLE, readable);
+        add(WRITABLE, writable);
+        add(EXPIRED, expired);
+        add(ERROR, error);
+    }
+
+    /**
+     * Records the time the handlers took over an event. Events of types other
+     * than {@link Event.Type} are not recorded.
+     */
+    void dispatched(EventType type, long nanos) {
+        if (type instanceof Event.Type) {
+            int base = DISPATCH + ((Event.Type) type).ordinal() * DISPATCH_STRIDE;
+            increment(base + DISPATCH_COUNT);
+            add(base + DISPATCH_TOTAL, nanos);
+            increment(base + DISPATCH_HISTOGRAM + bucket(nanos / 1000));
+        }
+    }
+
+    void slowHandler(EventType type) {
+        increment(SLOW_HANDLERS);
+        if (type instanceof Event.Type) {
+            increment(DISPATCH + ((Event.Type) type).ordinal() * DISPATCH_STRIDE + DISPATCH_SLOW);
+        }
+    }
+
+    void timerTask(long lagMillis) {
+        long lag = Math.max(0, lagMillis);
+        increment(TIMER_TASKS);
+        add(TIMER_LAG_TOTAL, lag);
+        increment(TIMER_LAG + bucket(lag));
+    }
+
+    @Override
+    public long getIterations() {
+        return counters.get(ITERATIONS);
+    }
+
+    @Override
+    public long[] getEventsPerIterationHistogram() {
+        return histogram(EVENTS_PER_ITERATION);
+    }
+
+    @Override
+    public int getSelectables() {
+        return (int) counters.get(SELECTABLES);
+    }
+
+    @Override
+    public long getSelects() {
+        return counters.get(SELECTS);
+    }
+
+    @Override
+    public long getSelectWaitTotalNanos() {
+        return counters.get(SELECT_WAIT_TOTAL);
+    }
+
+    @Override
+    public long[] getSelectWaitHistogram() {
+        return histogram(SELECT_WAIT);
+    }
+
+    @Override
+    public long getReadableSelectables() {
+        return counters.get(READABLE);
+    }
+
+    @Override
+    public long getWritableSelectables() {
+        return counters.get(WRITABLE);
+    }
+
+    @Override
+    public long getExpiredSelectables() {
+        return counters.get(EXPIRED);
+    }
+
+    @Override
+    public long getErrorSelectables() {
+        return counters.get(ERROR);
+    }
+
+    @Override
+    public long getDispatchCount(Event.Type type) {
+        return counters.get(DISPATCH + type.ordinal() * DISPATCH_STRIDE + DISPATCH_COUNT);
+    }
+
+    @Override
+    public long getDispatchTotalNanos(Event.Type type) {
+        return counters.get(DISPATCH + type.ordinal() * DISPATCH_STRIDE + DISPATCH_TOTAL);
+    }
+
+    @Override
+    public long[] getDispatchHistogram(Event.Type type) {
+        return histogram(DISPATCH + type.ordinal() * DISPATCH_STRIDE + DISPATCH_HISTOGRAM);
+    }
+
+    @Override
+    public long getSlowHandlers() {
+        return counters.get(SLOW_HANDLERS);
+    }
+
+    @Override
+    public long getSlowHandlers(Event.Type type) {
+        return counters.get(DISPATCH + type.ordinal() * DISPATCH_STRIDE + DISPATCH_SLOW);
+    }
+
+    @Override
+    public long getTimerTasks() {
+        return counters.get(TIMER_TASKS);
+    }
+
+    @Override
+    public long getTimerLagTotalMillis() {
+        return counters.get(TIMER_LAG_TOTAL);
+    }
+
+    @Override
+    public long[] getTimerLagHistogram() {
+        return histogram(TIMER_LAG);
+    }
+}
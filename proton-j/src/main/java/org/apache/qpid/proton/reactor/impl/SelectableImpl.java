@@ -51,6 +51,8 @@ public class SelectableImpl implements Selectable {
     private Transport transport;
     private boolean terminal;
     private boolean terminated;
+    private SelectorImpl.DeadlineIndex deadlineIndex;
+    private int deadlineHeapIndex = -1;
 
     @Override
     public boolean isReading() {
@@ -80,6 +82,9 @@ public class SelectableImpl implements Selectable {
     @Override
     public void setDeadline(long deadline) {
         this.deadline = deadline;
+        if (deadlineIndex != null) {
+            deadlineIndex.update(this);
+        }
     }
 
     @Override
@@ -243,4 +248,22 @@ public class SelectableImpl implements Selectable {
     public void terminated() {
         terminated = true;
     }
+
+    void setDeadlineIndex(SelectorImpl.DeadlineIndex index) {
+        if (deadlineIndex != null) {
+            deadlineIndex.remove(this);
+        }
+        deadlineIndex = index;
+        if (index != null) {
+            index.update(this);
+        }
+    }
+
+    int getDeadlineHeapIndex() {
+        return deadlineHeapIndex;
+    }
+
+    void setDeadlineHeapIndex(int index) {
+        deadlineHeapIndex = index;
+    }
 }
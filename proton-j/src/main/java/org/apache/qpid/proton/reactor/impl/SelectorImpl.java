@@ -22,11 +22,18 @@
 package org.apache.qpid.proton.reactor.impl;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
@@ -36,15 +43,45 @@ import org.apache.qpid.proton.reactor.Selector;
 
 class SelectorImpl implements Selector {
 
+    // Selector.select(Consumer, long) and Selector.selectNow(Consumer) were added in Java 11, when
+    // present they are used so that ready keys are handed over without going through the selected key set.
+    private static final MethodHandle SELECT_WITH_ACTION;
+    private static final MethodHandle SELECT_NOW_WITH_ACTION;
+
+    static {
+        MethodHandle select = null;
+        MethodHandle selectNow = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            select = lookup.findVirtual(java.nio.channels.Selector.class, "select",
+                MethodType.methodType(int.class, Consumer.class, long.class));
+            selectNow = lookup.findVirtual(java.nio.channels.Selector.class, "selectNow",
+                MethodType.methodType(int.class, Consumer.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            select = null;
+            selectNow = null;
+        }
+        SELECT_WITH_ACTION = select;
+        SELECT_NOW_WITH_ACTION = selectNow;
+    }
+
     private final java.nio.channels.Selector selector;
-    private final HashSet<Selectable> selectables = new HashSet<Selectable>();
-    private final HashSet<Selectable> readable = new HashSet<Selectable>();
-    private final HashSet<Selectable> writeable = new HashSet<Selectable>();
-    private final HashSet<Selectable> expired = new HashSet<Selectable>();
-    private final HashSet<Selectable> error = new HashSet<Selectable>();
+    private final Set<Selectable> unindexed = new HashSet<Selectable>();
+    private final DeadlineIndex deadlines = new DeadlineIndex();
+    private final ReadySet readable = new ReadySet();
+    private final ReadySet writeable = new ReadySet();
+    private final ReadySet expired = new ReadySet();
+    private final ReadySet error = new ReadySet();
+    private final Consumer<SelectionKey> keyAction = this::processKey;
+    private final boolean useSelectAction;
 
     protected SelectorImpl(IO io) throws IOException {
-        selector = io.selector();
+        this(io, SELECT_WITH_ACTION != null);
+    }
+
+    SelectorImpl(IO io, boolean useSelectAction) throws IOException {
+        this.selector = io.selector();
+        this.useSelectAction = useSelectAction && SELECT_WITH_ACTION != null;
     }
 
     @Override
@@ -55,7 +92,11 @@ class SelectorImpl implements Selector {
             SelectionKey key = selectable.getChannel().register(selector, 0);
             key.attach(selectable);
         }
-        selectables.add(selectable);
+        if (selectable instanceof SelectableImpl) {
+            ((SelectableImpl) selectable).setDeadlineIndex(deadlines);
+        } else {
+            unindexed.add(selectable);
+        }
         update(selectable);
     }
 
@@ -90,7 +131,11 @@ class SelectorImpl implements Selector {
                 key.attach(null);
             }
         }
-        selectables.remove(selectable);
+        if (selectable instanceof SelectableImpl) {
+            ((SelectableImpl) selectable).setDeadlineIndex(null);
+        } else {
+            unindexed.remove(selectable);
+        }
     }
 
     @Override
@@ -98,9 +143,9 @@ class SelectorImpl implements Selector {
 
         long now = System.currentTimeMillis();
         if (timeout > 0) {
-            long deadline = 0;
             // XXX: Note: this differs from the C code which requires a call to update() to make deadline changes take affect
-            for (Selectable selectable : selectables) {
+            long deadline = deadlines.earliest();
+            for (Selectable selectable : unindexed) {
                 long d = selectable.getDeadline();
                 if (d > 0) {
                     deadline = (deadline == 0) ? d : Math.min(deadline,  d);
@@ -117,60 +162,30 @@ class SelectorImpl implements Selector {
             }
         }
 
+        readable.clear();
+        writeable.clear();
+        expired.clear();
         error.clear();
 
         long awoken = 0;
         if (timeout > 0) {
             long remainingTimeout = timeout;
             while(remainingTimeout > 0) {
-                selector.select(remainingTimeout);
+                doSelect(remainingTimeout);
                 awoken = System.currentTimeMillis();
-
-                for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext();) {
-                    SelectionKey key = iterator.next();
-                    if (key.isConnectable()) {
-                        try {
-                            ((SocketChannel)key.channel()).finishConnect();
-                            update((Selectable)key.attachment());
-                        } catch(IOException ioException) {
-                            SelectableImpl selectable = (SelectableImpl)key.attachment();
-                            ErrorCondition condition = new ErrorCondition();
-                            condition.setCondition(Symbol.getSymbol("proton:io"));
-                            condition.setDescription(ioException.getMessage());
-                            Transport transport = selectable.getTransport();
-                            if (transport != null) {
-                                transport.setCondition(condition);
-                                transport.close_tail();
-                                transport.close_head();
-                                transport.pop(Math.max(0, transport.pending())); // Force generation of TRANSPORT_HEAD_CLOSE (not in C code)
-                            }
-                            error.add(selectable);
-                        }
-                        iterator.remove();
-                    }
-                }
-                if (!selector.selectedKeys().isEmpty()) {
+                if (readable.size() > 0 || writeable.size() > 0) {
                     break;
                 }
                 remainingTimeout = remainingTimeout - (awoken - now);
             }
         } else {
-            selector.selectNow();
+            doSelectNow();
             awoken = System.currentTimeMillis();
         }
 
-        readable.clear();
-        writeable.clear();
-        expired.clear();
-        for (SelectionKey key : selector.selectedKeys()) {
-            Selectable selectable = (Selectable)key.attachment();
-            if (key.isReadable()) readable.add(selectable);
-            if (key.isAcceptable()) readable.add(selectable);
-            if (key.isWritable()) writeable.add(selectable);
-        }
-        selector.selectedKeys().clear();
         // XXX: Note: this is different to the C code which evaluates expiry at the point the selectable is iterated over.
-        for (Selectable selectable : selectables) {
+        deadlines.expired(awoken, expired);
+        for (Selectable selectable : unindexed) {
             long deadline = selectable.getDeadline();
             if (deadline > 0 && awoken >= deadline) {
                 expired.add(selectable);
@@ -178,6 +193,76 @@ class SelectorImpl implements Selector {
         }
     }
 
+    private void doSelect(long timeout) throws IOException {
+        if (useSelectAction) {
+            try {
+                int ignored = (int) SELECT_WITH_ACTION.invokeExact(selector, keyAction, timeout);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        } else {
+            selector.select(timeout);
+            processSelectedKeys();
+        }
+    }
+
+    private void doSelectNow() throws IOException {
+        if (useSelectAction) {
+            try {
+                int ignored = (int) SELECT_NOW_WITH_ACTION.invokeExact(selector, keyAction);
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IOException(t);
+            }
+        } else {
+            selector.selectNow();
+            processSelectedKeys();
+        }
+    }
+
+    private void processSelectedKeys() {
+        Set<SelectionKey> selectedKeys = selector.selectedKeys();
+        if (!selectedKeys.isEmpty()) {
+            for (SelectionKey key : selectedKeys) {
+                processKey(key);
+            }
+            selectedKeys.clear();
+        }
+    }
+
+    private void processKey(SelectionKey key) {
+        Selectable selectable = (Selectable)key.attachment();
+        if (selectable == null) {
+            return;
+        }
+
+        int readyOps = key.readyOps();
+        if ((readyOps & SelectionKey.OP_CONNECT) != 0) {
+            try {
+                ((SocketChannel)key.channel()).finishConnect();
+                update(selectable);
+            } catch(IOException ioException) {
+                ErrorCondition condition = new ErrorCondition();
+                condition.setCondition(Symbol.getSymbol("proton:io"));
+                condition.setDescription(ioException.getMessage());
+                Transport transport = ((SelectableImpl)selectable).getTransport();
+                if (transport != null) {
+                    transport.setCondition(condition);
+                    transport.close_tail();
+                    transport.close_head();
+                    transport.pop(Math.max(0, transport.pending())); // Force generation of TRANSPORT_HEAD_CLOSE (not in C code)
+                }
+                error.add(selectable);
+            }
+        } else {
+            if ((readyOps & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0) readable.add(selectable);
+            if ((readyOps & SelectionKey.OP_WRITE) != 0) writeable.add(selectable);
+        }
+    }
+
     @Override
     public Iterator<Selectable> readable() {
         return readable.iterator();
@@ -206,4 +291,172 @@ class SelectorImpl implements Selector {
             // Ignore
         }
     }
+
+    /**
+     * Array backed collection of the selectables found ready by a call to select, the
+     * storage and iterator are reused for every select so steady state loops do not
+     * allocate.  Each selectable is only reported once per select by the selector so
+     * no duplicate checking is done.
+     */
+    private static final class ReadySet implements Iterator<Selectable> {
+
+        private Selectable[] elements = new Selectable[16];
+        private int size;
+        private int cursor;
+
+        void add(Selectable selectable) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size << 1);
+            }
+            elements[size++] = selectable;
+        }
+
+        void clear() {
+            Arrays.fill(elements, 0, size, null);
+            size = 0;
+            cursor = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Iterator<Selectable> iterator() {
+            cursor = 0;
+            return this;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public Selectable next() {
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            return elements[cursor++];
+        }
+    }
+
+    /**
+     * Binary heap of the registered {@link SelectableImpl} instances that have a deadline set,
+     * ordered by deadline.  Selectables update their own position whenever their deadline is
+     * changed so that the earliest deadline and the set of expired selectables can be found
+     * without visiting every selectable registered with the selector.
+     */
+    static final class DeadlineIndex {
+
+        private SelectableImpl[] heap = new SelectableImpl[16];
+        private int size;
+
+        long earliest() {
+            return size > 0 ? heap[0].getDeadline() : 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void update(SelectableImpl selectable) {
+            int index = selectable.getDeadlineHeapIndex();
+            if (selectable.getDeadline() > 0) {
+                if (index < 0) {
+                    if (size == heap.length) {
+                        heap = Arrays.copyOf(heap, size << 1);
+                    }
+                    heap[size] = selectable;
+                    selectable.setDeadlineHeapIndex(size);
+                    siftUp(size++);
+                } else {
+                    siftDown(index);
+                    if (heap[index] == selectable) {
+                        siftUp(index);
+                    }
+                }
+            } else if (index >= 0) {
+                remove(selectable);
+            }
+        }
+
+        void remove(SelectableImpl selectable) {
+            int index = selectable.getDeadlineHeapIndex();
+            if (index < 0) {
+                return;
+            }
+            selectable.setDeadlineHeapIndex(-1);
+
+            int last = --size;
+            if (index != last) {
+                SelectableImpl moved = heap[last];
+                heap[last] = null;
+                heap[index] = moved;
+                moved.setDeadlineHeapIndex(index);
+                siftDown(index);
+                if (heap[index] == moved) {
+                    siftUp(index);
+                }
+            } else {
+                heap[last] = null;
+            }
+        }
+
+        // Heap ordering means the children of a node that has not yet expired cannot
+        // have expired either, so only the expired entries and their direct children
+        // are visited.
+        void expired(long now, ReadySet expired) {
+            if (size > 0) {
+                collectExpired(0, now, expired);
+            }
+        }
+
+        private void collectExpired(int index, long now, ReadySet expired) {
+            if (index < size && now >= heap[index].getDeadline()) {
+                expired.add(heap[index]);
+                collectExpired((index << 1) + 1, now, expired);
+                collectExpired((index << 1) + 2, now, expired);
+            }
+        }
+
+        private void siftUp(int index) {
+            SelectableImpl selectable = heap[index];
+            long deadline = selectable.getDeadline();
+            while (index > 0) {
+                int parentIndex = (index - 1) >>> 1;
+                SelectableImpl parent = heap[parentIndex];
+                if (deadline >= parent.getDeadline()) {
+                    break;
+                }
+                heap[index] = parent;
+                parent.setDeadlineHeapIndex(index);
+                index = parentIndex;
+            }
+            heap[index] = selectable;
+            selectable.setDeadlineHeapIndex(index);
+        }
+
+        private void siftDown(int index) {
+            SelectableImpl selectable = heap[index];
+            long deadline = selectable.getDeadline();
+            int half = size >>> 1;
+            while (index < half) {
+                int childIndex = (index << 1) + 1;
+                SelectableImpl child = heap[childIndex];
+                int rightIndex = childIndex + 1;
+                if (rightIndex < size && child.getDeadline() > heap[rightIndex].getDeadline()) {
+                    childIndex = rightIndex;
+                    child = heap[childIndex];
+                }
+                if (deadline <= child.getDeadline()) {
+                    break;
+                }
+                heap[index] = child;
+                child.setDeadlineHeapIndex(index);
+                index = childIndex;
+            }
+            heap[index] = selectable;
+            selectable.setDeadlineHeapIndex(index);
+        }
+    }
 }
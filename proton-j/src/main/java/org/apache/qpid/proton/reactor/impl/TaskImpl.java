@@ -21,17 +21,27 @@
 
 package org.apache.qpid.proton.reactor.impl;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import org.apache.qpid.proton.engine.Record;
 import org.apache.qpid.proton.engine.impl.RecordImpl;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.Task;
 
 public class TaskImpl implements Task, Comparable<TaskImpl> {
+    private static final AtomicIntegerFieldUpdater<TaskImpl> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(TaskImpl.class, "state");
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
     private final long deadline;
     private final int counter;
-    private boolean cancelled = false;
+    private volatile int state = PENDING;
     private Record attachments = new RecordImpl();
     private Reactor reactor;
+    private Timer timer;
+    private int index = -1;
 
     public TaskImpl(long deadline, int counter) {
         this.deadline = deadline;
@@ -57,12 +67,31 @@ public class TaskImpl implements Task, Comparable<TaskImpl> {
     }
 
     public boolean isCancelled() {
-        return cancelled;
+        return state == CANCELLED;
     }
 
+    // A task is either cancelled or expires, whichever thread gets there first
     @Override
     public void cancel() {
-        cancelled = true;
+        if (STATE.compareAndSet(this, PENDING, CANCELLED) && timer != null) {
+            timer.cancel(this);
+        }
+    }
+
+    boolean expire() {
+        return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+    void setTimer(Timer timer) {
+        this.timer = timer;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
     }
 
     public void setReactor(Reactor reactor) {
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded multiple producer, single consumer queue of tasks waiting to be run by
+ * a reactor.
+ * <p>
+ * Producers link new nodes in with a single atomic exchange of the tail, so adding
+ * a task never blocks or retries.  Only the reactor thread may call {@link #poll()}
+ * and {@link #isEmpty()}.
+ */
+class TaskQueue {
+
+    private static final class Node {
+        private volatile Node next;
+        private Runnable task;
+
+        Node(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final AtomicReference<Node> tail;
+    private Node head;
+
+    TaskQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<Node>(head);
+    }
+
+    /**
+     * Adds a task to the queue, may be called from any thread.
+     *
+     * @param task the task to add.
+     */
+    void add(Runnable task) {
+        Node node = new Node(task);
+        Node previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * @return the next task, or null if the queue is empty.
+     */
+    Runnable poll() {
+        Node next = head.next;
+        if (next == null) {
+            if (tail.get() == head) {
+                return null;
+            }
+            // A producer has swapped the tail but not yet linked its node, that
+            // happens straight after so wait for it rather than losing the task.
+            while ((next = head.next) == null) {
+                Thread.yield();
+            }
+        }
+
+        Runnable task = next.task;
+        next.task = null;
+        head = next;
+        return task;
+    }
+
+    /**
+     * @return true if there are no tasks in the queue.
+     */
+    boolean isEmpty() {
+        return head.next == null && tail.get() == head;
+    }
+}
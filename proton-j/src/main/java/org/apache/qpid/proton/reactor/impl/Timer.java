@@ -21,19 +21,39 @@
 
 package org.apache.qpid.proton.reactor.impl;
 
-import java.util.PriorityQueue;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.qpid.proton.engine.Collector;
 import org.apache.qpid.proton.engine.Event.Type;
 import org.apache.qpid.proton.engine.impl.CollectorImpl;
 import org.apache.qpid.proton.reactor.Task;
 
+/**
+ * Deadline ordered store of the {@link Task}s scheduled on a reactor.
+ * <p>
+ * Tasks are held in a binary heap where each task tracks its own position, so a
+ * cancelled task is removed from the heap the next time the reactor consults the timer
+ * rather than lingering until its deadline reaches the head of the queue. Tasks may be
+ * cancelled from any thread, so cancellations are queued and only the reactor thread
+ * changes the heap. The task counts are kept up to date as tasks are scheduled, cancelled
+ * and expire, and may be read from any thread.
+ */
 public class Timer {
 
+    private static final int INITIAL_CAPACITY = 16;
+
     private CollectorImpl collector;
-    private PriorityQueue<TaskImpl> tasks = new PriorityQueue<TaskImpl>();
+    private TaskImpl[] tasks = new TaskImpl[INITIAL_CAPACITY];
+    private int size;
+    private final ConcurrentLinkedQueue<TaskImpl> cancelledTasks = new ConcurrentLinkedQueue<TaskImpl>();
     private AtomicInteger counter = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+    // Only written by the reactor thread
+    private volatile long scheduled;
+    private final AtomicLong cancelled = new AtomicLong();
 
     public Timer(Collector collector) {
         this.collector = (CollectorImpl)collector;
@@ -41,37 +61,37 @@ public class Timer {
 
     Task schedule(long deadline) {
         TaskImpl task = new TaskImpl(deadline, counter.incrementAndGet());
-        tasks.add(task);
+        task.setTimer(this);
+        if (size == tasks.length) {
+            tasks = Arrays.copyOf(tasks, size << 1);
+        }
+        tasks[size] = task;
+        task.setIndex(size);
+        siftUp(size++);
+        scheduled++;
+        pending.incrementAndGet();
         return task;
     }
 
     long deadline() {
-        flushCancelled();
-        if (tasks.size() > 0) {
-            Task task = tasks.peek();
-            return task.deadline();
+        removeCancelled();
+        if (size > 0) {
+            return tasks[0].deadline();
         } else {
             return 0;
         }
     }
 
-    private void flushCancelled() {
-        while (!tasks.isEmpty()) {
-            TaskImpl task = tasks.peek();
-            if (task.isCancelled())
-                tasks.poll();
-            else
-                break;
-        }
-    }
-
     void tick(long now) {
-        while(!tasks.isEmpty()) {
-            TaskImpl task = tasks.peek();
+        removeCancelled();
+        while (size > 0) {
+            TaskImpl task = tasks[0];
             if (now >= task.deadline()) {
-                tasks.poll();
-                if (!task.isCancelled())
+                removeAt(0);
+                if (task.expire()) {
+                    pending.decrementAndGet();
                     collector.put(Type.TIMER_TASK, task);
+                }
             } else {
                 break;
             }
@@ -79,7 +99,102 @@ public class Timer {
     }
 
     int tasks() {
-        flushCancelled();
-        return tasks.size();
+        removeCancelled();
+        return size;
+    }
+
+    void cancel(TaskImpl task) {
+        pending.decrementAndGet();
+        cancelled.incrementAndGet();
+        cancelledTasks.add(task);
+    }
+
+    private void removeCancelled() {
+        TaskImpl task;
+        while ((task = cancelledTasks.poll()) != null) {
+            int index = task.getIndex();
+            if (index >= 0 && index < size && tasks[index] == task) {
+                removeAt(index);
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for their deadline to be reached, not counting
+     * those that have been cancelled.
+     */
+    public int getPendingTaskCount() {
+        return pending.get();
+    }
+
+    /**
+     * @return the total number of tasks scheduled with this timer.
+     */
+    public long getScheduledTaskCount() {
+        return scheduled;
+    }
+
+    /**
+     * @return the total number of tasks cancelled before their deadline was reached.
+     */
+    public long getCancelledTaskCount() {
+        return cancelled.get();
+    }
+
+    private void removeAt(int index) {
+        TaskImpl removed = tasks[index];
+        removed.setIndex(-1);
+
+        int last = --size;
+        if (index != last) {
+            TaskImpl moved = tasks[last];
+            tasks[last] = null;
+            tasks[index] = moved;
+            moved.setIndex(index);
+            siftDown(index);
+            if (tasks[index] == moved) {
+                siftUp(index);
+            }
+        } else {
+            tasks[last] = null;
+        }
+    }
+
+    private void siftUp(int index) {
+        TaskImpl task = tasks[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            TaskImpl parent = tasks[parentIndex];
+            if (task.compareTo(parent) >= 0) {
+                break;
+            }
+            tasks[index] = parent;
+            parent.setIndex(index);
+            index = parentIndex;
+        }
+        tasks[index] = task;
+        task.setIndex(index);
+    }
+
+    private void siftDown(int index) {
+        TaskImpl task = tasks[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int childIndex = (index << 1) + 1;
+            TaskImpl child = tasks[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < size && child.compareTo(tasks[rightIndex]) > 0) {
+                childIndex = rightIndex;
+                child = tasks[childIndex];
+            }
+            if (task.compareTo(child) <= 0) {
+                break;
+            }
+            tasks[index] = child;
+            child.setIndex(index);
+            index = childIndex;
+        }
+        tasks[index] = task;
+        task.setIndex(index);
     }
 }
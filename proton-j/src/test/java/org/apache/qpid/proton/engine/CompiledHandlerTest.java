@@ -0,0 +1,136 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+public class CompiledHandlerTest {
+
+    private ArrayList<String> trace = new ArrayList<String>();
+
+    class ExecutionFlowTracer extends BaseHandler {
+        protected String name;
+
+        ExecutionFlowTracer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onReactorInit(Event e) {
+            trace.add(name);
+        }
+    }
+
+    class UnhandledTracer extends BaseHandler {
+        @Override
+        public void onUnhandled(Event e) {
+            trace.add(e.getType().name());
+        }
+    }
+
+    Handler assemble(Handler outer, Handler...inner) {
+        for(Handler h : inner) {
+            outer.add(h);
+        }
+        return outer;
+    }
+
+    @Test
+    public void testDispatchOrderMatchesHandlerTree() throws IOException {
+        Handler h =
+                assemble(
+                        new ExecutionFlowTracer("A"),
+                        assemble(
+                                new ExecutionFlowTracer("A.A"),
+                                new ExecutionFlowTracer("A.A.A"),
+                                new ExecutionFlowTracer("A.A.B")
+                                ),
+                        assemble(
+                                new ExecutionFlowTracer("A.B")
+                                )
+                );
+        CompiledHandler compiled = CompiledHandler.compile(h);
+        assertSame(h, compiled.getRoot());
+        assertFalse(compiled.children().hasNext());
+
+        Reactor r = Reactor.Factory.create();
+        r.getHandler().add(compiled);
+        r.run();
+        assertArrayEquals(new String[]{"A", "A.A", "A.A.A", "A.A.B", "A.B"}, trace.toArray());
+    }
+
+    @Test
+    public void testHandlersWithoutOverridesAreSkipped() {
+        Handler h = assemble(new BaseHandler(), new ExecutionFlowTracer("A"));
+        CompiledHandler compiled = CompiledHandler.compile(h);
+
+        assertEquals(1, compiled.getHandlerCount(Event.Type.REACTOR_INIT));
+        assertEquals(0, compiled.getHandlerCount(Event.Type.LINK_FLOW));
+        assertEquals(0, compiled.getHandlerCount(Event.Type.NON_CORE_EVENT));
+
+        compiled.add(new UnhandledTracer());
+        assertEquals(2, compiled.getHandlerCount(Event.Type.REACTOR_INIT));
+        assertEquals(1, compiled.getHandlerCount(Event.Type.LINK_FLOW));
+        assertEquals(1, compiled.getHandlerCount(Event.Type.NON_CORE_EVENT));
+    }
+
+    @Test
+    public void testHandlersNotExtendingBaseHandlerAreAlwaysCalled() {
+        Handler custom = new Handler() {
+            @Override
+            public void handle(Event e) {}
+
+            @Override
+            public void onUnhandled(Event e) {}
+
+            @Override
+            public void add(Handler child) {}
+
+            @Override
+            public java.util.Iterator<Handler> children() {
+                return new ArrayList<Handler>().iterator();
+            }
+        };
+        CompiledHandler compiled = CompiledHandler.compile(custom);
+
+        for (Event.Type type : Event.Type.values()) {
+            assertEquals(1, compiled.getHandlerCount(type));
+        }
+    }
+
+    @Test
+    public void testMethodNamesMatchBaseHandler() throws Exception {
+        for (Event.Type type : Event.Type.values()) {
+            String method = CompiledHandler.methodName(type);
+            if (type == Event.Type.NON_CORE_EVENT) {
+                assertNull(method);
+            } else {
+                assertEquals(BaseHandler.class, BaseHandler.class.getMethod(method, Event.class).getDeclaringClass());
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.engine.Delivery;
+import org.junit.Test;
+
+public class BatchSendTest extends SenderReceiverTestBase
+{
+    @Test
+    public void testSendBatchWithGeneratedTags()
+    {
+        receiver.flow(3);
+        pump();
+
+        Delivery[] deliveries = sender.sendBatch(payloads(3), null, false);
+
+        assertEquals(3, deliveries.length);
+        assertEquals(0, sender.getCredit());
+        assertEquals(3, sender.getQueued());
+        assertEquals(3, sender.getUnsettled());
+        assertNull(sender.current());
+
+        pump();
+
+        assertEquals(0, sender.getQueued());
+        for (int i = 0; i < 3; i++)
+        {
+            Delivery received = receiver.current();
+            assertArrayEquals(deliveries[i].getTag(), received.getTag());
+            assertFalse(received.remotelySettled());
+            assertFalse(received.isPartial());
+
+            byte[] data = new byte[1];
+            assertEquals(1, receiver.recv(data, 0, 1));
+            assertEquals(i, data[0]);
+            receiver.advance();
+        }
+    }
+
+    @Test
+    public void testSendBatchPresettledWithTags()
+    {
+        receiver.flow(2);
+        pump();
+
+        byte[][] tags = new byte[][] {{'a'}, {'b'}};
+        Delivery[] deliveries = sender.sendBatch(payloads(2), tags, true);
+
+        assertTrue(deliveries[0].isSettled());
+        assertTrue(deliveries[1].isSettled());
+        assertEquals(0, sender.getUnsettled());
+
+        pump();
+
+        for (byte[] tag : tags)
+        {
+            Delivery received = receiver.current();
+            assertArrayEquals(tag, received.getTag());
+            assertTrue(received.remotelySettled());
+            receiver.advance();
+        }
+    }
+
+    @Test
+    public void testSendBatchQueuesBeyondCredit()
+    {
+        receiver.flow(1);
+        pump();
+
+        sender.sendBatch(payloads(2), null, false);
+        pump();
+
+        assertEquals(1, sender.getQueued());
+
+        receiver.advance();
+        receiver.flow(1);
+        pump();
+
+        assertEquals(0, sender.getQueued());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSendBatchTagCountMismatch()
+    {
+        sender.sendBatch(payloads(2), new byte[][] {{1}}, false);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSendBatchWithIncompleteCurrentDelivery()
+    {
+        sender.delivery(new byte[] {1});
+        sender.sendBatch(payloads(1), null, false);
+    }
+
+    private static ReadableBuffer[] payloads(int count)
+    {
+        ReadableBuffer[] payloads = new ReadableBuffer[count];
+        for (int i = 0; i < count; i++)
+        {
+            payloads[i] = ReadableBuffer.ByteBufferReader.wrap(new byte[] {(byte) i});
+        }
+
+        return payloads;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ChannelTableTest
+{
+    private final TransportSession session = Mockito.mock(TransportSession.class);
+
+    @Test
+    public void testAllocateReturnsLowestFreeChannel()
+    {
+        ChannelTable table = new ChannelTable();
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(i, table.allocate(session, 1000));
+        }
+
+        table.remove(130);
+        table.remove(7);
+        assertNull(table.get(7));
+
+        assertEquals(7, table.allocate(session, 1000));
+        assertEquals(130, table.allocate(session, 1000));
+        assertEquals(200, table.allocate(session, 1000));
+    }
+
+    @Test
+    public void testAllocateHonoursLimit()
+    {
+        ChannelTable table = new ChannelTable();
+        assertEquals(0, table.allocate(session, 2));
+        assertEquals(1, table.allocate(session, 2));
+        assertEquals(-1, table.allocate(session, 2));
+
+        table.remove(0);
+        assertEquals(0, table.allocate(session, 2));
+    }
+
+    @Test
+    public void testPutAndGetSparseChannels()
+    {
+        ChannelTable table = new ChannelTable();
+        TransportSession other = Mockito.mock(TransportSession.class);
+
+        table.put(65535, session);
+        table.put(0, other);
+
+        assertSame(session, table.get(65535));
+        assertSame(other, table.get(0));
+        assertNull(table.get(4));
+        assertNull(table.get(-1));
+        assertEquals(1, table.allocate(session, 65535));
+
+        table.remove(65535);
+        assertNull(table.get(65535));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutRejectsChannelBeyondRange()
+    {
+        new ChannelTable().put(65536, session);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.EventType;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Session;
+import org.junit.Test;
+
+public class CollectorImplTest
+{
+    private static final EventType CUSTOM = new EventType() {
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    };
+
+    @Test
+    public void testAllEventsCollectedByDefault()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+
+        assertTrue(collector.isInterested(Event.Type.LINK_FLOW));
+        assertTrue(collector.isInterested(CUSTOM));
+        assertNotNull(collector.put(Event.Type.LINK_FLOW, connection));
+        assertNotNull(collector.put(CUSTOM, connection));
+    }
+
+    @Test
+    public void testUninterestingEventsAreNotQueued()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+        collector.setInterest(EnumSet.of(Event.Type.DELIVERY, Event.Type.CONNECTION_REMOTE_OPEN));
+
+        assertNull(collector.put(Event.Type.LINK_FLOW, connection));
+        assertNull(collector.put(CUSTOM, connection));
+        assertNull(collector.peek());
+
+        assertNotNull(collector.put(Event.Type.CONNECTION_REMOTE_OPEN, connection));
+        assertNull(collector.put(Event.Type.TRANSPORT, connection));
+        assertSame(Event.Type.CONNECTION_REMOTE_OPEN, collector.peek().getEventType());
+        collector.pop();
+        assertNull(collector.peek());
+    }
+
+    @Test
+    public void testCustomEventTypeInterest()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+        Set<EventType> types = new HashSet<EventType>();
+        types.add(CUSTOM);
+        collector.setInterest(types);
+
+        assertFalse(collector.isInterested(Event.Type.DELIVERY));
+        assertNotNull(collector.put(CUSTOM, connection));
+        assertSame(CUSTOM, collector.peek().getEventType());
+    }
+
+    @Test
+    public void testRequiredTypesAreAlwaysCollected()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+        collector.require(Event.Type.TRANSPORT);
+        collector.setInterest(Collections.<EventType>emptySet());
+
+        assertFalse(collector.isInterested(Event.Type.DELIVERY));
+        assertTrue(collector.isInterested(Event.Type.TRANSPORT));
+        assertNotNull(collector.put(Event.Type.TRANSPORT, connection));
+
+        collector.setInterest(null);
+        assertTrue(collector.isInterested(Event.Type.DELIVERY));
+    }
+
+    @Test
+    public void testCoalescingKeepsOnePendingEventPerTypeAndContext()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+        Session session = connection.session();
+        Link first = session.sender("first");
+        Link second = session.sender("second");
+        while (collector.peek() != null) {
+            collector.pop();
+        }
+
+        assertFalse(collector.isCoalescing());
+        collector.setCoalescing(true);
+        assertTrue(collector.isCoalescing());
+
+        for (int i = 0; i < 100; i++) {
+            collector.put(Event.Type.LINK_FLOW, first);
+            collector.put(Event.Type.LINK_FLOW, second);
+            collector.put(CUSTOM, first);
+        }
+
+        assertSame(first, collector.peek().getLink());
+        assertSame(Event.Type.LINK_FLOW, collector.peek().getEventType());
+        collector.pop();
+        assertSame(second, collector.peek().getLink());
+        collector.pop();
+        assertSame(CUSTOM, collector.peek().getEventType());
+
+        // once popped, a new event for the pair is queued again
+        assertNotNull(collector.put(Event.Type.LINK_FLOW, first));
+        collector.pop();
+        assertSame(first, collector.peek().getLink());
+        assertNull(collector.put(Event.Type.LINK_FLOW, first));
+        collector.pop();
+        assertNull(collector.peek());
+    }
+
+    @Test
+    public void testInterleavedEventsQueuedWithoutCoalescing()
+    {
+        CollectorImpl collector = new CollectorImpl();
+        Connection connection = Connection.Factory.create();
+        Session session = connection.session();
+        Link first = session.sender("first");
+        Link second = session.sender("second");
+        while (collector.peek() != null) {
+            collector.pop();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(collector.put(Event.Type.LINK_FLOW, first));
+            assertNotNull(collector.put(Event.Type.LINK_FLOW, second));
+        }
+
+        int count = 0;
+        while (collector.peek() != null) {
+            collector.pop();
+            count++;
+        }
+        assertEquals(20, count);
+    }
+}
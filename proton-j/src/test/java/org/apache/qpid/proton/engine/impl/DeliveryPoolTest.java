@@ -0,0 +1,251 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.junit.Test;
+
+public class DeliveryPoolTest extends SenderReceiverTestBase
+{
+    @Test
+    public void testPoolDisabledByDefault()
+    {
+        assertEquals(0, clientConnection.getDeliveryPoolSize());
+
+        Delivery delivery = sendAndSettle(new byte[] {1});
+        Delivery next = sender.delivery(new byte[] {2});
+
+        assertNotSame(delivery, next);
+        assertEquals(0, clientConnection.getPooledDeliveryCount());
+    }
+
+    @Test
+    public void testFreedSenderDeliveryIsReused()
+    {
+        clientConnection.setDeliveryPoolSize(4);
+
+        DeliveryImpl delivery = (DeliveryImpl) sendAndSettle(new byte[] {1});
+        assertEquals(1, clientConnection.getPooledDeliveryCount());
+        assertEquals(1, delivery.getGeneration());
+
+        DeliveryImpl next = (DeliveryImpl) sender.delivery(new byte[] {2});
+        assertSame(delivery, next);
+        assertEquals(0, clientConnection.getPooledDeliveryCount());
+        assertEquals(2, next.getTag()[0]);
+        assertEquals(null, next.getLocalState());
+        assertEquals(null, next.getRemoteState());
+        assertTrue(next.isPartial());
+    }
+
+    @Test
+    public void testUseAfterRecycleFails()
+    {
+        clientConnection.setDeliveryPoolSize(1);
+
+        Delivery delivery = sendAndSettle(new byte[] {1});
+
+        try
+        {
+            delivery.getTag();
+            fail("Expected use of a recycled delivery to fail");
+        }
+        catch (IllegalStateException ise)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testStateOfRecycledDeliveryCannotBeRead()
+    {
+        clientConnection.setDeliveryPoolSize(1);
+
+        Delivery delivery = sendAndSettle(new byte[] {1});
+
+        assertRecycled(delivery, new Runnable() { public void run() { delivery.isSettled(); } });
+        assertRecycled(delivery, new Runnable() { public void run() { delivery.getRemoteState(); } });
+        assertRecycled(delivery, new Runnable() { public void run() { delivery.pending(); } });
+        assertRecycled(delivery, new Runnable() { public void run() { delivery.getContext(); } });
+        assertRecycled(delivery, new Runnable() { public void run() { delivery.isPartial(); } });
+    }
+
+    private void assertRecycled(Delivery delivery, Runnable use)
+    {
+        try
+        {
+            use.run();
+            fail("Expected use of a recycled delivery to fail");
+        }
+        catch (IllegalStateException ise)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testOldestPooledDeliveryIsReusedFirst()
+    {
+        clientConnection.setDeliveryPoolSize(2);
+        receiver.flow(2);
+        pump();
+
+        Delivery first = sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        Delivery second = sender.delivery(new byte[] {2});
+        sender.send(new byte[] {2}, 0, 1);
+        sender.advance();
+        pump();
+        while (receiver.current() != null)
+        {
+            Delivery received = receiver.current();
+            receiver.advance();
+            received.disposition(Accepted.getInstance());
+            received.settle();
+        }
+        pump();
+        drainEvents();
+
+        first.free();
+        second.free();
+        pump();
+        assertEquals(2, clientConnection.getPooledDeliveryCount());
+
+        assertSame(first, sender.delivery(new byte[] {3}));
+        assertSame(second, sender.delivery(new byte[] {4}));
+    }
+
+    @Test
+    public void testRecycledReceiverDeliveryDropsUnreadData()
+    {
+        serverConnection.setDeliveryPoolSize(1);
+        receiver.flow(2);
+        pump();
+
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1, 2, 3}, 0, 3);
+        sender.advance();
+        pump();
+
+        // Only part of the payload is read before the delivery is freed
+        Delivery first = receiver.current();
+        assertEquals(1, receiver.recv(new byte[1], 0, 1));
+        receiver.advance();
+        first.settle();
+        first.free();
+        pump();
+        drainEvents();
+        assertEquals(1, serverConnection.getPooledDeliveryCount());
+
+        sender.delivery(new byte[] {2});
+        sender.send(new byte[] {4, 5}, 0, 2);
+        sender.advance();
+        pump();
+
+        Delivery second = receiver.current();
+        assertSame(first, second);
+        assertEquals(2, second.available());
+        byte[] received = new byte[2];
+        assertEquals(2, receiver.recv(received, 0, 2));
+        assertEquals(4, received[0]);
+        assertEquals(5, received[1]);
+    }
+
+    @Test
+    public void testReceiverDeliveryHeldByEventIsNotRecycledUntilPopped()
+    {
+        serverConnection.setDeliveryPoolSize(4);
+        receiver.flow(1);
+        pump();
+
+        Delivery sent = sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1, 2, 3}, 0, 3);
+        sender.advance();
+        pump();
+
+        Event event = nextEvent(Event.Type.DELIVERY);
+        Delivery delivery = event.getDelivery();
+        assertNotNull(delivery);
+        assertSame(receiver, delivery.getLink());
+
+        receiver.recv(new byte[3], 0, 3);
+        receiver.advance();
+        delivery.disposition(Accepted.getInstance());
+        delivery.free();
+
+        // Still pending settlement on the wire and held by the current event
+        assertEquals(0, serverConnection.getPooledDeliveryCount());
+        pump();
+        assertEquals(0, serverConnection.getPooledDeliveryCount());
+
+        serverCollector.pop();
+        assertEquals(1, serverConnection.getPooledDeliveryCount());
+
+        assertTrue(sent.remotelySettled());
+    }
+
+    @Test
+    public void testPoolSizeIsBounded()
+    {
+        clientConnection.setDeliveryPoolSize(1);
+
+        sendAndSettle(new byte[] {1});
+        sendAndSettle(new byte[] {2});
+        assertEquals(1, clientConnection.getPooledDeliveryCount());
+
+        clientConnection.setDeliveryPoolSize(0);
+        assertEquals(0, clientConnection.getPooledDeliveryCount());
+    }
+
+    private Delivery sendAndSettle(byte[] tag)
+    {
+        receiver.flow(1);
+        pump();
+
+        Delivery delivery = sender.delivery(tag);
+        sender.send(new byte[] {1, 2, 3}, 0, 3);
+        sender.advance();
+        pump();
+
+        Delivery received = receiver.current();
+        receiver.recv(new byte[3], 0, 3);
+        receiver.advance();
+        received.disposition(Accepted.getInstance());
+        received.settle();
+        pump();
+        drainEvents();
+
+        assertTrue(delivery.remotelySettled());
+        delivery.free();
+        pump();
+
+        return delivery;
+    }
+}
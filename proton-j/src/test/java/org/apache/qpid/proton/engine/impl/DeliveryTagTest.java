@@ -0,0 +1,166 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Delivery;
+import org.junit.Test;
+
+public class DeliveryTagTest extends SenderReceiverTestBase
+{
+    @Test
+    public void testSliceTagIsSentWithoutCopy()
+    {
+        byte[] buffer = new byte[] {9, 9, 1, 2, 3, 9};
+        receiver.flow(1);
+        pump();
+
+        DeliveryImpl delivery = (DeliveryImpl) sender.delivery(buffer, 2, 3);
+        assertSame(buffer, delivery.getTagBinary().getArray());
+        assertEquals(2, delivery.getTagBinary().getArrayOffset());
+
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        assertArrayEquals(new byte[] {1, 2, 3}, receiver.current().getTag());
+        assertArrayEquals(new byte[] {1, 2, 3}, delivery.getTag());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSliceTagOutOfBounds()
+    {
+        sender.delivery(new byte[2], 1, 2);
+    }
+
+    @Test
+    public void testGeneratedTagsAreCompact()
+    {
+        assertArrayEquals(new byte[] {0}, sender.delivery().getTag());
+        assertArrayEquals(new byte[] {1}, sender.delivery().getTag());
+
+        for (int i = 2; i < 256; i++)
+        {
+            sender.delivery();
+        }
+
+        assertArrayEquals(new byte[] {1, 0}, sender.delivery().getTag());
+    }
+
+    @Test
+    public void testGeneratedTagReusedAfterSettlement()
+    {
+        receiver.flow(2);
+        pump();
+
+        Delivery first = sender.delivery();
+        byte[] firstTag = first.getTag();
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        Delivery received = receiver.current();
+        receiver.advance();
+        received.disposition(Accepted.getInstance());
+        received.settle();
+        pump();
+
+        first.settle();
+        pump();
+
+        Delivery second = sender.delivery();
+        assertSame(firstTag, second.getTag());
+        Delivery third = sender.delivery();
+        assertArrayEquals(new byte[] {1}, third.getTag());
+    }
+
+    @Test
+    public void testGeneratedTagReusedOnceLocalSettlementWritten()
+    {
+        receiver.flow(1);
+        pump();
+
+        Delivery first = sender.delivery();
+        byte[] firstTag = first.getTag();
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        first.disposition(Accepted.getInstance());
+        first.settle();
+        assertArrayEquals(new byte[] {1}, sender.delivery().getTag());
+
+        pump();
+        assertSame(firstTag, sender.delivery().getTag());
+    }
+
+    @Test
+    public void testGeneratedTagReusedWhenPeerSettlesAfterLocalSettle()
+    {
+        receiver.flow(1);
+        pump();
+
+        Delivery first = sender.delivery();
+        byte[] firstTag = first.getTag();
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        first.settle();
+        pump();
+        assertArrayEquals(new byte[] {1}, sender.delivery().getTag());
+
+        Delivery received = receiver.current();
+        received.disposition(Accepted.getInstance());
+        received.settle();
+        pump();
+
+        assertSame(firstTag, sender.delivery().getTag());
+    }
+
+    @Test
+    public void testGeneratedTagReusedAfterPresettledSend()
+    {
+        receiver.flow(1);
+        pump();
+
+        Delivery first = sender.delivery();
+        byte[] firstTag = first.getTag();
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        first.settle();
+        pump();
+
+        assertTrue(receiver.current().remotelySettled());
+        assertSame(firstTag, sender.delivery().getTag());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSliceTagLengthOverflow()
+    {
+        sender.delivery(new byte[2], 1, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static java.util.EnumSet.of;
+import static org.apache.qpid.proton.engine.EndpointState.ACTIVE;
+import static org.apache.qpid.proton.engine.EndpointState.CLOSED;
+import static org.apache.qpid.proton.engine.EndpointState.UNINITIALIZED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Session;
+import org.junit.Test;
+
+public class EndpointStateQueryTest
+{
+    private static List<Link> links(Connection connection, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        List<Link> links = new ArrayList<Link>();
+        for (Link link = connection.linkHead(local, remote); link != null; link = link.next(local, remote))
+        {
+            links.add(link);
+        }
+        return links;
+    }
+
+    @Test
+    public void testLinkQueriesOnlyReturnMatchingLinks()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+
+        List<Link> opened = new ArrayList<Link>();
+        List<Link> idle = new ArrayList<Link>();
+        for (int i = 0; i < 10; i++)
+        {
+            Link link = (i % 2 == 0) ? session.sender("s" + i) : session.receiver("r" + i);
+            if (i % 3 == 0)
+            {
+                link.open();
+                opened.add(link);
+            }
+            else
+            {
+                idle.add(link);
+            }
+        }
+
+        assertEquals(opened, links(connection, of(ACTIVE), of(UNINITIALIZED)));
+        assertEquals(idle, links(connection, of(UNINITIALIZED), null));
+        assertEquals(10, links(connection, null, of(UNINITIALIZED)).size());
+        assertEquals(10, links(connection, null, null).size());
+        assertNull(connection.linkHead(of(CLOSED), null));
+    }
+
+    @Test
+    public void testLinkQueriesFollowStateChanges()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        Link first = session.sender("first");
+        Link second = session.sender("second");
+
+        second.open();
+        first.open();
+        assertEquals(2, links(connection, of(ACTIVE), null).size());
+        assertSame(first, connection.linkHead(of(ACTIVE), null));
+
+        second.close();
+        assertSame(first, connection.linkHead(of(ACTIVE), null));
+        assertSame(second, connection.linkHead(of(CLOSED), null));
+
+        ((LinkImpl) first).setRemoteState(ACTIVE);
+        assertNull(connection.linkHead(of(ACTIVE), of(UNINITIALIZED)));
+        assertSame(first, connection.linkHead(of(ACTIVE), of(ACTIVE)));
+
+        first.free();
+        assertNull(connection.linkHead(of(ACTIVE), null));
+    }
+
+    @Test
+    public void testClosingEachLinkWhileIterating()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 5; i++)
+        {
+            Link link = session.receiver("r" + i);
+            link.open();
+            created.add(link);
+        }
+
+        List<Link> visited = new ArrayList<Link>();
+        Link link = connection.linkHead(of(ACTIVE), null);
+        while (link != null)
+        {
+            visited.add(link);
+            link.close();
+            link = link.next(of(ACTIVE), null);
+        }
+
+        assertEquals(created, visited);
+        assertEquals(created, links(connection, of(CLOSED), null));
+    }
+
+    @Test
+    public void testChangingStatesWhileIteratingVisitsEachLinkOnce()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 6; i++)
+        {
+            Link link = session.sender("s" + i);
+            if (i % 2 == 0)
+            {
+                link.open();
+            }
+            created.add(link);
+        }
+
+        // Each visited link moves to a state that is still matched by the walk
+        EnumSet<EndpointState> local = of(UNINITIALIZED, ACTIVE);
+        List<Link> visited = new ArrayList<Link>();
+        for (Link link = connection.linkHead(local, null); link != null; link = link.next(local, null))
+        {
+            visited.add(link);
+            if (link.getLocalState() == UNINITIALIZED)
+            {
+                link.open();
+            }
+            else
+            {
+                ((LinkImpl) link).setRemoteState(ACTIVE);
+            }
+            // Changing a link not visited yet must not make the walk skip or repeat it
+            created.get(created.size() - 1).open();
+        }
+
+        assertEquals(created, visited);
+    }
+
+    @Test
+    public void testOpeningLinksWhileIteratingOverIdleLinks()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 4; i++)
+        {
+            created.add(session.receiver("r" + i));
+        }
+
+        List<Link> visited = new ArrayList<Link>();
+        for (Link link = connection.linkHead(of(UNINITIALIZED), null); link != null; link = link.next(of(UNINITIALIZED), null))
+        {
+            visited.add(link);
+            link.open();
+        }
+
+        assertEquals(created, visited);
+        assertNull(connection.linkHead(of(UNINITIALIZED), null));
+        assertEquals(created, links(connection, of(ACTIVE), null));
+    }
+
+    @Test
+    public void testLinksEnteringStatesOutOfOrderAreReturnedInCreationOrder()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 8; i++)
+        {
+            created.add(session.sender("s" + i));
+        }
+
+        for (int i : new int[] {5, 2, 7, 0, 3, 6, 1, 4})
+        {
+            created.get(i).open();
+        }
+
+        assertEquals(created, links(connection, of(ACTIVE), null));
+        assertSame(created.get(3), created.get(2).next(of(ACTIVE), null));
+    }
+
+    @Test
+    public void testFreeingEachLinkWhileIterating()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 5; i++)
+        {
+            Link link = session.receiver("r" + i);
+            link.open();
+            created.add(link);
+        }
+
+        List<Link> visited = new ArrayList<Link>();
+        Link link = connection.linkHead(of(ACTIVE), null);
+        while (link != null)
+        {
+            visited.add(link);
+            link.free();
+            link = link.next(of(ACTIVE), null);
+        }
+
+        assertEquals(created, visited);
+        assertNull(connection.linkHead(of(ACTIVE), null));
+    }
+
+    @Test
+    public void testNestedWalks()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<Link> created = new ArrayList<Link>();
+        for (int i = 0; i < 6; i++)
+        {
+            Link link = session.sender("s" + i);
+            link.open();
+            created.add(link);
+        }
+
+        List<Link> visited = new ArrayList<Link>();
+        for (Link link = connection.linkHead(of(ACTIVE), null); link != null; link = link.next(of(ACTIVE), null))
+        {
+            visited.add(link);
+            assertEquals(created, links(connection, of(ACTIVE), null));
+        }
+
+        assertEquals(created, visited);
+    }
+
+    @Test
+    public void testWalksWithRandomStateChangesMatchLinearScan()
+    {
+        Random random = new Random(7);
+        EndpointState[] states = EndpointState.values();
+        ConnectionImpl connection = new ConnectionImpl();
+        Session session = connection.session();
+        List<LinkImpl> created = new ArrayList<LinkImpl>();
+        for (int i = 0; i < 40; i++)
+        {
+            created.add((LinkImpl) session.sender("s" + i));
+        }
+
+        for (int round = 0; round < 200; round++)
+        {
+            EnumSet<EndpointState> local = random.nextBoolean() ? null : of(states[random.nextInt(states.length)]);
+            EnumSet<EndpointState> remote = of(states[random.nextInt(states.length)], states[random.nextInt(states.length)]);
+
+            Link link = connection.linkHead(local, remote);
+            assertSame(scan(created, -1, local, remote), link);
+            while (link != null)
+            {
+                // Move a few links, including the current one, before stepping on
+                for (int i = 0; i < 3; i++)
+                {
+                    LinkImpl moved = random.nextInt(4) == 0 ? (LinkImpl) link : created.get(random.nextInt(created.size()));
+                    moved.setLocalState(states[random.nextInt(states.length)]);
+                    moved.setRemoteState(states[random.nextInt(states.length)]);
+                }
+
+                Link next = link.next(local, remote);
+                assertSame(scan(created, created.indexOf(link), local, remote), next);
+                link = next;
+            }
+        }
+    }
+
+    private static Link scan(List<LinkImpl> created, int after, EnumSet<EndpointState> local, EnumSet<EndpointState> remote)
+    {
+        for (int i = after + 1; i < created.size(); i++)
+        {
+            Link link = created.get(i);
+            if ((local == null || local.contains(link.getLocalState())) && remote.contains(link.getRemoteState()))
+            {
+                return link;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSessionQueries()
+    {
+        ConnectionImpl connection = new ConnectionImpl();
+        Session first = connection.session();
+        Session second = connection.session();
+        Session third = connection.session();
+
+        second.open();
+        third.open();
+        ((SessionImpl) third).setRemoteState(ACTIVE);
+
+        assertSame(first, connection.sessionHead(of(UNINITIALIZED), null));
+        assertNull(first.next(of(UNINITIALIZED), null));
+        assertSame(second, connection.sessionHead(of(ACTIVE), null));
+        assertSame(third, second.next(of(ACTIVE), null));
+        assertSame(third, connection.sessionHead(null, of(ACTIVE)));
+        assertSame(second, first.next(null, null));
+    }
+}
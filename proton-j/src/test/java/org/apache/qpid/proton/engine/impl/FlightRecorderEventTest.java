@@ -0,0 +1,189 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Records the engine's Flight Recorder events, where available. The recording API is reached
+ * reflectively as the tests are built for Java 8.
+ */
+public class FlightRecorderEventTest extends SenderReceiverTestBase
+{
+    private static Class<?> recordingClass;
+
+    private Object recording;
+
+    @Before
+    @Override
+    public void setUp() throws Exception
+    {
+        startRecording();
+        super.setUp();
+    }
+
+    @BeforeClass
+    public static void checkAvailable() throws Exception
+    {
+        assumeTrue(FlightRecorderEvent.isAvailable());
+        assertFalse(FlightRecorderEvent.CONNECTION_OPEN.isEnabled());
+        // Nothing is defined with the Flight Recorder until a recording starts
+        assertFalse(FlightRecorderEvent.isRegistered());
+
+        recordingClass = Class.forName("jdk.jfr.Recording");
+    }
+
+    @After
+    public void closeRecording() throws Exception
+    {
+        recordingClass.getMethod("close").invoke(recording);
+    }
+
+    private void startRecording() throws Exception
+    {
+        recording = recordingClass.getConstructor().newInstance();
+        Method enable = recordingClass.getMethod("enable", String.class);
+        for (FlightRecorderEvent event : new FlightRecorderEvent[] {FlightRecorderEvent.FRAMES_PARSED,
+                                                                     FlightRecorderEvent.FRAMES_WRITTEN,
+                                                                     FlightRecorderEvent.REACTOR_ITERATION})
+        {
+            Object settings = enable.invoke(recording, event.getName());
+            settings.getClass().getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+        }
+        recordingClass.getMethod("start").invoke(recording);
+        assertTrue(FlightRecorderEvent.isRegistered());
+    }
+
+    private List<String> stopRecording() throws Exception
+    {
+        recordingClass.getMethod("stop").invoke(recording);
+        Path file = Files.createTempFile("proton", ".jfr");
+        try
+        {
+            recordingClass.getMethod("dump", Path.class).invoke(recording, file);
+
+            Class<?> recordedEvent = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            Method getEventType = recordedEvent.getMethod("getEventType");
+            Method getName = Class.forName("jdk.jfr.EventType").getMethod("getName");
+            Method getValue = recordedEvent.getMethod("getValue", String.class);
+
+            List<String> events = new ArrayList<>();
+            List<?> recorded = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class).invoke(null, file);
+            for (Object event : recorded)
+            {
+                String name = (String) getName.invoke(getEventType.invoke(event));
+                if (name.equals(FlightRecorderEvent.LINK_ATTACH.getName()))
+                {
+                    name += ":" + getValue.invoke(event, "name");
+                }
+                else if (name.equals(FlightRecorderEvent.FLOW_STALL.getName()))
+                {
+                    name += ":" + getValue.invoke(event, "cause");
+                }
+                events.add(name);
+            }
+            return events;
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEngineEventsRecorded() throws Exception
+    {
+        assertTrue(FlightRecorderEvent.CONNECTION_OPEN.isEnabled());
+
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        receiver.flow(1);
+        pump();
+
+        sender.close();
+        pump();
+        clientConnection.close();
+        serverConnection.close();
+        pump();
+
+        Reactor reactor = Proton.reactor();
+        reactor.run();
+
+        List<String> events = stopRecording();
+        assertFalse(FlightRecorderEvent.CONNECTION_OPEN.isEnabled());
+
+        assertEquals(2, count(events, FlightRecorderEvent.CONNECTION_OPEN.getName()));
+        assertEquals(2, count(events, FlightRecorderEvent.CONNECTION_CLOSE.getName()));
+        assertEquals(2, count(events, FlightRecorderEvent.LINK_ATTACH.getName() + ":sender"));
+        assertEquals(1, count(events, FlightRecorderEvent.LINK_DETACH.getName()));
+        assertEquals(1, count(events, FlightRecorderEvent.FLOW_STALL.getName() + ":credit"));
+        assertTrue(count(events, FlightRecorderEvent.FRAMES_PARSED.getName()) > 0);
+        assertTrue(count(events, FlightRecorderEvent.FRAMES_WRITTEN.getName()) > 0);
+        assertTrue(count(events, FlightRecorderEvent.REACTOR_ITERATION.getName()) > 0);
+    }
+
+    @Test
+    public void testFailureToRecordDisablesEvent() throws Exception
+    {
+        FlightRecorderEvent event = new FlightRecorderEvent("Broken", "Broken", "Engine", null, int.class, "value");
+        assertTrue(event.isEnabled());
+
+        // The wrong type of value is rejected by the Flight Recorder, but must not reach the caller
+        event.emit("not an int");
+        assertFalse(event.isEnabled());
+        assertNull(event.begin());
+    }
+
+    private static int count(List<String> events, String name)
+    {
+        int count = 0;
+        for (String event : events)
+        {
+            if (event.equals(name))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.MemoryBudget;
+import org.apache.qpid.proton.engine.MemoryUsage;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.junit.Test;
+
+public class MemoryBudgetTest extends SenderReceiverTestBase
+{
+    private static final int PAYLOAD_SIZE = 2000;
+
+    private void send(byte tag)
+    {
+        sender.delivery(new byte[] {tag});
+        sender.send(new byte[PAYLOAD_SIZE], 0, PAYLOAD_SIZE);
+        sender.advance();
+    }
+
+    private void receive()
+    {
+        Delivery delivery = receiver.current();
+        byte[] buffer = new byte[PAYLOAD_SIZE];
+        assertEquals(PAYLOAD_SIZE, receiver.recv(buffer, 0, buffer.length));
+        delivery.settle();
+        receiver.advance();
+    }
+
+    @Test
+    public void testMemoryUsageCountsDeliveryBytes()
+    {
+        send((byte) 1);
+        pump();
+
+        MemoryUsage client = clientTransport.getMemoryUsage();
+        assertEquals(PAYLOAD_SIZE, client.getOutgoingDeliveryBytes());
+        assertEquals(0, client.getIncomingDeliveryBytes());
+        assertTrue(client.getParserBytes() > 0);
+        assertTrue(client.getWriterBytes() > 0);
+        assertEquals(0, client.getSslBytes());
+
+        receiver.flow(1);
+        pump();
+
+        assertEquals(0, clientTransport.getMemoryUsage().getOutgoingDeliveryBytes());
+        MemoryUsage server = serverTransport.getMemoryUsage();
+        assertEquals(PAYLOAD_SIZE, server.getIncomingDeliveryBytes());
+        assertEquals(server.getIncomingDeliveryBytes() + server.getParserBytes() + server.getWriterBytes(),
+                     server.getTotal());
+
+        receive();
+        assertEquals(0, serverTransport.getMemoryUsage().getIncomingDeliveryBytes());
+    }
+
+    @Test
+    public void testExceededBudgetWithholdsCreditAndInput()
+    {
+        MemoryBudget budget = new MemoryBudget(serverTransport.getMemoryUsage().getTotal() + PAYLOAD_SIZE / 2);
+        serverTransport.setMemoryBudget(budget);
+        assertFalse(budget.isExceeded());
+        assertTrue(serverTransport.capacity() > 0);
+
+        receiver.flow(1);
+        pump();
+        send((byte) 1);
+        pump();
+
+        assertEquals(0, sender.getCredit());
+        assertEquals(0, serverTransport.capacity());
+        assertTrue(budget.isExceeded());
+
+        receiver.flow(1);
+        pump();
+        assertEquals("credit should be withheld while over budget", 0, sender.getCredit());
+
+        receive();
+        pump();
+        assertFalse(budget.isExceeded());
+        assertEquals(1, sender.getCredit());
+        assertTrue(serverTransport.capacity() > 0);
+    }
+
+    @Test
+    public void testSharedBudgetReleasedOnUnbind()
+    {
+        MemoryBudget budget = new MemoryBudget(1024 * 1024);
+        clientTransport.setMemoryBudget(budget);
+        serverTransport.setMemoryBudget(budget);
+
+        long expected = clientTransport.getMemoryUsage().getTotal() + serverTransport.getMemoryUsage().getTotal();
+        assertEquals(expected, budget.getUsed());
+
+        serverTransport.unbind();
+        assertNull(serverTransport.getMemoryBudget());
+        assertEquals(clientTransport.getMemoryUsage().getTotal(), budget.getUsed());
+
+        clientTransport.setMemoryBudget(null);
+        assertEquals(0, budget.getUsed());
+    }
+
+    @Test
+    public void testReceivingReleasesBudgetWithoutProcessing()
+    {
+        MemoryBudget budget = new MemoryBudget(1024 * 1024);
+        serverTransport.setMemoryBudget(budget);
+
+        receiver.flow(1);
+        pump();
+        send((byte) 1);
+        pump();
+        long used = budget.getUsed();
+        assertEquals(serverTransport.getMemoryUsage().getTotal(), used);
+
+        receive();
+        assertEquals(used - PAYLOAD_SIZE, budget.getUsed());
+    }
+
+    @Test
+    public void testListenersNotifiedWhenUsageFallsWithinLimit()
+    {
+        final AtomicInteger notified = new AtomicInteger();
+        MemoryBudget budget = new MemoryBudget(100);
+        budget.addListener(new MemoryBudget.Listener()
+        {
+            @Override
+            public void budgetAvailable(MemoryBudget budget)
+            {
+                notified.incrementAndGet();
+            }
+        });
+
+        budget.adjust(150);
+        budget.adjust(-20);
+        assertEquals(0, notified.get());
+
+        budget.adjust(-30);
+        assertFalse(budget.isExceeded());
+        assertEquals(1, notified.get());
+
+        budget.adjust(-50);
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    public void testStalledTransportWokenWhenSharedBudgetReleased() throws Exception
+    {
+        Reactor reactor = Proton.reactor();
+        ((TransportImpl) serverTransport).setReactor(reactor);
+
+        MemoryBudget budget = new MemoryBudget(serverTransport.getMemoryUsage().getTotal() + PAYLOAD_SIZE / 2);
+        serverTransport.setMemoryBudget(budget);
+
+        // Memory held by another transport sharing the budget
+        budget.adjust(PAYLOAD_SIZE);
+        receiver.flow(1);
+        pump();
+        assertEquals(0, sender.getCredit());
+        assertEquals(0, serverTransport.capacity());
+        drainEvents();
+
+        budget.adjust(-PAYLOAD_SIZE);
+        reactor.process();
+
+        boolean woken = false;
+        for (Event event = serverCollector.peek(); event != null; event = serverCollector.peek())
+        {
+            woken |= event.getType() == Event.Type.TRANSPORT && event.getTransport() == serverTransport;
+            serverCollector.pop();
+        }
+        assertTrue("the transport should be updated on its reactor", woken);
+
+        pump();
+        assertEquals(1, sender.getCredit());
+        assertTrue(serverTransport.capacity() > 0);
+        reactor.free();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositiveLimitRejected()
+    {
+        new MemoryBudget(0);
+    }
+}
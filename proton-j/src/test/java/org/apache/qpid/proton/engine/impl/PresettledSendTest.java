@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.qpid.proton.codec.ReadableBuffer;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Transport;
+import org.junit.Test;
+
+public class PresettledSendTest extends SenderReceiverTestBase
+{
+    private static final int MAX_FRAME_SIZE = 1024;
+
+    @Override
+    protected void configure(Transport client, Transport server)
+    {
+        server.setMaxFrameSize(MAX_FRAME_SIZE);
+    }
+
+    @Test
+    public void testSendPresettled()
+    {
+        receiver.flow(2);
+        pump();
+        assertEquals(2, sender.getCredit());
+
+        ReadableBuffer payload = ReadableBuffer.ByteBufferReader.wrap(new byte[] {1, 2, 3});
+        assertTrue(sender.sendPresettled(payload));
+        assertFalse(payload.hasRemaining());
+        assertEquals(1, sender.getCredit());
+        assertNull(sender.current());
+        assertNull(clientConnection.getTransportWorkHead());
+
+        pump();
+
+        Delivery delivery = receiver.current();
+        assertNotNull(delivery);
+        assertTrue(delivery.remotelySettled());
+        assertFalse(delivery.isPartial());
+
+        byte[] received = new byte[3];
+        assertEquals(3, receiver.recv(received, 0, 3));
+        assertArrayEquals(new byte[] {1, 2, 3}, received);
+        receiver.advance();
+        delivery.settle();
+
+        assertTrue(sender.sendPresettled(ReadableBuffer.ByteBufferReader.wrap(new byte[] {4})));
+        pump();
+        assertNotNull(receiver.current());
+        assertEquals(1, receiver.current().available());
+    }
+
+    @Test
+    public void testSendPresettledWithoutCredit()
+    {
+        ReadableBuffer payload = ReadableBuffer.ByteBufferReader.wrap(new byte[] {1});
+        assertFalse(sender.sendPresettled(payload));
+        assertTrue(payload.hasRemaining());
+    }
+
+    @Test
+    public void testSendPresettledWithQueuedDelivery()
+    {
+        receiver.flow(2);
+        pump();
+
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1}, 0, 1);
+
+        assertFalse(sender.sendPresettled(ReadableBuffer.ByteBufferReader.wrap(new byte[] {2})));
+    }
+
+    @Test
+    public void testSendPresettledPayloadLargerThanFrame()
+    {
+        receiver.flow(1);
+        pump();
+
+        assertEquals(MAX_FRAME_SIZE, clientTransport.getRemoteMaxFrameSize());
+        byte[] large = new byte[MAX_FRAME_SIZE];
+        assertFalse(sender.sendPresettled(ReadableBuffer.ByteBufferReader.wrap(large)));
+        assertEquals(1, sender.getCredit());
+
+        ReadableBuffer fits = ReadableBuffer.ByteBufferReader.wrap(new byte[MAX_FRAME_SIZE / 2]);
+        assertTrue(sender.sendPresettled(fits));
+        pump();
+        assertEquals(MAX_FRAME_SIZE / 2, receiver.current().available());
+    }
+
+    @Test
+    public void testSendPresettledPayloadFillingFrame()
+    {
+        receiver.flow(2);
+        pump();
+
+        // A small Transfer performative leaves room for nearly a whole frame of payload
+        byte[] nearlyFrame = new byte[MAX_FRAME_SIZE - 64];
+        assertTrue(sender.sendPresettled(ReadableBuffer.ByteBufferReader.wrap(nearlyFrame)));
+        assertFalse(sender.sendPresettled(ReadableBuffer.ByteBufferReader.wrap(new byte[MAX_FRAME_SIZE - 8])));
+        assertEquals(1, sender.getCredit());
+        pump();
+
+        Delivery delivery = receiver.current();
+        assertEquals(nearlyFrame.length, delivery.available());
+        assertFalse(delivery.isPartial());
+    }
+
+    @Test
+    public void testSendPresettledAfterConnectionClosed()
+    {
+        receiver.flow(2);
+        pump();
+
+        // Closing the connection neither ends the session nor detaches the link
+        clientConnection.close();
+        pump();
+
+        assertEquals(2, sender.getCredit());
+        ReadableBuffer payload = ReadableBuffer.ByteBufferReader.wrap(new byte[] {1});
+        assertFalse(sender.sendPresettled(payload));
+        assertTrue(payload.hasRemaining());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.RecordAccessor;
+import org.apache.qpid.proton.engine.RecordSlot;
+import org.junit.Test;
+
+public class RecordImplTest
+{
+    private static final RecordSlot<String> NAME = new RecordSlot<String>(String.class);
+
+    @Test
+    public void testHandlerKeyAndAccessorShareSlot()
+    {
+        RecordImpl record = new RecordImpl();
+        Handler handler = new BaseHandler();
+
+        record.set(Handler.class, Handler.class, handler);
+        assertSame(handler, RecordSlot.HANDLER.get(record));
+        assertSame(handler, BaseHandler.getHandler(record));
+
+        RecordSlot.HANDLER.set(record, null);
+        assertNull(record.get(Handler.class, Handler.class));
+    }
+
+    @Test
+    public void testSlotIsARecordAccessor()
+    {
+        RecordImpl record = new RecordImpl();
+        RecordAccessor<String> accessor = NAME;
+
+        accessor.set(record, "value");
+        assertEquals("value", accessor.get(record));
+        assertEquals("value", record.get(NAME, String.class));
+    }
+
+    @Test
+    public void testSlottedAndKeyedValues()
+    {
+        RecordImpl record = new RecordImpl();
+        assertNull(NAME.get(record));
+        assertNull(record.get("key", String.class));
+
+        NAME.set(record, "slotted");
+        record.set("key", String.class, "keyed");
+
+        assertEquals("slotted", NAME.get(record));
+        assertEquals("slotted", record.get(NAME, String.class));
+        assertEquals("keyed", record.get("key", String.class));
+
+        RecordImpl copy = new RecordImpl();
+        copy.copy(record);
+        assertEquals("slotted", NAME.get(copy));
+        assertEquals("keyed", copy.get("key", String.class));
+
+        record.clear();
+        assertNull(NAME.get(record));
+        assertNull(record.get("key", String.class));
+    }
+
+    @Test
+    public void testAccessorsBeyondSlotLimitUseMap()
+    {
+        RecordImpl record = new RecordImpl();
+        RecordSlot<Integer> last = null;
+        for (int i = 0; i <= RecordSlot.MAX_SLOTS; i++) {
+            last = new RecordSlot<Integer>(Integer.class);
+        }
+        assertEquals(-1, last.getSlot());
+
+        last.set(record, 42);
+        assertEquals(Integer.valueOf(42), last.get(record));
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testGetChecksType()
+    {
+        RecordImpl record = new RecordImpl();
+        record.set(NAME, Object.class, Integer.valueOf(1));
+        NAME.get(record);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.systemtests.engine.TransportPumper;
+import org.junit.Before;
+
+/**
+ * Base for tests that need a client sender attached to a server receiver over a pair of transports.
+ */
+public abstract class SenderReceiverTestBase
+{
+    protected ConnectionImpl clientConnection;
+    protected ConnectionImpl serverConnection;
+    protected Transport clientTransport;
+    protected Transport serverTransport;
+    protected Collector serverCollector;
+    protected Sender sender;
+    protected Receiver receiver;
+
+    private TransportPumper pumper;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        clientConnection = (ConnectionImpl) Proton.connection();
+        serverConnection = (ConnectionImpl) Proton.connection();
+        serverCollector = Proton.collector();
+        serverConnection.collect(serverCollector);
+
+        clientTransport = Proton.transport();
+        clientTransport.bind(clientConnection);
+        serverTransport = Proton.transport();
+        serverTransport.bind(serverConnection);
+        configure(clientTransport, serverTransport);
+        pumper = new TransportPumper(clientTransport, serverTransport);
+
+        clientConnection.open();
+        Session clientSession = clientConnection.session();
+        clientSession.open();
+        sender = clientSession.sender("sender");
+        sender.setTarget(new Target());
+        sender.setSource(new Source());
+        sender.open();
+        pump();
+
+        serverConnection.open();
+        Session serverSession = serverConnection.sessionHead(null, null);
+        serverSession.open();
+        Link link = serverConnection.linkHead(null, null);
+        receiver = (Receiver) link;
+        receiver.setTarget(link.getRemoteTarget());
+        receiver.setSource(link.getRemoteSource());
+        receiver.open();
+        pump();
+
+        assertEquals(EndpointState.ACTIVE, sender.getRemoteState());
+        drainEvents();
+    }
+
+    /**
+     * Called once the transports are bound, before the connections are opened.
+     */
+    protected void configure(Transport client, Transport server)
+    {
+    }
+
+    protected void pump()
+    {
+        pumper.pumpAll();
+    }
+
+    protected Event nextEvent(Event.Type type)
+    {
+        Event event;
+        while ((event = serverCollector.peek()) != null)
+        {
+            if (event.getType() == type)
+            {
+                return event;
+            }
+            serverCollector.pop();
+        }
+
+        fail("No event of type " + type);
+        return null;
+    }
+
+    protected void drainEvents()
+    {
+        while (serverCollector.peek() != null)
+        {
+            serverCollector.pop();
+        }
+    }
+}
@@ -1064,6 +1064,247 @@ public class TransportImplTest
         doSessionIncomingWindowTestImpl(true, true);
     }
 
+    @Test
+    public void testReceiverDeliveryCountAndTransferIdsWrapAround()
+    {
+        MockTransportImpl transport = new MockTransportImpl();
+        Connection connection = Proton.connection();
+        transport.bind(connection);
+        connection.open();
+        transport.handleFrame(new TransportFrame(0, new Open(), null));
+
+        Session session = connection.session();
+        session.open();
+        String linkName = "myReceiver";
+        Receiver receiver = session.receiver(linkName);
+        receiver.open();
+
+        pumpMockTransport(transport);
+
+        UnsignedInteger last = UnsignedInteger.valueOf(0xFFFFFFFFL);
+
+        Begin beginResponse = new Begin();
+        beginResponse.setRemoteChannel(UnsignedShort.valueOf((short) 0));
+        beginResponse.setNextOutgoingId(last);
+        beginResponse.setIncomingWindow(UnsignedInteger.valueOf(1024));
+        beginResponse.setOutgoingWindow(UnsignedInteger.valueOf(1024));
+        transport.handleFrame(new TransportFrame(0, beginResponse, null));
+
+        Attach attach = new Attach();
+        attach.setHandle(UnsignedInteger.ZERO);
+        attach.setRole(Role.SENDER);
+        attach.setName(linkName);
+        attach.setInitialDeliveryCount(last);
+        transport.handleFrame(new TransportFrame(0, attach, null));
+
+        receiver.flow(2);
+        pumpMockTransport(transport);
+
+        Flow sentFlow = (Flow) transport.writes.get(transport.writes.size() - 1);
+        assertEquals("Unexpected delivery count", last, sentFlow.getDeliveryCount());
+        assertEquals("Unexpected next incoming id", last, sentFlow.getNextIncomingId());
+
+        handleTransfer(transport, 1, "tag1", "content1");
+        verifyDelivery(receiver, "tag1", "content1");
+
+        receiver.flow(1);
+        pumpMockTransport(transport);
+
+        sentFlow = (Flow) transport.writes.get(transport.writes.size() - 1);
+        assertEquals("Unexpected delivery count", UnsignedInteger.ZERO, sentFlow.getDeliveryCount());
+        assertEquals("Unexpected next incoming id", UnsignedInteger.ZERO, sentFlow.getNextIncomingId());
+        assertEquals("Unexpected link credit", UnsignedInteger.valueOf(2), sentFlow.getLinkCredit());
+    }
+
+    @Test
+    public void testFlowReplenishThresholdDefersSmallCreditTopUps()
+    {
+        MockTransportImpl transport = new MockTransportImpl();
+        transport.setFlowReplenishThreshold(5);
+        assertEquals(5, transport.getFlowReplenishThreshold());
+
+        Connection connection = Proton.connection();
+        transport.bind(connection);
+        connection.open();
+        transport.handleFrame(new TransportFrame(0, new Open(), null));
+
+        Session session = connection.session();
+        session.open();
+        String linkName = "myReceiver";
+        Receiver receiver = session.receiver(linkName);
+        receiver.open();
+
+        pumpMockTransport(transport);
+
+        Begin beginResponse = new Begin();
+        beginResponse.setRemoteChannel(UnsignedShort.valueOf((short) 0));
+        beginResponse.setNextOutgoingId(UnsignedInteger.ONE);
+        beginResponse.setIncomingWindow(UnsignedInteger.valueOf(1024));
+        beginResponse.setOutgoingWindow(UnsignedInteger.valueOf(1024));
+        transport.handleFrame(new TransportFrame(0, beginResponse, null));
+
+        Attach attach = new Attach();
+        attach.setHandle(UnsignedInteger.ZERO);
+        attach.setRole(Role.SENDER);
+        attach.setName(linkName);
+        attach.setInitialDeliveryCount(UnsignedInteger.ZERO);
+        transport.handleFrame(new TransportFrame(0, attach, null));
+
+        // The peer has no credit yet, so even a small grant goes out
+        receiver.flow(10);
+        pumpMockTransport(transport);
+
+        int writes = transport.writes.size();
+        Flow sentFlow = (Flow) transport.writes.get(writes - 1);
+        assertEquals("Unexpected link credit", UnsignedInteger.valueOf(10), sentFlow.getLinkCredit());
+
+        // Small top-ups are held back while the peer has plenty of credit left
+        handleTransfer(transport, 1, "tag1", "content1");
+        verifyDelivery(receiver, "tag1", "content1");
+        receiver.flow(1);
+        handleTransfer(transport, 2, "tag2", "content2");
+        verifyDelivery(receiver, "tag2", "content2");
+        receiver.flow(1);
+        pumpMockTransport(transport);
+
+        assertEquals("Unexpected frames written: " + getFrameTypesWritten(transport), writes, transport.writes.size());
+
+        // Once the pending credit reaches the threshold it is sent in one Flow
+        for (int i = 3; i <= 5; i++) {
+            String tag = "tag" + i;
+            handleTransfer(transport, i, tag, "content");
+            verifyDelivery(receiver, tag, "content");
+            receiver.flow(1);
+        }
+        pumpMockTransport(transport);
+
+        assertEquals("Unexpected frames written: " + getFrameTypesWritten(transport), writes + 1, transport.writes.size());
+        sentFlow = (Flow) transport.writes.get(writes);
+        assertEquals("Unexpected delivery count", UnsignedInteger.valueOf(5), sentFlow.getDeliveryCount());
+        assertEquals("Unexpected link credit", UnsignedInteger.valueOf(10), sentFlow.getLinkCredit());
+
+        // A top-up held back is released when the outstanding credit falls below the threshold
+        writes = transport.writes.size();
+        for (int i = 6; i <= 10; i++) {
+            String tag = "tag" + i;
+            handleTransfer(transport, i, tag, "content");
+            verifyDelivery(receiver, tag, "content");
+        }
+        receiver.flow(1);
+        pumpMockTransport(transport);
+        assertEquals("Unexpected frames written: " + getFrameTypesWritten(transport), writes, transport.writes.size());
+
+        handleTransfer(transport, 11, "tag11", "content");
+        verifyDelivery(receiver, "tag11", "content");
+        pumpMockTransport(transport);
+
+        assertEquals("Unexpected frames written: " + getFrameTypesWritten(transport), writes + 1, transport.writes.size());
+        sentFlow = (Flow) transport.writes.get(writes);
+        assertEquals("Unexpected delivery count", UnsignedInteger.valueOf(11), sentFlow.getDeliveryCount());
+        assertEquals("Unexpected link credit", UnsignedInteger.valueOf(5), sentFlow.getLinkCredit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFlowReplenishThresholdRejectsNegative()
+    {
+        new TransportImpl().setFlowReplenishThreshold(-1);
+    }
+
+    @Test
+    public void testLocalHandlesAreReusedAfterDetach()
+    {
+        MockTransportImpl transport = new MockTransportImpl();
+        Connection connection = Proton.connection();
+        transport.bind(connection);
+        connection.open();
+        transport.handleFrame(new TransportFrame(0, new Open(), null));
+
+        Session session = connection.session();
+        session.open();
+        Sender first = session.sender("first");
+        first.open();
+        Sender second = session.sender("second");
+        second.open();
+        pumpMockTransport(transport);
+
+        Begin begin = new Begin();
+        begin.setRemoteChannel(UnsignedShort.valueOf((short) 0));
+        begin.setNextOutgoingId(UnsignedInteger.ONE);
+        begin.setIncomingWindow(UnsignedInteger.valueOf(1024));
+        begin.setOutgoingWindow(UnsignedInteger.valueOf(1024));
+        transport.handleFrame(new TransportFrame(0, begin, null));
+
+        List<Attach> attaches = new ArrayList<>();
+        for (FrameBody frame : transport.writes) {
+            if (frame instanceof Attach) {
+                attaches.add((Attach) frame);
+            }
+        }
+        assertEquals(2, attaches.size());
+        assertEquals(UnsignedInteger.ZERO, attaches.get(0).getHandle());
+        assertEquals(UnsignedInteger.ONE, attaches.get(1).getHandle());
+
+        // Remote attaches can use any handle up to handle-max
+        Attach attach = new Attach();
+        attach.setHandle(UnsignedInteger.valueOf(60000));
+        attach.setRole(Role.RECEIVER);
+        attach.setName("first");
+        transport.handleFrame(new TransportFrame(0, attach, null));
+        assertEndpointState(first, EndpointState.ACTIVE, EndpointState.ACTIVE);
+
+        first.close();
+        pumpMockTransport(transport);
+
+        Detach detach = new Detach();
+        detach.setHandle(UnsignedInteger.valueOf(60000));
+        detach.setClosed(true);
+        transport.handleFrame(new TransportFrame(0, detach, null));
+        assertEndpointState(first, EndpointState.CLOSED, EndpointState.CLOSED);
+
+        Sender third = session.sender("third");
+        third.open();
+        pumpMockTransport(transport);
+
+        Attach lastAttach = (Attach) transport.writes.get(transport.writes.size() - 1);
+        assertEquals("third", lastAttach.getName());
+        assertEquals("Expected the freed handle to be reused", UnsignedInteger.ZERO, lastAttach.getHandle());
+    }
+
+    @Test
+    public void testRemoteAttachBeyondHandleMaxClosesConnection()
+    {
+        MockTransportImpl transport = new MockTransportImpl();
+        Connection connection = Proton.connection();
+        transport.bind(connection);
+        connection.open();
+        transport.handleFrame(new TransportFrame(0, new Open(), null));
+
+        Session session = connection.session();
+        session.open();
+        pumpMockTransport(transport);
+
+        Begin begin = new Begin();
+        begin.setRemoteChannel(UnsignedShort.valueOf((short) 0));
+        begin.setNextOutgoingId(UnsignedInteger.ONE);
+        begin.setIncomingWindow(UnsignedInteger.valueOf(1024));
+        begin.setOutgoingWindow(UnsignedInteger.valueOf(1024));
+        transport.handleFrame(new TransportFrame(0, begin, null));
+
+        Attach attach = new Attach();
+        attach.setHandle(UnsignedInteger.valueOf(65536));
+        attach.setRole(Role.RECEIVER);
+        attach.setName("beyond-handle-max");
+        transport.handleFrame(new TransportFrame(0, attach, null));
+
+        assertNull("No link should have been created", connection.linkHead(null, null));
+        assertEquals(EndpointState.CLOSED, connection.getLocalState());
+        assertEquals(ConnectionError.FRAMING_ERROR, connection.getCondition().getCondition());
+
+        FrameBody last = transport.writes.get(transport.writes.size() - 1);
+        assertTrue("Unexpected frame type", last instanceof Close);
+        assertEquals(ConnectionError.FRAMING_ERROR, ((Close) last).getError().getCondition());
+    }
+
     private void doSessionIncomingWindowTestImpl(boolean setFrameSize, boolean setSessionCapacity) {
         MockTransportImpl transport;
         if(setFrameSize) {
@@ -0,0 +1,120 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.TransportMetrics;
+import org.apache.qpid.proton.engine.TransportMetrics.Performative;
+import org.junit.Test;
+
+public class TransportMetricsTest extends SenderReceiverTestBase
+{
+    @Test
+    public void testDeliveryCounters()
+    {
+        receiver.flow(1);
+        pump();
+
+        Delivery sent = sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1, 2, 3}, 0, 3);
+        sender.advance();
+        pump();
+
+        Delivery received = receiver.current();
+        received.disposition(Accepted.getInstance());
+        received.settle();
+        pump();
+        assertTrue(sent.remotelySettled());
+
+        TransportMetrics client = clientTransport.getMetrics();
+        TransportMetrics server = serverTransport.getMetrics();
+
+        assertEquals(1, client.getDeliveriesSent());
+        assertEquals(1, client.getDeliveriesSettled());
+        assertEquals(1, client.getSettleLatencyCount());
+        long histogramTotal = 0;
+        for (long count : client.getSettleLatencyHistogram())
+        {
+            histogramTotal += count;
+        }
+        assertEquals(1, histogramTotal);
+        assertEquals(1, server.getDeliveriesReceived());
+        assertEquals(0, server.getDeliveriesAborted());
+
+        assertEquals(1, client.getFramesOutput(Performative.TRANSFER));
+        assertEquals(1, server.getFramesInput(Performative.TRANSFER));
+        assertEquals(1, client.getFramesInput(Performative.DISPOSITION));
+        assertEquals(client.getFramesOutput(), server.getFramesInput());
+        assertEquals(server.getFramesOutput(), client.getFramesInput());
+        assertEquals(client.getBytesOutput(), server.getBytesInput());
+        assertEquals(server.getBytesOutput(), client.getBytesInput());
+        assertTrue(client.getOutputBufferHighWaterMark() > 0);
+    }
+
+    @Test
+    public void testCreditStallCountedOncePerStall()
+    {
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[] {1}, 0, 1);
+        sender.advance();
+        pump();
+
+        sender.delivery(new byte[] {2});
+        sender.send(new byte[] {2}, 0, 1);
+        sender.advance();
+        pump();
+
+        TransportMetrics client = clientTransport.getMetrics();
+        assertEquals(1, client.getCreditStalls());
+        assertEquals(0, client.getDeliveriesSent());
+
+        receiver.flow(2);
+        pump();
+        assertEquals(2, client.getDeliveriesSent());
+        assertEquals(1, client.getCreditStalls());
+    }
+
+    @Test
+    public void testPerformativeClassification()
+    {
+        assertEquals(Performative.FLOW, TransportMetricsImpl.performative(new Flow()));
+        assertEquals(Performative.TRANSFER, TransportMetricsImpl.performative(new Transfer()));
+        assertEquals(Performative.EMPTY, TransportMetricsImpl.performative(null));
+    }
+
+    @Test
+    public void testSettleLatencyBuckets()
+    {
+        assertEquals(0, TransportMetricsImpl.settleLatencyBucket(0));
+        assertEquals(0, TransportMetricsImpl.settleLatencyBucket(999));
+        assertEquals(1, TransportMetricsImpl.settleLatencyBucket(1000));
+        assertEquals(2, TransportMetricsImpl.settleLatencyBucket(2000));
+        assertEquals(2, TransportMetricsImpl.settleLatencyBucket(3999));
+        assertEquals(11, TransportMetricsImpl.settleLatencyBucket(1024000));
+        assertEquals(TransportMetrics.SETTLE_LATENCY_BUCKETS - 1, TransportMetricsImpl.settleLatencyBucket(Long.MAX_VALUE));
+    }
+}
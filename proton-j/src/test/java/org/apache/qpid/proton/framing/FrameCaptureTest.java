@@ -0,0 +1,184 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.framing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Begin;
+import org.apache.qpid.proton.amqp.transport.Open;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.apache.qpid.proton.engine.ProtonJTransport;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.engine.impl.SenderReceiverTestBase;
+import org.apache.qpid.proton.framing.FrameCaptureReader.CapturedFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FrameCaptureTest extends SenderReceiverTestBase
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FrameCapture capture = FrameCapture.inMemory(64, 128);
+
+    @Override
+    protected void configure(Transport client, Transport server)
+    {
+        ((ProtonJTransport) client).setFrameCapture(capture);
+        ((ProtonJTransport) server).setFrameCapture(capture);
+    }
+
+    private List<CapturedFrame> read(FrameCapture capture) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        capture.writeTo(out);
+        return new FrameCaptureReader().read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private List<CapturedFrame> frames(List<CapturedFrame> frames, int connection, boolean outgoing)
+    {
+        List<CapturedFrame> selected = new ArrayList<>();
+        for (CapturedFrame frame : frames)
+        {
+            if (frame.getConnection() == connection && frame.isOutgoing() == outgoing)
+            {
+                selected.add(frame);
+            }
+        }
+        return selected;
+    }
+
+    private void send(int length)
+    {
+        receiver.flow(1);
+        pump();
+        sender.delivery(new byte[] {1});
+        sender.send(new byte[length], 0, length);
+        sender.advance();
+        pump();
+    }
+
+    @Test
+    public void testCapturesFramesInBothDirections() throws IOException
+    {
+        send(10);
+
+        List<CapturedFrame> frames = read(capture);
+        List<CapturedFrame> clientOut = frames(frames, 1, true);
+        List<CapturedFrame> serverIn = frames(frames, 2, false);
+
+        assertEquals(clientTransport.getFramesOutput(), clientOut.size());
+        assertEquals(clientOut.size(), serverIn.size());
+        assertTrue(clientOut.get(0).getBody() instanceof Open);
+        assertTrue(clientOut.get(1).getBody() instanceof Begin);
+        assertTrue(clientOut.get(2).getBody() instanceof Attach);
+
+        CapturedFrame sent = clientOut.get(clientOut.size() - 1);
+        CapturedFrame received = serverIn.get(serverIn.size() - 1);
+        assertTrue(sent.getBody() instanceof Transfer);
+        assertTrue(received.getBody() instanceof Transfer);
+        assertFalse(sent.isTruncated());
+        assertEquals(10, sent.getPayload().getLength());
+        assertEquals(sent.getFrameSize(), received.getFrameSize());
+        assertEquals(sent.getPayload(), received.getPayload());
+        assertTrue(sent.getSequence() < received.getSequence());
+        assertTrue(sent.getTimestamp() <= received.getTimestamp());
+    }
+
+    @Test
+    public void testSnapLengthTruncatesPayload() throws IOException
+    {
+        send(1000);
+
+        List<CapturedFrame> clientOut = frames(read(capture), 1, true);
+        CapturedFrame transfer = clientOut.get(clientOut.size() - 1);
+
+        assertTrue(transfer.getBody() instanceof Transfer);
+        assertTrue(transfer.isTruncated());
+        assertTrue(transfer.getFrameSize() > 1000);
+        assertTrue(transfer.getPayload().getLength() < 128);
+    }
+
+    @Test
+    public void testRingKeepsMostRecentFrames() throws IOException
+    {
+        FrameCapture small = FrameCapture.inMemory(3, 64);
+        ((ProtonJTransport) clientTransport).setFrameCapture(small);
+
+        send(10);
+        send(10);
+
+        List<CapturedFrame> frames = read(small);
+        assertEquals(3, frames.size());
+        assertEquals(small.getCapturedFrames() - 1, frames.get(2).getSequence());
+        assertEquals(small.getCapturedFrames() - 3, frames.get(0).getSequence());
+    }
+
+    @Test
+    public void testSampleInterval() throws IOException
+    {
+        FrameCapture sampled = FrameCapture.inMemory(64, 64);
+        sampled.setSampleInterval(2);
+        ((ProtonJTransport) clientTransport).setFrameCapture(sampled);
+
+        long framesBefore = clientTransport.getFramesInput() + clientTransport.getFramesOutput();
+        send(10);
+        send(10);
+        long frames = clientTransport.getFramesInput() + clientTransport.getFramesOutput() - framesBefore;
+
+        assertEquals((frames + 1) / 2, sampled.getCapturedFrames());
+    }
+
+    @Test
+    public void testMappedCaptureIsReadableFromFile() throws IOException
+    {
+        File file = folder.newFile("frames.cap");
+        FrameCapture mapped = FrameCapture.mapped(file, 16, FrameCapture.DEFAULT_SNAP_LENGTH);
+        ((ProtonJTransport) serverTransport).setFrameCapture(mapped);
+
+        send(10);
+        mapped.flush();
+
+        List<CapturedFrame> frames = new FrameCaptureReader().read(file);
+        assertEquals(mapped.getCapturedFrames(), frames.size());
+        CapturedFrame transfer = frames(frames, 1, false).get(frames(frames, 1, false).size() - 1);
+        assertNotNull(transfer.getBody());
+        assertTrue(transfer.getBody() instanceof Transfer);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReaderRejectsOtherFiles() throws IOException
+    {
+        new FrameCaptureReader().read(ByteBuffer.allocate(64));
+    }
+}
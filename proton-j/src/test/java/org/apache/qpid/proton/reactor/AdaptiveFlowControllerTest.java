@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.impl.CollectorImpl;
+import org.apache.qpid.proton.engine.impl.SenderReceiverTestBase;
+import org.junit.Test;
+
+public class AdaptiveFlowControllerTest extends SenderReceiverTestBase {
+
+    private static final int INITIAL_WINDOW = 8 * 1024;
+    private static final int MIN_WINDOW = 1024;
+    private static final int MAX_WINDOW = 64 * 1024;
+
+    private final AdaptiveFlowController controller =
+        new AdaptiveFlowController(INITIAL_WINDOW, MIN_WINDOW, MAX_WINDOW, 100);
+
+    @Override
+    protected void drainEvents() {
+        Event event;
+        while ((event = serverCollector.peek()) != null) {
+            event.dispatch(controller);
+            serverCollector.pop();
+        }
+    }
+
+    @Test
+    public void testInitialCreditAndSessionCapacity() {
+        AdaptiveFlowController.LinkMetrics metrics = AdaptiveFlowController.getMetrics(receiver);
+        assertNotNull(metrics);
+        assertEquals(INITIAL_WINDOW, metrics.getWindow());
+        assertEquals(INITIAL_WINDOW / 1024, metrics.getCreditTarget());
+        assertEquals(metrics.getCreditTarget(), receiver.getCredit());
+        assertEquals(metrics.getCreditTarget(), metrics.getGrantedCredit());
+        assertEquals(INITIAL_WINDOW, receiver.getSession().getIncomingCapacity());
+
+        pump();
+        assertEquals(metrics.getCreditTarget(), sender.getCredit());
+    }
+
+    @Test
+    public void testCreditFollowsMessageSize() {
+        AdaptiveFlowController.LinkMetrics metrics = AdaptiveFlowController.getMetrics(receiver);
+
+        send(1, 4096);
+        assertEquals(4096, metrics.getAverageMessageSize());
+        assertEquals(4096, metrics.getObservedBytes());
+        assertEquals(2, metrics.getCreditTarget());
+
+        // Credit already granted is not revoked
+        consume(1);
+        assertEquals(1, metrics.getAdvancedCredit());
+        assertEquals(INITIAL_WINDOW / 1024, metrics.getGrantedCredit());
+
+        send(sender.getCredit(), 4096);
+        consume(receiver.getQueued());
+        assertEquals(metrics.getCreditTarget(), receiver.getCredit());
+        assertTrue(receiver.getCredit() < INITIAL_WINDOW / 1024);
+    }
+
+    @Test
+    public void testAdvancedCreditIgnoresMessagesNotAdvancedPast() {
+        AdaptiveFlowController.LinkMetrics metrics = AdaptiveFlowController.getMetrics(receiver);
+
+        send(3, 1024);
+        assertEquals(3, receiver.getQueued());
+        assertEquals(0, metrics.getAdvancedCredit());
+
+        consume(3);
+        assertEquals(3, metrics.getAdvancedCredit());
+    }
+
+    @Test
+    public void testWindowGrowsWhenConsumerKeepsUp() {
+        AdaptiveFlowController.LinkMetrics metrics = AdaptiveFlowController.getMetrics(receiver);
+
+        for (int i = 0; i < 20; i++) {
+            send(sender.getCredit(), 1024);
+            consume(receiver.getQueued());
+        }
+
+        assertTrue(metrics.getIncreases() > 0);
+        assertEquals(0, metrics.getDecreases());
+        assertTrue(metrics.getWindow() > INITIAL_WINDOW);
+        assertEquals(metrics.getWindow(), receiver.getSession().getIncomingCapacity());
+        assertEquals(metrics.getGrantedCredit(), metrics.getAdvancedCredit() + receiver.getCredit());
+    }
+
+    @Test
+    public void testWindowShrinksWithBacklog() {
+        AdaptiveFlowController.LinkMetrics metrics = AdaptiveFlowController.getMetrics(receiver);
+
+        for (int i = 0; i < 10; i++) {
+            send(sender.getCredit(), 1024);
+            consume(2);
+        }
+
+        assertTrue(metrics.getDecreases() > 0);
+        assertTrue(metrics.getWindow() < INITIAL_WINDOW);
+        assertTrue(receiver.getCredit() <= INITIAL_WINDOW / 1024);
+    }
+
+    private void send(int count, int size) {
+        for (int i = 0; i < count; i++) {
+            sender.delivery(new byte[] {(byte) i});
+            sender.send(new byte[size], 0, size);
+            sender.advance();
+        }
+        pump();
+        drainEvents();
+    }
+
+    private void consume(int count) {
+        for (int i = 0; i < count && receiver.current() != null; i++) {
+            receiver.current().settle();
+            receiver.advance();
+        }
+
+        // In a reactor the controller sees the event the application consumed the messages in
+        ((CollectorImpl) serverCollector).put(Event.Type.LINK_FLOW, receiver);
+        drainEvents();
+        pump();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.TimeoutException;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockingClientTest {
+
+    private static final int SERVER_MESSAGES = 5;
+    private static final String CLOSING_ADDRESS = "closing";
+
+    private ReactorGroup server;
+    private int port;
+    private final AtomicInteger serverReceived = new AtomicInteger();
+
+    // Accepts every message sent to it and sends a fixed number of messages to
+    // any receiver that attaches.
+    private class ServerHandler extends BaseHandler {
+        private int sent;
+
+        @Override
+        public void onLinkFlow(Event event) {
+            if (event.getLink() instanceof Sender) {
+                Sender sender = (Sender) event.getLink();
+                while (sender.getCredit() > 0 && sent < SERVER_MESSAGES) {
+                    Message message = Message.Factory.create();
+                    message.setBody(new AmqpValue("message-" + sent));
+                    byte[] buffer = new byte[1024];
+                    int length = message.encode(buffer, 0, buffer.length);
+                    Delivery delivery = sender.delivery(String.valueOf(sent++).getBytes());
+                    sender.send(buffer, 0, length);
+                    sender.advance();
+                    delivery.settle();
+                }
+            }
+        }
+
+        @Override
+        public void onLinkRemoteOpen(Event event) {
+            Source source = (Source) event.getLink().getRemoteSource();
+            if (source != null && CLOSING_ADDRESS.equals(source.getAddress())) {
+                event.getConnection().close();
+            }
+        }
+
+        @Override
+        public void onDelivery(Event event) {
+            Delivery delivery = event.getDelivery();
+            if (delivery.getLink() instanceof Receiver && !delivery.isPartial()) {
+                Receiver receiver = (Receiver) delivery.getLink();
+                receiver.recv(new byte[delivery.pending()], 0, delivery.pending());
+                receiver.advance();
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+                serverReceived.incrementAndGet();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = ReactorGroup.Factory.create(1);
+        Reactor reactor = server.getReactor(0);
+        reactor.getHandler().add(new Handshaker());
+        reactor.getHandler().add(new FlowController());
+        reactor.getHandler().add(new ServerHandler());
+        port = ((AcceptorImpl) server.acceptor("127.0.0.1", 0, null)).getPortNumber();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        server.awaitTermination(10, TimeUnit.SECONDS);
+        server.free();
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentBlockingSends() throws Exception {
+        final BlockingClient client = new BlockingClient(2);
+        final BlockingConnection connection = client.connect("127.0.0.1", port);
+        final BlockingSender sender = connection.openSender("queue");
+
+        final int threads = 20;
+        final int messagesPerThread = 10;
+        final List<DeliveryState> outcomes = Collections.synchronizedList(new ArrayList<DeliveryState>());
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            started.add(client.startThread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < messagesPerThread; ++j) {
+                        Message message = Message.Factory.create();
+                        message.setBody(new AmqpValue(j));
+                        outcomes.add(sender.send(message));
+                    }
+                }
+            }));
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+
+        assertEquals(threads * messagesPerThread, outcomes.size());
+        for (DeliveryState outcome : outcomes) {
+            assertTrue("Unexpected outcome " + outcome, outcome instanceof Accepted);
+        }
+        assertEquals(threads * messagesPerThread, serverReceived.get());
+
+        sender.close();
+        connection.close();
+        client.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testBlockingReceive() throws Exception {
+        BlockingClient client = new BlockingClient(1);
+        BlockingConnection connection = client.connect("127.0.0.1", port);
+        BlockingReceiver receiver = connection.openReceiver("queue", 2);
+
+        for (int i = 0; i < SERVER_MESSAGES; ++i) {
+            Message message = receiver.receive();
+            assertEquals("message-" + i, ((AmqpValue) message.getBody()).getValue());
+        }
+        assertNull(receiver.receive(50));
+
+        receiver.close();
+        connection.close();
+        client.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testRemoteCloseEndsReceiverNormally() throws Exception {
+        BlockingClient client = new BlockingClient(1);
+        BlockingConnection connection = client.connect("127.0.0.1", port);
+        BlockingReceiver receiver = connection.openReceiver(CLOSING_ADDRESS, 1);
+
+        // any messages that arrived before the close are still received, then receive
+        // returns null straight away rather than failing or waiting out its timeout
+        long start = System.currentTimeMillis();
+        while (receiver.receive(30000) != null) {
+        }
+        assertTrue(System.currentTimeMillis() - start < 30000);
+        assertNull(receiver.receive(30000));
+
+        connection.close();
+        client.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testOpenTimeoutClosesConnection() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+            BlockingClient client = new BlockingClient(1);
+            client.setTimeout(200);
+            try {
+                client.connect("127.0.0.1", silent.getLocalPort());
+                fail("Expected the open to time out");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+
+            // The peer never answers, once the open times out the client drops the socket
+            try (Socket socket = silent.accept()) {
+                socket.setSoTimeout(10000);
+                InputStream in = socket.getInputStream();
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) {
+                }
+            }
+            client.close();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testTimedOutSendIsNotSentOnceCreditArrives() throws Exception {
+        // A server that grants no credit until told to
+        ReactorGroup stalled = ReactorGroup.Factory.create(1);
+        final AtomicReference<Receiver> receiver = new AtomicReference<Receiver>();
+        Reactor reactor = stalled.getReactor(0);
+        reactor.getHandler().add(new Handshaker());
+        reactor.getHandler().add(new ServerHandler());
+        reactor.getHandler().add(new BaseHandler() {
+            @Override
+            public void onLinkRemoteOpen(Event event) {
+                if (event.getLink() instanceof Receiver) {
+                    receiver.set((Receiver) event.getLink());
+                }
+            }
+        });
+        int stalledPort = ((AcceptorImpl) stalled.acceptor("127.0.0.1", 0, null)).getPortNumber();
+        stalled.start();
+        try {
+            BlockingClient client = new BlockingClient(1);
+            BlockingConnection connection = client.connect("127.0.0.1", stalledPort);
+            BlockingSender sender = connection.openSender("queue");
+
+            Message message = Message.Factory.create();
+            message.setBody(new AmqpValue("abandoned"));
+            try {
+                sender.send(message, 200);
+                fail("Expected the send to time out");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+
+            stalled.execute(0, new Runnable() {
+                @Override
+                public void run() {
+                    receiver.get().flow(2);
+                }
+            });
+
+            message.setBody(new AmqpValue("sent"));
+            assertTrue(sender.send(message, 10000) instanceof Accepted);
+            assertEquals(1, serverReceived.get());
+
+            connection.close();
+            client.close();
+        } finally {
+            stalled.stop();
+            stalled.awaitTermination(10, TimeUnit.SECONDS);
+            stalled.free();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.proton.reactor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Event.Type;
+import org.apache.qpid.proton.reactor.impl.AcceptorImpl;
+import org.junit.Test;
+
+public class ReactorGroupTest {
+
+    private static class ServerHandler extends BaseHandler {
+        private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+        private final AtomicInteger opened = new AtomicInteger();
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            threads.add(Thread.currentThread().getName());
+            opened.incrementAndGet();
+            event.getConnection().open();
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            event.getConnection().close();
+        }
+    }
+
+    private static class ClientHandler extends BaseHandler {
+        private int closed;
+
+        @Override
+        public void onConnectionInit(Event event) {
+            event.getConnection().open();
+        }
+
+        @Override
+        public void onConnectionRemoteOpen(Event event) {
+            event.getConnection().close();
+        }
+
+        @Override
+        public void onConnectionRemoteClose(Event event) {
+            closed++;
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testAcceptedConnectionsAreSpreadOverReactors() throws Exception {
+        ReactorGroup group = ReactorGroup.Factory.create(2);
+        ServerHandler[] handlers = new ServerHandler[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            handlers[i] = new ServerHandler();
+            group.getReactor(i).getHandler().add(handlers[i]);
+        }
+
+        AcceptorImpl acceptor = (AcceptorImpl) group.acceptor("127.0.0.1", 0, null);
+        int port = acceptor.getPortNumber();
+        group.start();
+
+        Reactor client = Proton.reactor();
+        ClientHandler clientHandler = new ClientHandler();
+        final int connections = 4;
+        for (int i = 0; i < connections; ++i) {
+            client.connectionToHost("127.0.0.1", port, clientHandler);
+        }
+        client.run();
+        client.free();
+
+        assertEquals(connections, clientHandler.closed);
+
+        for (int i = 0; i < group.size(); ++i) {
+            assertEquals(connections / group.size(), handlers[i].opened.get());
+            assertEquals(Collections.singleton("proton-reactor-" + i), handlers[i].threads);
+        }
+
+        group.stop();
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        group.free();
+    }
+
+    @Test(timeout = 30000)
+    public void testLeastConnectionsSpreadsBurstOfAccepts() throws Exception {
+        ReactorGroup group = ReactorGroup.Factory.create(2, new ReactorOptions(), ReactorGroup.Balancing.LEAST_CONNECTIONS);
+        ServerHandler[] handlers = new ServerHandler[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            handlers[i] = new ServerHandler();
+            group.getReactor(i).getHandler().add(handlers[i]);
+        }
+
+        AcceptorImpl acceptor = (AcceptorImpl) group.acceptor("127.0.0.1", 0, null);
+        int port = acceptor.getPortNumber();
+        group.start();
+
+        // every connection stays open until all are, so none is finalised during the burst
+        final int connections = 8;
+        final List<Connection> opened = new ArrayList<Connection>();
+        Reactor client = Proton.reactor();
+        BaseHandler clientHandler = new BaseHandler() {
+            @Override
+            public void onConnectionInit(Event event) {
+                event.getConnection().open();
+            }
+
+            @Override
+            public void onConnectionRemoteOpen(Event event) {
+                opened.add(event.getConnection());
+                if (opened.size() == connections) {
+                    for (Connection connection : opened) {
+                        connection.close();
+                    }
+                }
+            }
+        };
+        for (int i = 0; i < connections; ++i) {
+            client.connectionToHost("127.0.0.1", port, clientHandler);
+        }
+        client.run();
+        client.free();
+
+        assertEquals(connections, opened.size());
+        for (int i = 0; i < group.size(); ++i) {
+            assertEquals(connections / group.size(), handlers[i].opened.get());
+        }
+
+        group.stop();
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        group.free();
+    }
+
+    @Test(timeout = 30000)
+    public void testExecuteRunsOnReactorThread() throws Exception {
+        ReactorGroup group = ReactorGroup.Factory.create(3);
+        group.start();
+
+        final CountDownLatch done = new CountDownLatch(group.size());
+        final String[] names = new String[group.size()];
+        for (int i = 0; i < group.size(); ++i) {
+            final int index = i;
+            group.execute(i, new Runnable() {
+                @Override
+                public void run() {
+                    names[index] = Thread.currentThread().getName();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < group.size(); ++i) {
+            assertEquals("proton-reactor-" + i, names[i]);
+        }
+
+        group.stop();
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        group.free();
+    }
+
+    @Test(timeout = 30000)
+    public void testLeastConnectionsBalancing() throws Exception {
+        final ReactorGroup group = ReactorGroup.Factory.create(2, new ReactorOptions(), ReactorGroup.Balancing.LEAST_CONNECTIONS);
+        group.start();
+
+        final CountDownLatch created = new CountDownLatch(1);
+        group.execute(0, new Runnable() {
+            @SuppressWarnings("deprecation")
+            @Override
+            public void run() {
+                Connection connection = group.getReactor(0).connection(new BaseHandler());
+                connection.setHostname("127.0.0.1:1");
+                created.countDown();
+            }
+        });
+        assertTrue(created.await(10, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (group.getConnectionCount(0) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, group.getConnectionCount(0));
+        assertEquals(1, group.next());
+
+        group.stop();
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        group.free();
+    }
+
+    @Test(timeout = 30000)
+    public void testConnectionsCountedWhenInterestExcludesConnectionEvents() throws Exception {
+        final ReactorGroup group = ReactorGroup.Factory.create(1, new ReactorOptions(), ReactorGroup.Balancing.LEAST_CONNECTIONS);
+        group.getReactor(0).collector().setInterest(EnumSet.of(Type.REACTOR_INIT));
+        group.start();
+
+        final CountDownLatch created = new CountDownLatch(1);
+        group.execute(0, new Runnable() {
+            @SuppressWarnings("deprecation")
+            @Override
+            public void run() {
+                Connection connection = group.getReactor(0).connection(new BaseHandler());
+                connection.setHostname("127.0.0.1:1");
+                created.countDown();
+            }
+        });
+        assertTrue(created.await(10, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (group.getConnectionCount(0) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, group.getConnectionCount(0));
+
+        group.stop();
+        assertTrue(group.awaitTermination(10, TimeUnit.SECONDS));
+        group.free();
+    }
+}
@@ -33,6 +33,7 @@ import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 
 import junit.framework.AssertionFailedError;
@@ -149,6 +150,16 @@ public class ReactorTest {
         testHandler.assertEvents(Type.REACTOR_INIT, Type.SELECTABLE_INIT, Type.SELECTABLE_UPDATED, Type.SELECTABLE_FINAL, Type.REACTOR_FINAL);
     }
 
+    @Test
+    public void handlerRunWithCollectorInterest() throws IOException {
+        reactor.collector().setInterest(EnumSet.of(Type.REACTOR_INIT));
+        TestHandler testHandler = new TestHandler();
+        reactor.getHandler().add(testHandler);
+        reactor.run();
+        reactor.free();
+        testHandler.assertEvents(Type.REACTOR_INIT, Type.SELECTABLE_INIT, Type.SELECTABLE_UPDATED, Type.SELECTABLE_FINAL, Type.REACTOR_FINAL);
+    }
+
     /**
      * Tests basic operation of the Reactor.connection method by creating a
      * connection from a reactor, then running the reactor.  The expected behaviour
@@ -488,6 +499,30 @@ public class ReactorTest {
         taskHandler.assertEvents(Type.TIMER_TASK);
     }
 
+    @Test(timeout = 30000)
+    public void executeFromAnotherThread() throws Exception {
+        final Task task = reactor.schedule(60000, new TestHandler());
+        final Thread[] executedOn = new Thread[1];
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reactor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        executedOn[0] = Thread.currentThread();
+                        task.cancel();
+                    }
+                });
+            }
+        });
+        producer.start();
+        // The reactor only finishes once the executed task has cancelled the timer.
+        reactor.run();
+        reactor.free();
+        producer.join();
+        assertSame(Thread.currentThread(), executedOn[0]);
+    }
+
     @Test
     public void scheduleWithEqualDeadline() throws IOException {
         final int count = 10;
@@ -0,0 +1,190 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.impl.CollectorImpl;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.ReactorOptions;
+import org.apache.qpid.proton.reactor.SlowHandlerReport;
+import org.junit.Test;
+
+public class HandlerWatchdogTest {
+
+    private final List<SlowHandlerReport> reports = new CopyOnWriteArrayList<>();
+
+    private Reactor reactor(long threshold) throws IOException {
+        ReactorOptions options = new ReactorOptions();
+        options.setSlowHandlerThreshold(threshold);
+        options.setSlowHandlerListener(reports::add);
+        return Proton.reactor(options);
+    }
+
+    @Test
+    public void testBlockingHandlerReportedWithStack() throws IOException {
+        Reactor reactor = reactor(50);
+        Handler blocking = new BaseHandler() {
+            @Override
+            public void onTimerTask(Event event) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        reactor.schedule(0, blocking);
+        reactor.run();
+        reactor.free();
+
+        assertEquals(1, reports.size());
+        SlowHandlerReport report = reports.get(0);
+        assertEquals(Event.Type.TIMER_TASK, report.getEventType());
+        assertSame(blocking, report.getHandler());
+        assertTrue(report.getElapsedMillis() >= 50);
+        assertNotNull("Blocked handler should have been sampled", report.getStackTrace());
+        boolean sleeping = false;
+        for (StackTraceElement element : report.getStackTrace()) {
+            sleeping |= element.getMethodName().equals("onTimerTask");
+        }
+        assertTrue(sleeping);
+
+        assertEquals(1, reactor.getStatistics().getSlowHandlers());
+        assertEquals(1, reactor.getStatistics().getSlowHandlers(Event.Type.TIMER_TASK));
+    }
+
+    @Test
+    public void testFastHandlersNotReported() throws IOException {
+        Reactor reactor = reactor(1000);
+        reactor.schedule(0, new BaseHandler());
+        reactor.schedule(10, new BaseHandler());
+        reactor.run();
+        reactor.free();
+
+        assertTrue(reports.isEmpty());
+        assertEquals(0, reactor.getStatistics().getSlowHandlers());
+    }
+
+    @Test
+    public void testIdleReactorNotReported() throws IOException {
+        Reactor reactor = reactor(50);
+        // Nothing to do but wait in the selector for well past the threshold
+        reactor.schedule(500, new BaseHandler());
+        reactor.run();
+        reactor.free();
+
+        assertTrue("Unexpected reports " + reports, reports.isEmpty());
+        assertEquals(0, reactor.getStatistics().getSlowHandlers());
+    }
+
+    @Test
+    public void testBlockingChildHandlerReported() throws IOException {
+        Reactor reactor = reactor(50);
+        Handler blocking = new SleepingHandler(500);
+        Handler parent = new BaseHandler();
+        parent.add(new BaseHandler());
+        parent.add(blocking);
+        reactor.schedule(0, parent);
+        reactor.run();
+        reactor.free();
+
+        assertEquals(1, reports.size());
+        SlowHandlerReport report = reports.get(0);
+        assertSame(blocking, report.getHandler());
+        assertNotNull(report.getStackTrace());
+    }
+
+    @Test
+    public void testSlowestHandlerReportedOnceFinished() {
+        HandlerWatchdog watchdog = new HandlerWatchdog(50, reports::add, new ReactorStatisticsImpl());
+        Handler slow = new SleepingHandler(100);
+        Handler parent = new SleepingHandler(10);
+        parent.add(new SleepingHandler(10));
+        parent.add(slow);
+
+        // Not polling, so the report is made once the handlers have finished
+        watchdog.dispatch(timerEvent(watchdog), parent);
+
+        assertEquals(1, reports.size());
+        SlowHandlerReport report = reports.get(0);
+        assertSame(slow, report.getHandler());
+        assertTrue(report.getElapsedMillis() >= 120);
+        assertNull(report.getStackTrace());
+    }
+
+    @Test
+    public void testPollingStartsAndStops() {
+        HandlerWatchdog watchdog = new HandlerWatchdog(20, reports::add, new ReactorStatisticsImpl());
+        Handler blocking = new SleepingHandler(200);
+
+        watchdog.dispatch(timerEvent(watchdog), blocking);
+        watchdog.start();
+        watchdog.dispatch(timerEvent(watchdog), blocking);
+        watchdog.stop();
+        watchdog.dispatch(timerEvent(watchdog), blocking);
+
+        assertEquals(3, reports.size());
+        assertNull(reports.get(0).getStackTrace());
+        assertNotNull(reports.get(1).getStackTrace());
+        assertNull(reports.get(2).getStackTrace());
+    }
+
+    private static Event timerEvent(HandlerWatchdog watchdog) {
+        CollectorImpl collector = new CollectorImpl();
+        collector.setHandlerTracer(watchdog);
+        return collector.put(Event.Type.TIMER_TASK, new TaskImpl(0, 0));
+    }
+
+    private static class SleepingHandler extends BaseHandler {
+        private final long millis;
+
+        SleepingHandler(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void onTimerTask(Event event) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThresholdRejected() {
+        new ReactorOptions().setSlowHandlerThreshold(-1);
+    }
+}
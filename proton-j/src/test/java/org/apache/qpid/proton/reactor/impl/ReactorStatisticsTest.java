@@ -0,0 +1,129 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Reactor;
+import org.apache.qpid.proton.reactor.ReactorOptions;
+import org.apache.qpid.proton.reactor.ReactorStatistics;
+import org.junit.Test;
+
+public class ReactorStatisticsTest {
+
+    private static long sum(long[] histogram) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, ReactorStatisticsImpl.bucket(0));
+        assertEquals(1, ReactorStatisticsImpl.bucket(1));
+        assertEquals(2, ReactorStatisticsImpl.bucket(2));
+        assertEquals(2, ReactorStatisticsImpl.bucket(3));
+        assertEquals(11, ReactorStatisticsImpl.bucket(1024));
+        assertEquals(ReactorStatistics.HISTOGRAM_BUCKETS - 1, ReactorStatisticsImpl.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testLoopStatistics() throws IOException {
+        ReactorOptions options = new ReactorOptions();
+        options.setStatisticsEnabled(true);
+        Reactor reactor = Proton.reactor(options);
+        reactor.schedule(20, new BaseHandler());
+        reactor.run();
+
+        ReactorStatistics statistics = reactor.getStatistics();
+        assertTrue(statistics.getIterations() > 0);
+        assertEquals(statistics.getIterations(), sum(statistics.getEventsPerIterationHistogram()));
+
+        assertEquals(1, statistics.getDispatchCount(Event.Type.REACTOR_INIT));
+        assertEquals(1, statistics.getDispatchCount(Event.Type.TIMER_TASK));
+        assertEquals(1, sum(statistics.getDispatchHistogram(Event.Type.TIMER_TASK)));
+        assertEquals(0, statistics.getDispatchCount(Event.Type.CONNECTION_INIT));
+
+        assertEquals(1, statistics.getTimerTasks());
+        assertEquals(1, sum(statistics.getTimerLagHistogram()));
+
+        assertTrue(statistics.getSelects() > 0);
+        assertEquals(statistics.getSelects(), sum(statistics.getSelectWaitHistogram()));
+        assertTrue(statistics.getSelectWaitTotalNanos() > 0);
+        assertTrue(statistics.getExpiredSelectables() > 0);
+        reactor.free();
+    }
+
+    @Test
+    public void testQuiescedDispatchExcludesSelectWait() throws IOException {
+        ReactorOptions options = new ReactorOptions();
+        options.setStatisticsEnabled(true);
+        Reactor reactor = Proton.reactor(options);
+        reactor.schedule(300, new BaseHandler());
+        reactor.run();
+
+        // The reactor spends nearly all of its time idle in the selector
+        ReactorStatistics statistics = reactor.getStatistics();
+        long selectWait = statistics.getSelectWaitTotalNanos();
+        assertTrue(selectWait >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(statistics.getDispatchCount(Event.Type.REACTOR_QUIESCED) > 0);
+        assertTrue(statistics.getDispatchTotalNanos(Event.Type.REACTOR_QUIESCED) < selectWait / 2);
+        reactor.free();
+    }
+
+    @Test
+    public void testStatisticsDisabledByDefault() throws IOException {
+        Reactor reactor = Proton.reactor();
+        reactor.schedule(0, new BaseHandler());
+        reactor.run();
+
+        ReactorStatistics statistics = reactor.getStatistics();
+        assertEquals(0, statistics.getIterations());
+        assertEquals(0, statistics.getSelects());
+        assertEquals(0, statistics.getDispatchCount(Event.Type.TIMER_TASK));
+        reactor.free();
+    }
+
+    @Test
+    public void testStatisticsExporter() throws IOException {
+        final AtomicInteger exports = new AtomicInteger();
+        ReactorOptions options = new ReactorOptions();
+        options.setStatisticsExportInterval(1);
+        options.setStatisticsExporter(statistics -> exports.incrementAndGet());
+        Reactor reactor = Proton.reactor(options);
+        reactor.schedule(20, new BaseHandler());
+        reactor.run();
+
+        assertTrue(exports.get() > 0);
+        assertTrue(reactor.getStatistics().getIterations() > 0);
+        reactor.free();
+    }
+}
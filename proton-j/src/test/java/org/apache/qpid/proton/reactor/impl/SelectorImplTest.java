@@ -0,0 +1,132 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.qpid.proton.reactor.Selectable;
+import org.junit.Test;
+
+public class SelectorImplTest {
+
+    @Test
+    public void testExpiredUsesCurrentDeadlines() throws IOException {
+        doTestExpiredUsesCurrentDeadlines(true);
+    }
+
+    @Test
+    public void testExpiredUsesCurrentDeadlinesWithoutSelectAction() throws IOException {
+        doTestExpiredUsesCurrentDeadlines(false);
+    }
+
+    private void doTestExpiredUsesCurrentDeadlines(boolean useSelectAction) throws IOException {
+        SelectorImpl selector = new SelectorImpl(new IOImpl(), useSelectAction);
+        try {
+            long now = System.currentTimeMillis();
+
+            SelectableImpl past = new SelectableImpl();
+            SelectableImpl future = new SelectableImpl();
+            SelectableImpl none = new SelectableImpl();
+            SelectableImpl moved = new SelectableImpl();
+
+            past.setDeadline(now - 1000);
+            future.setDeadline(now + 60000);
+            moved.setDeadline(now + 60000);
+
+            selector.add(past);
+            selector.add(future);
+            selector.add(none);
+            selector.add(moved);
+
+            // Deadline changes after registration must be seen without an update call.
+            moved.setDeadline(now - 500);
+
+            selector.select(0);
+            Set<Selectable> expired = collect(selector.expired());
+            assertEquals(2, expired.size());
+            assertTrue(expired.contains(past));
+            assertTrue(expired.contains(moved));
+
+            selector.remove(past);
+            moved.setDeadline(0);
+
+            selector.select(0);
+            assertFalse(selector.expired().hasNext());
+        } finally {
+            selector.free();
+        }
+    }
+
+    @Test
+    public void testReadableReportedForEachSelect() throws IOException {
+        doTestReadableReportedForEachSelect(true);
+        doTestReadableReportedForEachSelect(false);
+    }
+
+    private void doTestReadableReportedForEachSelect(boolean useSelectAction) throws IOException {
+        IOImpl io = new IOImpl();
+        SelectorImpl selector = new SelectorImpl(io, useSelectAction);
+        Pipe pipe = io.pipe();
+        try {
+            SelectableImpl selectable = new SelectableImpl();
+            selectable.setChannel(pipe.source());
+            selectable.setReading(true);
+            selector.add(selectable);
+
+            selector.select(0);
+            assertFalse(selector.readable().hasNext());
+
+            pipe.sink().write(ByteBuffer.allocate(1));
+
+            selector.select(1000);
+            Set<Selectable> readable = collect(selector.readable());
+            assertEquals(1, readable.size());
+            assertTrue(readable.contains(selectable));
+            assertFalse(selector.writeable().hasNext());
+
+            pipe.source().read(ByteBuffer.allocate(1));
+
+            selector.select(0);
+            assertFalse(selector.readable().hasNext());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            selector.free();
+        }
+    }
+
+    private Set<Selectable> collect(Iterator<Selectable> iterator) {
+        Set<Selectable> result = new HashSet<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.reactor.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.reactor.Task;
+import org.junit.Test;
+
+public class TimerTest {
+
+    @Test
+    public void testTasksExpireInDeadlineOrder() {
+        Collector collector = Proton.collector();
+        Timer timer = new Timer(collector);
+
+        Task third = timer.schedule(300);
+        Task first = timer.schedule(100);
+        Task second = timer.schedule(200);
+
+        assertEquals(100, timer.deadline());
+        assertEquals(3, timer.tasks());
+
+        timer.tick(300);
+
+        assertSame(first, nextTask(collector));
+        assertSame(second, nextTask(collector));
+        assertSame(third, nextTask(collector));
+        assertNull(collector.peek());
+        assertEquals(0, timer.tasks());
+        assertEquals(0, timer.deadline());
+    }
+
+    @Test
+    public void testCancelRemovesTaskBeforeDeadline() {
+        Collector collector = Proton.collector();
+        Timer timer = new Timer(collector);
+
+        Task first = timer.schedule(100);
+        Task second = timer.schedule(200);
+        Task third = timer.schedule(300);
+
+        first.cancel();
+        assertEquals(200, timer.deadline());
+        assertEquals(2, timer.getPendingTaskCount());
+
+        third.cancel();
+        third.cancel();
+        assertEquals(1, timer.tasks());
+        assertEquals(3, timer.getScheduledTaskCount());
+        assertEquals(2, timer.getCancelledTaskCount());
+
+        timer.tick(1000);
+
+        assertSame(second, nextTask(collector));
+        assertNull(collector.peek());
+
+        // Cancelling after expiry is a no-op.
+        second.cancel();
+        assertEquals(2, timer.getCancelledTaskCount());
+    }
+
+    @Test
+    public void testPendingCountExcludesQueuedCancellations() {
+        Collector collector = Proton.collector();
+        Timer timer = new Timer(collector);
+
+        Task first = timer.schedule(100);
+        timer.schedule(200);
+        assertEquals(2, timer.getPendingTaskCount());
+
+        // Not yet removed from the heap, as the timer has not been consulted since
+        first.cancel();
+        assertEquals(1, timer.getPendingTaskCount());
+        assertEquals(1, timer.getCancelledTaskCount());
+
+        timer.tick(1000);
+        assertEquals(0, timer.getPendingTaskCount());
+        assertEquals(1, timer.getCancelledTaskCount());
+    }
+
+    @Test
+    public void testCancelManyTasksKeepsOrdering() {
+        Collector collector = Proton.collector();
+        Timer timer = new Timer(collector);
+
+        Task[] tasks = new Task[1000];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = timer.schedule((i * 7919) % tasks.length);
+        }
+        for (int i = 0; i < tasks.length; i += 2) {
+            tasks[i].cancel();
+        }
+
+        assertEquals(tasks.length / 2, timer.tasks());
+
+        timer.tick(tasks.length);
+
+        long previous = -1;
+        int expired = 0;
+        Event event;
+        while ((event = collector.peek()) != null) {
+            long deadline = event.getTask().deadline();
+            assertEquals(true, deadline >= previous);
+            previous = deadline;
+            expired++;
+            collector.pop();
+        }
+        assertEquals(tasks.length / 2, expired);
+    }
+
+    @Test
+    public void testCancelFromAnotherThread() throws Exception {
+        Collector collector = Proton.collector();
+        Timer timer = new Timer(collector);
+
+        final Task[] tasks = new Task[1000];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = timer.schedule(i);
+        }
+
+        Thread canceller = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i < tasks.length; i += 2) {
+                    tasks[i].cancel();
+                }
+            }
+        };
+        canceller.start();
+        while (canceller.isAlive()) {
+            timer.deadline();
+            timer.tasks();
+        }
+        canceller.join();
+
+        timer.tick(tasks.length);
+
+        int expired = 0;
+        Event event;
+        while ((event = collector.peek()) != null) {
+            assertEquals(0, event.getTask().deadline() % 2);
+            expired++;
+            collector.pop();
+        }
+        assertEquals(tasks.length / 2, expired);
+        assertEquals(0, timer.tasks());
+    }
+
+    private Task nextTask(Collector collector) {
+        Event event = collector.peek();
+        assertEquals(Event.Type.TIMER_TASK, event.getType());
+        Task task = event.getTask();
+        collector.pop();
+        return task;
+    }
+}
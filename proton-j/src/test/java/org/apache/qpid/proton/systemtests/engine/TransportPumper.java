@@ -76,11 +76,19 @@ public class TransportPumper
 
             transportFrom.pop(remaining);
 
-            ByteBuffer inputBuffer = transportTo.getInputBuffer();
-            inputBuffer.put(output, 0, output.length);
-
-            TransportResult result = transportTo.processInput();
-            result.checkIsOk();
+            // The output may be more than the receiving transport can take in at once
+            int offset = 0;
+            while (offset < output.length)
+            {
+                ByteBuffer inputBuffer = transportTo.getInputBuffer();
+                int length = Math.min(inputBuffer.remaining(), output.length - offset);
+                assertTrue("No input capacity for output from " + fromRole + " to " + toRole, length > 0);
+                inputBuffer.put(output, offset, length);
+                offset += length;
+
+                TransportResult result = transportTo.processInput();
+                result.checkIsOk();
+            }
         }
 
         return outputLength;